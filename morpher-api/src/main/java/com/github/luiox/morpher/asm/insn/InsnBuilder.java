@@ -66,6 +66,10 @@ public class InsnBuilder {
         }
     }
 
+    public void clear() {
+        addList.clear();
+    }
+
     private static @NotNull InsnList toInsnList(@NotNull InsnBuilder builder, @NotNull Predicate<AbstractInsnNode> skipPredicate) {
         InsnList insnList = new InsnList();
         for (var ain : builder.getAddList()) {
@@ -0,0 +1,310 @@
+package com.github.luiox.morpher.asm.matcher;
+
+import com.github.luiox.morpher.asm.matcher.step.AnyMultiStep;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于工作表的不动点改写器。
+ * <p>
+ * 反复调用{@link PatternMatcher#rewrite(InsnList)}直到没有变化时，每一轮都要重新扫描整个方法。
+ * 这里只在第一轮扫描整个方法，之后每次改写把替换进去的指令记为脏位置，
+ * 下一轮只重新检查脏位置之前window条指令到脏位置之间的起点，因为新的匹配一定包含被改动的指令。
+ * <p>
+ * window默认是最长规则的步骤数减一，和分派表一样在匹配器添加规则之后的第一次改写时重新计算；
+ * 规则中有{@link AnyMultiStep}时匹配长度没有上限，这时每一轮都退化为扫描整个方法。规则的步骤如果会检查匹配区间之外的指令，需要用{@link #withWindow(int)}调大窗口。
+ * <p>
+ * 改写器本身不保存单次改写的状态，可以被多个线程同时使用，统计信息是所有调用累加的。
+ */
+public class FixpointRewriter {
+    private static final Logger logger = LoggerFactory.getLogger(FixpointRewriter.class);
+
+    /**
+     * 表示窗口没有上限
+     */
+    private static final int Unbounded = -1;
+    /**
+     * 表示窗口由规则计算
+     */
+    private static final int Auto = -2;
+
+    /**
+     * 根据某个分派表对应的规则计算出的默认窗口
+     */
+    private record DefaultWindow(MatchRule[][] table, int window) {
+    }
+
+    private final PatternMatcher matcher;
+    /**
+     * 通过{@link #withWindow(int)}设置的窗口，-1表示没有上限，-2表示由规则计算
+     */
+    private volatile int window = Auto;
+    /**
+     * 最近一次计算的默认窗口，匹配器的分派表变化时重新计算
+     */
+    private volatile DefaultWindow defaultWindow;
+    /**
+     * 第一轮之后最多进行的轮数
+     */
+    private volatile int maxIterations = 1000;
+
+    private final Map<MatchRule, LongAdder> rewriteCounts = new ConcurrentHashMap<>();
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder capReached = new LongAdder();
+
+    public FixpointRewriter(@NotNull PatternMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    public static @NotNull FixpointRewriter of(@NotNull PatternMatcher matcher) {
+        return new FixpointRewriter(matcher);
+    }
+
+    /**
+     * 设置脏位置之前需要重新检查的指令数
+     *
+     * @param window 指令数，负数表示没有上限，每一轮都扫描整个方法
+     * @return 当前改写器
+     */
+    public @NotNull FixpointRewriter withWindow(int window) {
+        this.window = window < 0 ? Unbounded : window;
+        return this;
+    }
+
+    /**
+     * 设置第一轮之后最多进行的轮数，达到上限时停止改写并输出警告，用于防止规则互相改写导致不终止
+     *
+     * @param maxIterations 最大轮数
+     * @return 当前改写器
+     */
+    public @NotNull FixpointRewriter withMaxIterations(int maxIterations) {
+        if (maxIterations <= 0) {
+            throw new IllegalArgumentException("maxIterations must be positive");
+        }
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /**
+     * 本次改写使用的窗口，没有设置时由分派表对应的规则计算，分派表没有变化时复用上次的结果
+     */
+    private int windowFor(MatchRule @NotNull [][] table) {
+        int explicit = window;
+        if (explicit != Auto) {
+            return explicit;
+        }
+        var cached = defaultWindow;
+        if (cached == null || cached.table() != table) {
+            cached = new DefaultWindow(table, computeWindow(matcher));
+            defaultWindow = cached;
+        }
+        return cached.window();
+    }
+
+    private static int computeWindow(@NotNull PatternMatcher matcher) {
+        int maxLength = 1;
+        for (MatchRule rule : matcher.getRules()) {
+            var steps = rule.getSteps();
+            for (var step : steps) {
+                if (step instanceof AnyMultiStep) {
+                    return Unbounded;
+                }
+            }
+            maxLength = Math.max(maxLength, steps.size());
+        }
+        return maxLength - 1;
+    }
+
+    /**
+     * 改写指令直到不动点
+     *
+     * @param insns 指令，会被直接修改
+     * @return 是否有改写
+     */
+    public boolean rewrite(@NotNull InsnList insns) {
+        MatchRule[][] table = matcher.getDispatch();
+        int window = windowFor(table);
+        int maxIterations = this.maxIterations;
+        MatchContext context = new MatchContext(insns);
+        List<AbstractInsnNode> dirty = new ArrayList<>();
+
+        // 第一轮扫描整个方法
+        int count = scan(insns, insns.getFirst(), null, context, table, dirty, null);
+        int total = count;
+        int round = 0;
+        while (!dirty.isEmpty()) {
+            if (round >= maxIterations) {
+                capReached.increment();
+                logger.warn("fixpoint not reached after {} iterations, {} dirty positions left", round, dirty.size());
+                break;
+            }
+            round++;
+            List<AbstractInsnNode> current = dirty;
+            dirty = new ArrayList<>();
+            if (window == Unbounded) {
+                count = scan(insns, insns.getFirst(), null, context, table, dirty, null);
+            } else {
+                count = 0;
+                // 本轮已经检查过并且没有匹配的起点
+                Set<AbstractInsnNode> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (AbstractInsnNode anchor : current) {
+                    if (!contains(insns, anchor)) {
+                        // 已经被本轮的其他改写移除，移除它的改写会记录自己的脏位置
+                        continue;
+                    }
+                    AbstractInsnNode start = anchor;
+                    for (int i = 0; i < window && start.getPrevious() != null; i++) {
+                        start = start.getPrevious();
+                    }
+                    count += scan(insns, start, anchor, context, table, dirty, checked);
+                }
+            }
+            total += count;
+        }
+        rounds.add(round + 1L);
+        return total > 0;
+    }
+
+    /**
+     * 从start开始检查每个起点，直到检查完last（包含），last为null时检查到末尾
+     *
+     * @return 改写的次数
+     */
+    private int scan(@NotNull InsnList insns,
+                     AbstractInsnNode start,
+                     AbstractInsnNode last,
+                     @NotNull MatchContext context,
+                     MatchRule @NotNull [][] table,
+                     @NotNull List<AbstractInsnNode> dirty,
+                     Set<AbstractInsnNode> checked) {
+        int count = 0;
+        AbstractInsnNode insn = start;
+        while (insn != null) {
+            if (checked != null && checked.contains(insn)) {
+                if (insn == last) {
+                    break;
+                }
+                insn = insn.getNext();
+                continue;
+            }
+            attempts.increment();
+            MatchRule rule = matcher.rewriteAt(insns, insn, context, table);
+            if (rule == null) {
+                if (checked != null) {
+                    checked.add(insn);
+                }
+                if (insn == last) {
+                    break;
+                }
+                insn = insn.getNext();
+                continue;
+            }
+            count++;
+            rewriteCounts.computeIfAbsent(rule, _ -> new LongAdder()).increment();
+            markDirty(context, dirty);
+            // last被这次改写替换掉时，它之前的起点都已经检查过了
+            if (last != null && context.getMatched().contains(last)) {
+                break;
+            }
+            insn = context.following;
+        }
+        return count;
+    }
+
+    /**
+     * 记录一次改写产生的脏位置：替换进去的指令；替换成空时是替换区间之后的指令，新的匹配只可能跨过这个空隙
+     */
+    private static void markDirty(@NotNull MatchContext context, @NotNull List<AbstractInsnNode> dirty) {
+        if (context.replacementFirst == null) {
+            if (context.following != null) {
+                dirty.add(context.following);
+            }
+            return;
+        }
+        for (AbstractInsnNode insn = context.replacementFirst; insn != null; insn = insn.getNext()) {
+            dirty.add(insn);
+            if (insn == context.replacementLast) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 判断指令是否还在列表中，InsnList移除指令时会清空它的前后指针
+     */
+    private static boolean contains(@NotNull InsnList insns, @NotNull AbstractInsnNode insn) {
+        return insn.getPrevious() != null || insn.getNext() != null || insns.getFirst() == insn;
+    }
+
+    /**
+     * 每条规则累计的改写次数
+     *
+     * @return 规则 -> 改写次数
+     */
+    public @NotNull Map<MatchRule, Long> getRewriteCounts() {
+        Map<MatchRule, Long> result = new LinkedHashMap<>();
+        for (MatchRule rule : matcher.getRules()) {
+            var counter = rewriteCounts.get(rule);
+            if (counter != null) {
+                result.put(rule, counter.sum());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 一条规则累计的改写次数
+     *
+     * @param rule 规则
+     * @return 改写次数
+     */
+    public long getRewriteCount(@NotNull MatchRule rule) {
+        var counter = rewriteCounts.get(rule);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * 累计进行的轮数，包括每次调用的第一轮
+     *
+     * @return 轮数
+     */
+    public long getRounds() {
+        return rounds.sum();
+    }
+
+    /**
+     * 累计尝试匹配的起点数
+     *
+     * @return 起点数
+     */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    /**
+     * 因为达到轮数上限而停止的次数
+     *
+     * @return 次数
+     */
+    public long getCapReachedCount() {
+        return capReached.sum();
+    }
+
+    /**
+     * 清空统计信息
+     */
+    public void resetStats() {
+        rewriteCounts.clear();
+        rounds.reset();
+        attempts.reset();
+        capReached.reset();
+    }
+}
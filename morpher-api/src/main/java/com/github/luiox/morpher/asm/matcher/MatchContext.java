@@ -1,30 +1,107 @@
 package com.github.luiox.morpher.asm.matcher;
 
 import com.github.luiox.morpher.asm.insn.InsnBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.InsnList;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * 匹配上下文，每个matcher的一次匹配只会同时存在一个MatchContext实例，因为上下文会复用
+ * <p>
+ * 匹配过程中的所有状态都保存在这里，每次调用match或apply时创建，不在线程之间共享，
+ * 因此规则和步骤本身是无状态的，同一个PatternMatcher可以被多个线程同时使用。
+ * <p>
+ * 匹配时直接记录匹配上的指令节点，而不是指令在InsnList中的下标，
+ * 修改策略通过{@link #get(int)}取得匹配区间中的指令，不需要调用{@link InsnList#get(int)}。
  */
 public class MatchContext {
-    public int startIdx;
-    public int endIdx;
     public final Map<MatchRule, Object> extraData = new HashMap<>();
 
     public final InsnList original;
     public final InsnBuilder builder = new InsnBuilder();
 
-    public MatchContext(InsnList insnList, int startIdx, int endIdx) {
+    /**
+     * 当前规则匹配上的指令，按顺序排列
+     */
+    private final List<AbstractInsnNode> matched = new ArrayList<>();
+
+    /**
+     * 原地替换之后，替换进去的第一条和最后一条指令，替换成空时都是null
+     */
+    AbstractInsnNode replacementFirst;
+    AbstractInsnNode replacementLast;
+    /**
+     * 原地替换之后，替换区间之后的第一条指令
+     */
+    AbstractInsnNode following;
+
+    public MatchContext(InsnList insnList) {
         this.original = insnList;
-        this.startIdx = startIdx;
-        this.endIdx = endIdx;
     }
 
-    public void setArea(int startIdx, int endIdx) {
-        this.startIdx = startIdx;
-        this.endIdx = endIdx;
+    /**
+     * 开始一次新的尝试，清空之前记录的指令
+     */
+    void reset() {
+        matched.clear();
+    }
+
+    /**
+     * 记录一条匹配上的指令
+     */
+    void add(@NotNull AbstractInsnNode insn) {
+        matched.add(insn);
+    }
+
+    /**
+     * 获取匹配区间中的第offset条指令
+     *
+     * @param offset 相对匹配起点的偏移
+     * @return 指令
+     */
+    public @NotNull AbstractInsnNode get(int offset) {
+        return matched.get(offset);
+    }
+
+    /**
+     * 匹配区间的第一条指令
+     *
+     * @return 指令
+     */
+    public @NotNull AbstractInsnNode getStart() {
+        return matched.getFirst();
+    }
+
+    /**
+     * 匹配区间的最后一条指令（包含）
+     *
+     * @return 指令
+     */
+    public @NotNull AbstractInsnNode getEnd() {
+        return matched.getLast();
+    }
+
+    /**
+     * 匹配上的指令数量
+     *
+     * @return 数量
+     */
+    public int getMatchedSize() {
+        return matched.size();
+    }
+
+    /**
+     * 匹配上的所有指令，只读
+     *
+     * @return 指令列表
+     */
+    public @NotNull List<AbstractInsnNode> getMatched() {
+        return Collections.unmodifiableList(matched);
     }
 }
@@ -1,15 +1,27 @@
 package com.github.luiox.morpher.asm.matcher;
 
+import org.objectweb.asm.tree.AbstractInsnNode;
+
 /**
  * 表示匹配的结果
  * start和end表示匹配的起始和结束位置，相当于区间[start, end)被匹配上了
+ * startNode和endNode是区间中的第一条和最后一条指令
  */
 public class MatchResult {
     public int start;
     public int end;
+    public AbstractInsnNode startNode;
+    public AbstractInsnNode endNode;
 
     public MatchResult(int start, int end) {
         this.start = start;
         this.end = end;
     }
+
+    public MatchResult(int start, int end, AbstractInsnNode startNode, AbstractInsnNode endNode) {
+        this.start = start;
+        this.end = end;
+        this.startNode = startNode;
+        this.endNode = endNode;
+    }
 }
@@ -3,20 +3,28 @@ package com.github.luiox.morpher.asm.matcher;
 import com.github.luiox.morpher.asm.matcher.step.AnyMultiStep;
 import com.github.luiox.morpher.asm.matcher.step.IMatchStep;
 import org.jetbrains.annotations.NotNull;
-import org.objectweb.asm.tree.InsnList;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.AbstractInsnNode;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 /**
  * 匹配规则
  * 修改的策略是可选的，如果使用matcher的apply自动应用修改，那么就必须设置修改策略
  * 如果仅仅使用matcher的match方法，那么可以不设置修改策略
+ * <p>
+ * 规则本身不保存匹配状态，匹配过程中的状态都在{@link MatchContext}中，
+ * 构建完成的规则可以被多个线程同时使用。
  */
 public class MatchRule {
 
-    private final List<IMatchStep> steps = new ArrayList<>();
-    private IModifyStrategy strategy = null;
+    /**
+     * 匹配步骤，添加步骤时替换成新的数组，匹配时读取到的总是完整的一组步骤
+     */
+    private volatile IMatchStep[] steps = new IMatchStep[0];
+    private volatile IModifyStrategy strategy = null;
 
     public MatchRule() {
     }
@@ -30,48 +38,75 @@ public class MatchRule {
         return strategy;
     }
 
-    public @NotNull MatchRule addStep(@NotNull IMatchStep step) {
-        steps.add(step);
+    public synchronized @NotNull MatchRule addStep(@NotNull IMatchStep step) {
+        var newSteps = Arrays.copyOf(steps, steps.length + 1);
+        newSteps[steps.length] = step;
+        steps = newSteps;
         return this;
     }
 
     public @NotNull List<IMatchStep> getSteps() {
-        return steps;
+        return List.of(steps);
     }
 
-    int matchedSize = 0;
+    /**
+     * 规则第一个步骤可能匹配的opcode集合，用于PatternMatcher的分派
+     *
+     * @return opcode集合，null表示任意指令
+     */
+    public @Nullable BitSet getStartOpcodes() {
+        var current = steps;
+        if (current.length == 0) {
+            return null;
+        }
+        return current[0].getStartOpcodes();
+    }
 
-    public boolean tryMatch(@NotNull InsnList list, int currentPos, MatchContext context) {
-        for (int i = 0; i < steps.size(); ) {
-            var step = steps.get(i);
+    /**
+     * 从start开始沿着{@link AbstractInsnNode#getNext()}尝试匹配，匹配上的指令依次记录到context中。
+     * <p>
+     * 每个步骤匹配一条指令；{@link AnyMultiStep}匹配任意多条指令，直到它后面的步骤能够匹配为止，
+     * 放在最后的AnyMultiStep不匹配任何指令。没有匹配上任何指令时视为匹配失败。
+     *
+     * @param start   起始指令
+     * @param context 匹配上下文
+     * @return 是否匹配
+     */
+    public boolean tryMatch(@NotNull AbstractInsnNode start, @NotNull MatchContext context) {
+        var steps = this.steps;
+        context.reset();
+        AbstractInsnNode current = start;
+        for (int i = 0; i < steps.length; ) {
+            var step = steps[i];
             if (step instanceof AnyMultiStep) {
+                if (i + 1 >= steps.length) {
+                    break;
+                }
+                if (current == null) {
+                    return false;
+                }
                 // 如果是匹配任意多条指令，先尝试匹配下一个
-                if (i + 1 < steps.size()) {
-                    var nextStep = steps.get(i + 1);
-                    if (nextStep.tryMatch(list.get(currentPos), context)) {
-                        // 如果匹配成功就直接算是下一个指令匹配成功的
-                        currentPos += step.getMatchedSize();
-                        // 并且跳过当前的AnyMultiStep和匹配成功的下一个指令
-                        i += 2;
-                        continue;
-                    }
+                var nextStep = steps[i + 1];
+                if (nextStep.tryMatch(current, context)) {
+                    // 如果匹配成功就直接算是下一个指令匹配成功的，并且跳过当前的AnyMultiStep和匹配成功的下一个指令
+                    context.add(current);
+                    current = current.getNext();
+                    i += 2;
+                    continue;
                 }
+                // 匹配失败就让AnyMultiStep再匹配一个，停留在AnyMultiStep上
+                context.add(current);
+                current = current.getNext();
+                continue;
             }
-            // 如果是普通情况，或者是AnyMultiStep之后的一个匹配失败，那么就让AnyMultiStep再匹配一个
-            if (!step.tryMatch(list.get(currentPos), context)) {
+            // 到达末尾时无法继续匹配
+            if (current == null || !step.tryMatch(current, context)) {
                 return false;
             }
-            currentPos += step.getMatchedSize();
+            context.add(current);
+            current = current.getNext();
             i++;
         }
-        return true;
-    }
-
-    public int getMatchedSize() {
-        int total = 0;
-        for (IMatchStep step : steps) {
-            total += step.getMatchedSize();
-        }
-        return total;
+        return context.getMatchedSize() > 0;
     }
 }
@@ -2,27 +2,119 @@ package com.github.luiox.morpher.asm.matcher;
 
 import com.github.luiox.morpher.asm.insn.InsnBuilder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.InsnList;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 指令模式匹配器
- * 优化点：采用Trie树进行模式匹配
+ * <p>
+ * 第一次匹配时会把规则编译成按opcode索引的分派表：每个opcode对应第一个步骤可能匹配它的规则，
+ * 每个位置只尝试这些规则，规则之间仍然保持添加的顺序。添加规则会使分派表失效，下次匹配时重新编译。
+ * 规则加入匹配器之后不应再修改其中的步骤。
+ * <p>
+ * 编译好的分派表是不可变的，匹配状态都在每次调用创建的{@link MatchContext}中，
+ * 因此规则添加完成之后，同一个匹配器可以被多个线程同时用来匹配。添加规则和匹配不能并发进行。
  */
 public class PatternMatcher {
 
+    /**
+     * 分派表按opcode索引的部分的大小，下标是opcode + 1，0对应Label等opcode为-1的伪指令，
+     * 最后额外的一项只包含不限制opcode的规则，用于超出范围的opcode
+     */
+    private static final int DispatchSize = Opcodes.IFNONNULL + 2;
+
     private final List<MatchRule> rules = new ArrayList<>();
 
+    /**
+     * 编译好的分派表，添加规则时置空
+     */
+    private volatile MatchRule[][] dispatch;
+
     public @NotNull PatternMatcher addRule(@NotNull MatchRule rule) {
         rules.add(rule);
+        dispatch = null;
         return this;
     }
 
+    /**
+     * 已添加的规则，只读
+     *
+     * @return 规则列表
+     */
+    public @NotNull List<MatchRule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * 立即编译分派表，供多个线程共享的匹配器可以在规则添加完成之后调用，避免第一次匹配时再编译
+     *
+     * @return 当前匹配器
+     */
+    public @NotNull PatternMatcher compile() {
+        getDispatch();
+        return this;
+    }
+
+    /**
+     * 获取分派表，还没有编译时先编译
+     *
+     * @return opcode + 1 -> 可能在这个opcode开始匹配的规则，按添加顺序排列
+     */
+    MatchRule @NotNull [][] getDispatch() {
+        var table = dispatch;
+        if (table == null) {
+            table = buildDispatch(rules);
+            dispatch = table;
+        }
+        return table;
+    }
+
+    private static MatchRule @NotNull [][] buildDispatch(@NotNull List<MatchRule> rules) {
+        List<List<MatchRule>> buckets = new ArrayList<>(DispatchSize + 1);
+        for (int i = 0; i <= DispatchSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (MatchRule rule : rules) {
+            BitSet opcodes = rule.getStartOpcodes();
+            if (opcodes == null) {
+                // 不限制opcode的规则放进所有的桶里
+                for (var bucket : buckets) {
+                    bucket.add(rule);
+                }
+                continue;
+            }
+            for (int opcode = opcodes.nextSetBit(0); opcode >= 0 && opcode + 1 < DispatchSize;
+                 opcode = opcodes.nextSetBit(opcode + 1)) {
+                buckets.get(opcode + 1).add(rule);
+            }
+        }
+        MatchRule[][] table = new MatchRule[DispatchSize + 1][];
+        for (int i = 0; i <= DispatchSize; i++) {
+            table[i] = buckets.get(i).toArray(new MatchRule[0]);
+        }
+        return table;
+    }
+
+    /**
+     * 某条指令上可能匹配的规则
+     */
+    private static MatchRule @NotNull [] candidates(MatchRule @NotNull [][] table, @NotNull AbstractInsnNode insn) {
+        int index = insn.getOpcode() + 1;
+        if (index < 0 || index >= DispatchSize) {
+            return table[DispatchSize];
+        }
+        return table[index];
+    }
+
     /**
      * 根据规则匹配指令，返回匹配结果
      *
@@ -31,22 +123,23 @@ public class PatternMatcher {
      */
     public Map<MatchRule, List<MatchResult>> match(@NotNull InsnList original) {
         Map<MatchRule, List<MatchResult>> result = new HashMap<>();
-        MatchContext context = new MatchContext(original, 0, 0);
-        // 匹配
-        for (int i = 0; i < original.size(); ) {
+        MatchContext context = new MatchContext(original);
+        MatchRule[][] table = getDispatch();
+        // 沿着链表匹配，同时记录下标
+        int i = 0;
+        AbstractInsnNode insn = original.getFirst();
+        while (insn != null) {
             boolean matched = false;
-            for (MatchRule rule : rules) {
-                // 设置起始位置
-                context.startIdx = i;
+            for (MatchRule rule : candidates(table, insn)) {
                 // 尝试不同的rule
-                if (rule.tryMatch(original, i, context)) {
-                    // 设置起始和结束
-                    context.setArea(i, i + rule.getMatchedSize());
+                if (rule.tryMatch(insn, context)) {
+                    int size = context.getMatchedSize();
                     // 添加到结果中
-                    result.computeIfAbsent(rule, _ -> new ArrayList<>());
-                    result.get(rule).add(new MatchResult(i, i + rule.getMatchedSize()));
-                    // 获取匹配的字节数，跳过这些
-                    i += rule.getMatchedSize();
+                    result.computeIfAbsent(rule, _ -> new ArrayList<>())
+                            .add(new MatchResult(i, i + size, context.getStart(), context.getEnd()));
+                    // 跳过匹配上的指令
+                    insn = context.getEnd().getNext();
+                    i += size;
                     matched = true;
                     break;
                 }
@@ -54,6 +147,7 @@ public class PatternMatcher {
             if (matched) {
                 continue;
             }
+            insn = insn.getNext();
             i++;
         }
         return result;
@@ -61,31 +155,31 @@ public class PatternMatcher {
 
     /**
      * 根据规则匹配指令，然后根据不同的匹配规则对应的修改策略，自动应用修改策略
+     * <p>
+     * 匹配过程中原始的InsnList不会被修改，只沿着指令的next指针遍历，不使用InsnList的下标缓存。
      *
      * @param original 原始指令
      * @return 修改后的指令
      */
     public @NotNull InsnList apply(@NotNull InsnList original) {
         List<AbstractInsnNode> deleteList = new ArrayList<>();
-        MatchContext context = new MatchContext(original, 0, 0);
+        MatchContext context = new MatchContext(original);
         InsnBuilder builder = context.builder;
-        for (int i = 0; i < original.size(); ) {
+        MatchRule[][] table = getDispatch();
+        AbstractInsnNode insn = original.getFirst();
+        while (insn != null) {
             boolean matched = false;
-            for (MatchRule rule : rules) {
-                // 设置起始位置
-                context.startIdx = i;
+            for (MatchRule rule : candidates(table, insn)) {
                 // 尝试不同的rule
-                if (rule.tryMatch(original, i, context)) {
-                    // 设置起始和结束
-                    context.setArea(i, i + rule.getMatchedSize());
+                if (rule.tryMatch(insn, context)) {
+                    // 先记下匹配区间之后的指令，修改策略可能会重用匹配上的节点
+                    AbstractInsnNode next = context.getEnd().getNext();
                     // 匹配以后利用strategy去做操作
                     rule.getStrategy().apply(context);
                     // 标记这些节点需要被移除，以免重用的时候影响新的InsnList
-                    for (int j = 0; j < rule.getMatchedSize(); j++) {
-                        deleteList.add(original.get(i + j));
-                    }
+                    deleteList.addAll(context.getMatched());
 
-                    i += rule.getMatchedSize();
+                    insn = next;
                     matched = true;
 
                     break;
@@ -94,8 +188,8 @@ public class PatternMatcher {
             if (matched) {
                 continue;
             }
-            builder.addInsnNode(original.get(i));
-            i++;
+            builder.addInsnNode(insn);
+            insn = insn.getNext();
         }
         // 移除删除的节点，主要是为了断开连接，要不然会影响Builder
         for (AbstractInsnNode ain : deleteList) {
@@ -104,6 +198,75 @@ public class PatternMatcher {
         return builder.getInsnList();
     }
 
+    /**
+     * 原地改写指令：根据规则匹配指令，把修改策略生成的指令直接拼接到匹配的位置，替换掉匹配上的指令。
+     * <p>
+     * 和{@link #apply(InsnList)}不同，不会创建新的InsnList，也不会复制没有匹配上的指令。
+     * 替换进去的指令不会在本次调用中再次匹配，需要不动点时反复调用直到返回false。
+     *
+     * @param insns 指令，会被直接修改
+     * @return 是否有规则匹配并改写了指令
+     */
+    public boolean rewrite(@NotNull InsnList insns) {
+        MatchContext context = new MatchContext(insns);
+        MatchRule[][] table = getDispatch();
+        boolean changed = false;
+        AbstractInsnNode insn = insns.getFirst();
+        while (insn != null) {
+            if (rewriteAt(insns, insn, context, table) != null) {
+                changed = true;
+                insn = context.following;
+            } else {
+                insn = insn.getNext();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 在insn处依次尝试可能匹配的规则，匹配上时原地替换。
+     * 替换的结果记录在context的replacementFirst、replacementLast和following中。
+     *
+     * @return 匹配上的规则，没有匹配返回null
+     */
+    @Nullable MatchRule rewriteAt(@NotNull InsnList insns,
+                                  @NotNull AbstractInsnNode insn,
+                                  @NotNull MatchContext context,
+                                  MatchRule @NotNull [][] table) {
+        for (MatchRule rule : candidates(table, insn)) {
+            if (!rule.tryMatch(insn, context)) {
+                continue;
+            }
+            AbstractInsnNode following = context.getEnd().getNext();
+            InsnBuilder builder = context.builder;
+            builder.clear();
+            rule.getStrategy().apply(context);
+            // 先移除匹配上的指令，修改策略可能会重用其中的节点
+            for (AbstractInsnNode matched : context.getMatched()) {
+                insns.remove(matched);
+            }
+            AbstractInsnNode first = null;
+            AbstractInsnNode last = null;
+            for (AbstractInsnNode replacement : builder.getAddList()) {
+                if (following != null) {
+                    insns.insertBefore(following, replacement);
+                } else {
+                    insns.add(replacement);
+                }
+                if (first == null) {
+                    first = replacement;
+                }
+                last = replacement;
+            }
+            builder.clear();
+            context.replacementFirst = first;
+            context.replacementLast = last;
+            context.following = following;
+            return rule;
+        }
+        return null;
+    }
+
     /**
      * 从多个匹配器中创建一个新的PatternMatcher
      *
@@ -15,13 +15,16 @@ import java.util.function.Predicate;
  */
 public class StepUtil {
 
+    // 步骤是无状态的，可以在多个线程之间共享，因此提前创建好所有opcode的SimpleStep
     private static final SimpleStep[] NormalSimpleSteps = new SimpleStep[Opcodes.IFNONNULL + 1];
 
-    public static @NotNull SimpleStep step(int opcode) {
-        if (NormalSimpleSteps[opcode] != null) {
-            return NormalSimpleSteps[opcode];
+    static {
+        for (int opcode = 0; opcode < NormalSimpleSteps.length; opcode++) {
+            NormalSimpleSteps[opcode] = new SimpleStep(opcode);
         }
-        NormalSimpleSteps[opcode] = new SimpleStep(opcode);
+    }
+
+    public static @NotNull SimpleStep step(int opcode) {
         return NormalSimpleSteps[opcode];
     }
 
@@ -517,48 +520,33 @@ public class StepUtil {
         return step(Opcodes.LDC);
     }
 
-    private static LoadStep.LoadIntStep LoadIntStep;
+    private static final LoadStep.LoadIntStep LoadIntStep = new LoadStep.LoadIntStep();
 
     public static @NotNull IMatchStep loadInt() {
-        if (LoadIntStep == null) {
-            LoadIntStep = new LoadStep.LoadIntStep();
-        }
         return LoadIntStep;
     }
 
-    private static LoadStep.LoadFloatStep LoadFloatStep;
+    private static final LoadStep.LoadFloatStep LoadFloatStep = new LoadStep.LoadFloatStep();
 
     public static @NotNull IMatchStep loadFloat() {
-        if (LoadFloatStep == null) {
-            LoadFloatStep = new LoadStep.LoadFloatStep();
-        }
         return LoadFloatStep;
     }
 
-    private static LoadStep.LoadDoubleStep LoadDoubleStep;
+    private static final LoadStep.LoadDoubleStep LoadDoubleStep = new LoadStep.LoadDoubleStep();
 
     public static @NotNull IMatchStep loadDouble() {
-        if (LoadDoubleStep == null) {
-            LoadDoubleStep = new LoadStep.LoadDoubleStep();
-        }
         return LoadDoubleStep;
     }
 
-    private static LoadStep.LoadLongStep LoadLongStep;
+    private static final LoadStep.LoadLongStep LoadLongStep = new LoadStep.LoadLongStep();
 
     public static @NotNull IMatchStep loadLong() {
-        if (LoadLongStep == null) {
-            LoadLongStep = new LoadStep.LoadLongStep();
-        }
         return LoadLongStep;
     }
 
-    private static LoadStep.LoadStrStep LoadStrStep;
+    private static final LoadStep.LoadStrStep LoadStrStep = new LoadStep.LoadStrStep();
 
     public static @NotNull IMatchStep loadStr() {
-        if (LoadStrStep == null) {
-            LoadStrStep = new LoadStep.LoadStrStep();
-        }
         return LoadStrStep;
     }
 
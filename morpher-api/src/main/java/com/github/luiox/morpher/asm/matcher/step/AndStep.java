@@ -3,8 +3,10 @@ package com.github.luiox.morpher.asm.matcher.step;
 
 import com.github.luiox.morpher.asm.matcher.MatchContext;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.AbstractInsnNode;
 
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -12,10 +14,10 @@ import java.util.List;
  */
 public class AndStep implements IMatchStep {
 
-    List<IMatchStep> steps;
+    private final List<IMatchStep> steps;
 
     public AndStep(List<IMatchStep> steps) {
-        this.steps = steps;
+        this.steps = List.copyOf(steps);
     }
 
     public static AndStep of(List<IMatchStep> steps) {
@@ -34,9 +36,7 @@ public class AndStep implements IMatchStep {
     }
 
     @Override
-    public int getMatchedSize() {
-        return steps.stream()
-                .mapToInt(IMatchStep::getMatchedSize)
-                .sum();
+    public @Nullable BitSet getStartOpcodes() {
+        return OpcodeSets.intersection(steps);
     }
 }
@@ -4,21 +4,17 @@ import com.github.luiox.morpher.asm.matcher.MatchContext;
 import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.tree.AbstractInsnNode;
 
+/**
+ * 匹配任意多条指令，由{@link com.github.luiox.morpher.asm.matcher.MatchRule}特殊处理：
+ * 一直匹配到它后面的步骤能够匹配为止，匹配了多少条指令记录在MatchContext中。
+ */
 public class AnyMultiStep implements IMatchStep {
-    private int matchedSize;
 
     public AnyMultiStep() {
-        matchedSize = 0;
     }
 
     @Override
     public boolean tryMatch(@NotNull AbstractInsnNode now, @NotNull MatchContext ctx) {
-        matchedSize++;
         return true;
     }
-
-    @Override
-    public int getMatchedSize() {
-        return matchedSize;
-    }
 }
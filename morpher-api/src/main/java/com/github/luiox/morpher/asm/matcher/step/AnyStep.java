@@ -7,7 +7,7 @@ import org.objectweb.asm.tree.AbstractInsnNode;
 import java.util.function.Predicate;
 
 public class AnyStep implements IMatchStep {
-    private Predicate<AbstractInsnNode> additional;
+    private final Predicate<AbstractInsnNode> additional;
 
     public AnyStep(@NotNull Predicate<AbstractInsnNode> condition) {
         this.additional = condition;
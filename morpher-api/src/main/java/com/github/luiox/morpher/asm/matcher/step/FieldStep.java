@@ -2,12 +2,15 @@ package com.github.luiox.morpher.asm.matcher.step;
 
 import com.github.luiox.morpher.asm.matcher.MatchContext;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.FieldInsnNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.BitSet;
+
 public class FieldStep implements IMatchStep {
     private static final Logger logger = LoggerFactory.getLogger(FieldStep.class);
 
@@ -15,6 +18,7 @@ public class FieldStep implements IMatchStep {
     private final String owner;
     private final String name;
     private final String desc;
+    private final BitSet startOpcodes;
 
     public FieldStep(int opcode, String owner, String name, String desc) {
         if (opcode > Opcodes.PUTFIELD || opcode < Opcodes.GETSTATIC) {
@@ -24,6 +28,8 @@ public class FieldStep implements IMatchStep {
         this.owner = owner;
         this.name = name;
         this.desc = desc;
+        // 伪指令的opcode是-1，不能放进集合里
+        this.startOpcodes = opcode >= 0 ? OpcodeSets.of(opcode) : null;
     }
 
     @Override
@@ -47,6 +53,11 @@ public class FieldStep implements IMatchStep {
         return true;
     }
 
+    @Override
+    public @Nullable BitSet getStartOpcodes() {
+        return startOpcodes;
+    }
+
     public int getOpcode() {
         return opcode;
     }
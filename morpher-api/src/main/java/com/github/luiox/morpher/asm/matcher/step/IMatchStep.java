@@ -2,14 +2,28 @@ package com.github.luiox.morpher.asm.matcher.step;
 
 import com.github.luiox.morpher.asm.matcher.MatchContext;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.AbstractInsnNode;
 
+import java.util.BitSet;
+
+/**
+ * 匹配步骤，每个步骤匹配一条指令。
+ * 步骤不能保存匹配过程中的状态，同一个步骤会被多个规则、多个线程同时使用，需要的状态放在MatchContext中。
+ */
 public interface IMatchStep {
     // 返回是否匹配
     boolean tryMatch(@NotNull AbstractInsnNode now, @NotNull MatchContext ctx);
 
-    // 获取匹配的指令数量
-    default int getMatchedSize() {
-        return 1;
+    /**
+     * 这个步骤可能匹配的指令的opcode集合，PatternMatcher据此只在可能匹配的位置尝试规则。
+     * <p>
+     * 返回的集合只能比实际匹配的范围大，不能小，返回的集合不能被修改。
+     * Label、LineNumber等伪指令的opcode是-1，不会出现在集合中。
+     *
+     * @return opcode集合，null表示任意指令都可能匹配
+     */
+    default @Nullable BitSet getStartOpcodes() {
+        return null;
     }
 }
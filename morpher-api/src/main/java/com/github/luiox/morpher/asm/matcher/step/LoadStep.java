@@ -7,9 +7,29 @@ import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.LdcInsnNode;
 
+import java.util.BitSet;
+
 import static org.objectweb.asm.Opcodes.*;
 
 public class LoadStep {
+    private static final BitSet IntOpcodes = OpcodeSets.of(ICONST_M1, ICONST_0, ICONST_1, ICONST_2, ICONST_3,
+            ICONST_4, ICONST_5, BIPUSH, SIPUSH, LDC);
+    private static final BitSet LongOpcodes = OpcodeSets.of(LCONST_0, LCONST_1, LDC);
+    private static final BitSet FloatOpcodes = OpcodeSets.of(FCONST_0, FCONST_1, FCONST_2, LDC);
+    private static final BitSet DoubleOpcodes = OpcodeSets.of(DCONST_0, DCONST_1, LDC);
+    private static final BitSet LdcOpcodes = OpcodeSets.of(LDC);
+    private static final BitSet Load1SlotOpcodes = OpcodeSets.of(ICONST_M1, ICONST_0, ICONST_1, ICONST_2, ICONST_3,
+            ICONST_4, ICONST_5, BIPUSH, SIPUSH, FCONST_0, FCONST_1, FCONST_2, LDC);
+    private static final BitSet Load2SlotOpcodes = OpcodeSets.of(LCONST_0, LCONST_1, DCONST_0, DCONST_1, LDC);
+    private static final BitSet NoSideEffect1SlotOpcodes = OpcodeSets.of(ACONST_NULL, ICONST_M1, ICONST_0, ICONST_1,
+            ICONST_2, ICONST_3, ICONST_4, ICONST_5, FCONST_0, FCONST_1, FCONST_2, BIPUSH, SIPUSH, LDC);
+    private static final BitSet NoSideEffect1SlotOpcodesWithLoad = OpcodeSets.of(ACONST_NULL, ICONST_M1, ICONST_0,
+            ICONST_1, ICONST_2, ICONST_3, ICONST_4, ICONST_5, FCONST_0, FCONST_1, FCONST_2, BIPUSH, SIPUSH, LDC,
+            ILOAD, FLOAD, ALOAD);
+    private static final BitSet NoSideEffect2SlotOpcodes = OpcodeSets.of(LCONST_0, LCONST_1, DCONST_0, DCONST_1, LDC);
+    private static final BitSet NoSideEffect2SlotOpcodesWithLoad = OpcodeSets.of(LCONST_0, LCONST_1, DCONST_0,
+            DCONST_1, LDC, LLOAD, DLOAD);
+
     public static class LoadIntStep implements IMatchStep {
 
         private final Integer expectVal;
@@ -29,6 +49,11 @@ public class LoadStep {
             }
             return InsnUtil.isInteger(now) && InsnUtil.getIntValue(now) == expectVal;
         }
+
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            return IntOpcodes;
+        }
     }
 
     public static class LoadLongStep implements IMatchStep {
@@ -39,6 +64,11 @@ public class LoadStep {
         public boolean tryMatch(@NotNull AbstractInsnNode now, @NotNull MatchContext ctx) {
             return InsnUtil.isLong(now);
         }
+
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            return LongOpcodes;
+        }
     }
 
     public static class LoadFloatStep implements IMatchStep {
@@ -49,6 +79,11 @@ public class LoadStep {
         public boolean tryMatch(@NotNull AbstractInsnNode now, @NotNull MatchContext ctx) {
             return InsnUtil.isFloat(now);
         }
+
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            return FloatOpcodes;
+        }
     }
 
     public static class LoadDoubleStep implements IMatchStep {
@@ -59,6 +94,11 @@ public class LoadStep {
         public boolean tryMatch(@NotNull AbstractInsnNode now, @NotNull MatchContext ctx) {
             return InsnUtil.isDouble(now);
         }
+
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            return DoubleOpcodes;
+        }
     }
 
     public static class LoadStrStep implements IMatchStep {
@@ -69,6 +109,11 @@ public class LoadStep {
         public boolean tryMatch(@NotNull AbstractInsnNode now, @NotNull MatchContext ctx) {
             return now instanceof LdcInsnNode && ((LdcInsnNode) now).cst instanceof String;
         }
+
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            return LdcOpcodes;
+        }
     }
 
     public static class Load1SlotStep implements IMatchStep {
@@ -79,6 +124,11 @@ public class LoadStep {
         public boolean tryMatch(@NotNull AbstractInsnNode now, @NotNull MatchContext ctx) {
             return InsnUtil.isInteger(now) || InsnUtil.isFloat(now);
         }
+
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            return Load1SlotOpcodes;
+        }
     }
 
     public static class Load2SlotStep implements IMatchStep {
@@ -89,6 +139,11 @@ public class LoadStep {
         public boolean tryMatch(@NotNull AbstractInsnNode now, @NotNull MatchContext ctx) {
             return InsnUtil.isLong(now) || InsnUtil.isDouble(now);
         }
+
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            return Load2SlotOpcodes;
+        }
     }
 
     public static class NoSideEffectLoad1SlotStep implements IMatchStep {
@@ -113,6 +168,10 @@ public class LoadStep {
             };
         }
 
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            return alsoMatchStackLoad ? NoSideEffect1SlotOpcodesWithLoad : NoSideEffect1SlotOpcodes;
+        }
     }
 
     public static class NoSideEffectLoad2SlotStep implements IMatchStep {
@@ -134,5 +193,10 @@ public class LoadStep {
                 default -> false;
             };
         }
+
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            return alsoMatchStackLoad ? NoSideEffect2SlotOpcodesWithLoad : NoSideEffect2SlotOpcodes;
+        }
     }
 }
@@ -2,9 +2,11 @@ package com.github.luiox.morpher.asm.matcher.step;
 
 import com.github.luiox.morpher.asm.matcher.MatchContext;
 import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 
+import java.util.BitSet;
 import java.util.function.Predicate;
 
 public class MethodStep {
@@ -14,6 +16,7 @@ public class MethodStep {
         private final String name;
         private final String desc;
         private final Predicate<AbstractInsnNode> additional;
+        private final BitSet startOpcodes;
 
         public SimpleMethodStep(@NotNull String owner, @NotNull String name, @NotNull String desc) {
             this(-1, owner, name, desc, _ -> true);
@@ -29,6 +32,9 @@ public class MethodStep {
             this.name = name;
             this.desc = desc;
             this.additional = additional;
+            this.startOpcodes = opcode != -1
+                    ? OpcodeSets.of(opcode)
+                    : OpcodeSets.range(Opcodes.INVOKEVIRTUAL, Opcodes.INVOKEINTERFACE);
         }
 
         @Override
@@ -41,6 +47,11 @@ public class MethodStep {
             }
             return false;
         }
+
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            return startOpcodes;
+        }
     }
 
     public static class IndyMethodStep implements IMatchStep {
@@ -49,5 +60,11 @@ public class MethodStep {
         public boolean tryMatch(@NotNull AbstractInsnNode now, @NotNull MatchContext ctx) {
             return false;
         }
+
+        @Override
+        public @NotNull BitSet getStartOpcodes() {
+            // 目前不匹配任何指令
+            return new BitSet();
+        }
     }
 }
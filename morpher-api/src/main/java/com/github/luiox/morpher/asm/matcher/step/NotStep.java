@@ -6,7 +6,7 @@ import org.objectweb.asm.tree.AbstractInsnNode;
 
 public class NotStep implements IMatchStep {
 
-    IMatchStep step;
+    private final IMatchStep step;
 
     public NotStep(IMatchStep step) {
         this.step = step;
@@ -20,9 +20,4 @@ public class NotStep implements IMatchStep {
     public boolean tryMatch(@NotNull AbstractInsnNode abstractInsnNode, @NotNull MatchContext matchContext) {
         return !step.tryMatch(abstractInsnNode, matchContext);
     }
-
-    @Override
-    public int getMatchedSize() {
-        return step.getMatchedSize();
-    }
 }
@@ -0,0 +1,82 @@
+package com.github.luiox.morpher.asm.matcher.step;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * 构造{@link IMatchStep#getStartOpcodes()}使用的opcode集合
+ */
+public final class OpcodeSets {
+    private OpcodeSets() {
+    }
+
+    /**
+     * 由若干opcode构成的集合
+     *
+     * @param opcodes opcode
+     * @return 集合
+     */
+    public static @NotNull BitSet of(int @NotNull ... opcodes) {
+        BitSet set = new BitSet();
+        for (int opcode : opcodes) {
+            set.set(opcode);
+        }
+        return set;
+    }
+
+    /**
+     * 闭区间[from, to]内的opcode构成的集合
+     *
+     * @param from 起始opcode
+     * @param to   结束opcode（包含）
+     * @return 集合
+     */
+    public static @NotNull BitSet range(int from, int to) {
+        BitSet set = new BitSet();
+        set.set(from, to + 1);
+        return set;
+    }
+
+    /**
+     * 多个步骤的opcode集合的并集，任意一个步骤不限制opcode时结果也不限制
+     *
+     * @param steps 步骤
+     * @return 并集，null表示任意指令
+     */
+    public static @Nullable BitSet union(@NotNull Collection<IMatchStep> steps) {
+        BitSet result = new BitSet();
+        for (var step : steps) {
+            var set = step.getStartOpcodes();
+            if (set == null) {
+                return null;
+            }
+            result.or(set);
+        }
+        return result;
+    }
+
+    /**
+     * 多个步骤的opcode集合的交集，不限制opcode的步骤不参与计算
+     *
+     * @param steps 步骤
+     * @return 交集，所有步骤都不限制时返回null
+     */
+    public static @Nullable BitSet intersection(@NotNull Collection<IMatchStep> steps) {
+        BitSet result = null;
+        for (var step : steps) {
+            var set = step.getStartOpcodes();
+            if (set == null) {
+                continue;
+            }
+            if (result == null) {
+                result = (BitSet) set.clone();
+            } else {
+                result.and(set);
+            }
+        }
+        return result;
+    }
+}
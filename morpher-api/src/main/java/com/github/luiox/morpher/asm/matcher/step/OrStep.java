@@ -2,16 +2,18 @@ package com.github.luiox.morpher.asm.matcher.step;
 
 import com.github.luiox.morpher.asm.matcher.MatchContext;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.AbstractInsnNode;
 
+import java.util.BitSet;
 import java.util.List;
 
 public class OrStep implements IMatchStep {
 
-    List<IMatchStep> steps;
+    private final List<IMatchStep> steps;
 
     public OrStep(List<IMatchStep> steps) {
-        this.steps = steps;
+        this.steps = List.copyOf(steps);
     }
 
     public static OrStep of(List<IMatchStep> steps) {
@@ -30,11 +32,7 @@ public class OrStep implements IMatchStep {
     }
 
     @Override
-    public int getMatchedSize() {
-        int size = 0;
-        for (var step : steps) {
-            size += step.getMatchedSize();
-        }
-        return size;
+    public @Nullable BitSet getStartOpcodes() {
+        return OpcodeSets.union(steps);
     }
 }
@@ -2,13 +2,16 @@ package com.github.luiox.morpher.asm.matcher.step;
 
 import com.github.luiox.morpher.asm.matcher.MatchContext;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.AbstractInsnNode;
 
+import java.util.BitSet;
 import java.util.function.Predicate;
 
 public class SimpleStep implements IMatchStep {
     private final int opcode;
     private final Predicate<AbstractInsnNode> additional;
+    private final BitSet startOpcodes;
 
     public SimpleStep(int opcode) {
         this(opcode, _ -> true);
@@ -17,10 +20,17 @@ public class SimpleStep implements IMatchStep {
     public SimpleStep(int opcode, @NotNull Predicate<AbstractInsnNode> condition) {
         this.opcode = opcode;
         this.additional = condition;
+        // 伪指令的opcode是-1，不能放进集合里
+        this.startOpcodes = opcode >= 0 ? OpcodeSets.of(opcode) : null;
     }
 
     @Override
     public boolean tryMatch(@NotNull AbstractInsnNode now, @NotNull MatchContext ctx) {
         return now.getOpcode() == opcode && additional.test(now);
     }
+
+    @Override
+    public @Nullable BitSet getStartOpcodes() {
+        return startOpcodes;
+    }
 }
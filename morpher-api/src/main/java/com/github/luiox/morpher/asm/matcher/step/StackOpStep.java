@@ -5,9 +5,14 @@ import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
+import java.util.BitSet;
+
 import static org.objectweb.asm.Opcodes.*;
 
 public class StackOpStep implements IMatchStep {
+    // VarInsnNode的所有opcode
+    private static final BitSet VarOpcodes = OpcodeSets.of(ILOAD, LLOAD, FLOAD, DLOAD, ALOAD,
+            ISTORE, LSTORE, FSTORE, DSTORE, ASTORE, RET);
 
     private final Boolean isLoad;
     private final boolean twoSlotSize;
@@ -54,6 +59,11 @@ public class StackOpStep implements IMatchStep {
         return false;
     }
 
+    @Override
+    public @NotNull BitSet getStartOpcodes() {
+        return VarOpcodes;
+    }
+
 //    @Override
 //    public String toString() {
 //        return "StackStep{" +
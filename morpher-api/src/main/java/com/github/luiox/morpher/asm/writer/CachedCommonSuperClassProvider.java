@@ -0,0 +1,101 @@
+package com.github.luiox.morpher.asm.writer;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存公共父类查询结果的装饰器。
+ * <p>
+ * 计算栈帧时ASM会对同样的类型对反复查询公共父类，这里把类名映射成整数id，
+ * 以两个id作为两层映射的键缓存结果。公共父类和参数顺序无关，所以(a, b)和(b, a)共用一个缓存项。
+ * <p>
+ * 缓存是线程安全的，可以被并行写出的多个ClassWriter共享。被装饰的提供者的结果变化之后（例如扫描了新的依赖库），
+ * 需要调用{@link #clear()}或者重新创建装饰器。
+ */
+public class CachedCommonSuperClassProvider implements ICommonSuperClassProvider {
+    /**
+     * 被装饰的提供者
+     */
+    private final ICommonSuperClassProvider delegate;
+    /**
+     * 类名 -> id
+     */
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    /**
+     * 下一个分配的id
+     */
+    private final AtomicInteger nextId = new AtomicInteger();
+    /**
+     * 较小的id -> (较大的id -> 公共父类)，两层都以已经缓存的Integer作为键，查询时不需要分配对象
+     */
+    private final Map<Integer, Map<Integer, String>> cache = new ConcurrentHashMap<>();
+    /**
+     * 缓存的类型对数量
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * 构造方法。
+     *
+     * @param delegate 被装饰的提供者，需要是线程安全的
+     */
+    public CachedCommonSuperClassProvider(@NotNull ICommonSuperClassProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getCommonSuperClasses(String type1, String type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+        Integer id1 = intern(type1);
+        Integer id2 = intern(type2);
+        Integer low = id1 < id2 ? id1 : id2;
+        Integer high = id1 < id2 ? id2 : id1;
+        var row = cache.get(low);
+        if (row == null) {
+            row = cache.computeIfAbsent(low, _ -> new ConcurrentHashMap<>());
+        }
+        var cached = row.get(high);
+        if (cached != null) {
+            return cached;
+        }
+        // 不在computeIfAbsent里计算，避免查询较慢时阻塞同一个桶上的其他键
+        var result = delegate.getCommonSuperClasses(type1, type2);
+        var previous = row.putIfAbsent(high, result);
+        if (previous != null) {
+            return previous;
+        }
+        size.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * 缓存的类型对数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        cache.clear();
+        size.set(0);
+    }
+
+    private @NotNull Integer intern(@NotNull String type) {
+        var id = ids.get(type);
+        if (id != null) {
+            return id;
+        }
+        // 之后的查询都返回同一个Integer对象
+        return ids.computeIfAbsent(type, _ -> nextId.getAndIncrement());
+    }
+}
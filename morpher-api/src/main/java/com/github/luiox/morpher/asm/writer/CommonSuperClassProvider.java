@@ -1,7 +1,11 @@
 package com.github.luiox.morpher.asm.writer;
 
-import com.github.luiox.morpher.jar.JarReader;
-import org.objectweb.asm.ClassReader;
+import com.github.luiox.morpher.info.ClassHeaderParser;
+import com.github.luiox.morpher.info.ClassHierarchy;
+import com.github.luiox.morpher.info.ClassInfo;
+import com.github.luiox.morpher.info.LibraryIndexFile;
+import com.github.luiox.morpher.jar.MappedJarFile;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,17 +16,59 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class CommonSuperClassProvider implements ICommonSuperClassProvider {
     private static final Logger logger = LoggerFactory.getLogger(CommonSuperClassProvider.class);
 
     Map<String, String> superClassNameMap = new HashMap<>();
+    // 类名 -> 类信息，包含接口和访问标志，用于构建完整的继承关系，计算栈帧时会被多个线程同时读取
+    Map<String, ClassInfo> classInfoMap = new ConcurrentHashMap<>();
+    // 扫描时并行读取jar的线程数
+    private int parallelism = Runtime.getRuntime().availableProcessors();
 
     public Map<String, String> getSuperClassNameMap() {
         return superClassNameMap;
     }
 
+    public Map<String, ClassInfo> getClassInfoMap() {
+        return classInfoMap;
+    }
+
+    // 基于扫描到的类的继承关系索引，scan之后置空，下次查询时重新创建
+    private volatile ClassHierarchy hierarchy;
+
+    /**
+     * 设置扫描时并行读取jar的线程数。
+     *
+     * @param parallelism 线程数，1表示在调用线程上依次读取
+     * @return 当前实例
+     */
+    public CommonSuperClassProvider withParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
     public void scan(String folderPath) {
+        scan(folderPath, null);
+    }
+
+    /**
+     * 扫描目录下的所有jar、zip和jmod，使用二进制索引文件缓存扫描结果。
+     * <p>
+     * 大小和修改时间都没有变化的jar直接使用索引中的记录，只重新读取新增或者变化过的jar，
+     * 有变化时重新写出索引文件。索引文件只保存这一次扫描到的jar，不同的目录应该使用不同的索引文件。
+     *
+     * @param folderPath 目录
+     * @param indexFile  索引文件，为null时不使用缓存
+     */
+    public void scan(String folderPath, @Nullable Path indexFile) {
         List<Path> zips = new ArrayList<>();
         try {
             Files.walkFileTree(Path.of(folderPath), new SimpleFileVisitor<>() {
@@ -41,101 +87,182 @@ public class CommonSuperClassProvider implements ICommonSuperClassProvider {
             System.err.println("Error walking file tree: " + e.getMessage());
             return;
         }
-        for (var zip : zips) {
-            // 读取每个jar
-            // 读取每个class
-            try {
-                JarReader jarReader = new JarReader(zip.toString());
-                jarReader.read((filePath, is) -> {
-                    try {
-                        if (filePath.contains("module-info.class")) {
-                            return;
-                        }
-                        if (!filePath.endsWith(".class")) {
-                            return;
-                        }
-                        byte[] data = is.readAllBytes();
-                        ClassReader reader = new ClassReader(data);
-                        var className = reader.getClassName();
-                        var superName = reader.getSuperName();
-                        superClassNameMap.put(className, superName);
-                    } catch (Exception e) {
-                        logger.error("Error reading class file: {}", filePath, e);
-                    }
-                });
-            } catch (Exception e) {
-                logger.error("Error reading jar file: {}", zip, e);
-            }
-        }
-    }
 
-    public List<String> getSuperClasses(String type) {
-        List<String> superClasses = new ArrayList<>();
-        Set<String> visited = new HashSet<>();
-
-        // 初始检查
-        if (!superClassNameMap.containsKey(type)) {
-            // 如果不包含，那么输出信息到串口
-            logger.error("type not found: {}", type);
-            return List.of("java/lang/Object");
+        long start = System.nanoTime();
+        Map<String, LibraryIndexFile.JarRecord> cached = indexFile == null ? Map.of() : LibraryIndexFile.load(indexFile);
+        List<LibraryIndexFile.JarRecord> records = new ArrayList<>(zips.size());
+        List<JarScanResult> results = new ArrayList<>(zips.size());
+        boolean changed = cached.size() != zips.size();
+        int reused = 0;
+        // jar在工作线程上并行读取，结果按照jar的顺序合并，同名的类仍然是后面的jar优先
+        try (var executor = new ForkJoinPool(parallelism)) {
+            List<Future<JarScanResult>> futures = new ArrayList<>(zips.size());
+            for (var zip : zips) {
+                futures.add(executor.submit(() -> loadJar(zip, cached)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                JarScanResult result;
+                try {
+                    result = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("scan interrupted");
+                    return;
+                } catch (ExecutionException e) {
+                    logger.error("Error reading jar file: {}", zips.get(i), e.getCause());
+                    continue;
+                }
+                results.add(result);
+                if (result.reused) {
+                    reused++;
+                } else {
+                    changed = true;
+                }
+                if (result.record == null) {
+                    // 读取失败的jar不写入索引，下次重新读取
+                    continue;
+                }
+                records.add(result.record);
+                for (var info : result.record.classes) {
+                    superClassNameMap.put(info.name, info.superName);
+                    classInfoMap.put(info.name, info);
+                }
+            }
         }
+        logger.info("scanned {} jars in {} ms, {} from index", records.size(),
+                (System.nanoTime() - start) / 1_000_000, reused);
+        // 输出最慢的几个jar
+        results.stream()
+                .filter(result -> !result.reused)
+                .sorted(Comparator.comparingLong((JarScanResult result) -> result.nanos).reversed())
+                .limit(5)
+                .forEach(result -> logger.info("  {} took {} ms, {} classes", result.zip.getFileName(),
+                        result.nanos / 1_000_000, result.record == null ? 0 : result.record.classes.size()));
 
-        String currentType = type;
-        while (true) {
-            // 检查是否已经访问过，避免循环
-            if (visited.contains(currentType)) {
-                logger.error("circular dependency found: {}", currentType);
-                break;
+        if (indexFile != null && changed) {
+            try {
+                LibraryIndexFile.write(indexFile, records);
+            } catch (IOException e) {
+                logger.error("Failed to write library index {}, {}", indexFile, e.getMessage());
             }
-            visited.add(currentType);
+        }
+        // 类有变化，下次查询时重新创建索引
+        hierarchy = null;
+    }
 
-            // 先检查是否包含
-            if (!superClassNameMap.containsKey(currentType)) {
-                // 不包含就得先输出
-                logger.error("type not found: {}", currentType);
-                break;
-            }
+    /**
+     * 一个jar的扫描结果
+     */
+    private static final class JarScanResult {
+        final Path zip;
+        final LibraryIndexFile.JarRecord record;
+        final boolean reused;
+        final long nanos;
 
-            // 添加当前的类到列表
-            superClasses.add(currentType);
+        JarScanResult(Path zip, @Nullable LibraryIndexFile.JarRecord record, boolean reused, long nanos) {
+            this.zip = zip;
+            this.record = record;
+            this.reused = reused;
+            this.nanos = nanos;
+        }
+    }
 
-            // 获取当前类型的直接父类
-            String superClass = superClassNameMap.get(currentType);
+    /**
+     * 获取一个jar的记录，大小和修改时间没有变化时直接使用索引中的记录，在工作线程上执行。
+     *
+     * @param zip    jar路径
+     * @param cached 索引中的记录
+     * @return 扫描结果
+     */
+    private JarScanResult loadJar(Path zip, Map<String, LibraryIndexFile.JarRecord> cached) {
+        long start = System.nanoTime();
+        var path = zip.toAbsolutePath().toString();
+        long size;
+        long lastModified;
+        try {
+            size = Files.size(zip);
+            lastModified = Files.getLastModifiedTime(zip).toMillis();
+        } catch (IOException e) {
+            logger.error("Error reading jar file: {}", zip, e);
+            return new JarScanResult(zip, null, false, System.nanoTime() - start);
+        }
+        var record = cached.get(path);
+        if (record != null && record.matches(size, lastModified)) {
+            return new JarScanResult(zip, record, true, System.nanoTime() - start);
+        }
+        var classes = scanJar(zip);
+        record = classes == null ? null : new LibraryIndexFile.JarRecord(path, size, lastModified, classes);
+        long nanos = System.nanoTime() - start;
+        logger.debug("{} took {} ms", zip, nanos / 1_000_000);
+        return new JarScanResult(zip, record, false, nanos);
+    }
 
-            // 如果superClass为null，那就是java/lang/Object
-            // 如果当前是java/lang/Object了，那么应该结束了
-            if (superClass == null) {
-                superClass = "java/lang/Object";
-                break;
+    /**
+     * 读取一个jar中所有类的信息。
+     *
+     * @param zip jar路径
+     * @return 类信息，jar读取失败返回null
+     */
+    private @Nullable List<ClassInfo> scanJar(Path zip) {
+        // 只解析每个class的头部，存储的条目直接在映射区上解析，不需要拷贝；解析结果不引用映射区，扫描完立即释放
+        try (var archive = MappedJarFile.open(zip)) {
+            List<ClassInfo> classes = new ArrayList<>();
+            for (var entry : archive.entries()) {
+                var filePath = entry.name;
+                if (filePath.contains("module-info.class")) {
+                    continue;
+                }
+                if (!filePath.endsWith(".class")) {
+                    continue;
+                }
+                try {
+                    classes.add(ClassHeaderParser.parse(archive.read(entry)));
+                } catch (Exception e) {
+                    logger.error("Error reading class file: {}", filePath, e);
+                }
             }
-
-            // 更新当前类型为父类，继续循环
-            currentType = superClass;
+            return classes;
+        } catch (Exception e) {
+            logger.error("Error reading jar file: {}", zip, e);
+            return null;
         }
+    }
 
-        return superClasses.reversed();
+    /**
+     * 获取一个类的父类链，从最顶层的父类（一般是java/lang/Object）开始，到这个类自己结束。
+     *
+     * @param type 类名
+     * @return 父类链，类不存在时返回只包含java/lang/Object的列表
+     */
+    public List<String> getSuperClasses(String type) {
+        var current = getHierarchy();
+        if (!current.contains(type)) {
+            return List.of(ClassHierarchy.ObjectName);
+        }
+        return current.getSuperClasses(type);
     }
 
     @Override
     public String getCommonSuperClasses(String type1, String type2) {
-        // 获取type1的父类列表
-        List<String> superClasses1 = getSuperClasses(type1);
-        // 获取type2的父类列表
-        List<String> superClasses2 = getSuperClasses(type2);
-        // 获取两个父类列表的长度
-        int size = Math.min(superClasses1.size(), superClasses2.size());
-        // 初始化索引
-        int i = 0;
-        // 遍历两个父类列表，找到第一个不相等的父类
-        while (i < size && superClasses1.get(i).equals(superClasses2.get(i))) {
-            i++;
-        }
-        // 如果没有找到不相等的父类，返回Object
-        if (i == 0) {
-            return "java/lang/Object";
-        } else {
-            // 返回第一个不相等的父类
-            return superClasses1.get(i - 1);
+        return getHierarchy().getCommonSuperClass(type1, type2);
+    }
+
+    /**
+     * 获取扫描到的类的继承关系索引，扫描之后第一次使用时重新创建。
+     *
+     * @return 继承关系索引
+     */
+    public ClassHierarchy getHierarchy() {
+        var current = hierarchy;
+        if (current == null) {
+            synchronized (this) {
+                current = hierarchy;
+                if (current == null) {
+                    current = ClassHierarchy.of(classInfoMap::get);
+                    hierarchy = current;
+                }
+            }
         }
+        return current;
     }
 }
@@ -0,0 +1,178 @@
+package com.github.luiox.morpher.info;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 只解析class文件头部的轻量解析器。
+ * <p>
+ * 和{@link org.objectweb.asm.ClassReader}不同，这里不读取方法和字段，也不会为每个类分配char[]缓冲区：
+ * 先扫描一遍常量池记下每一项的偏移，然后只解码this、super和接口对应的几个Utf8常量。
+ * 偏移表和解码缓冲区都是线程本地的，可以在多个线程上同时使用。
+ * <p>
+ * 直接在ByteBuffer上以绝对位置读取，可以传入映射jar中的切片，不需要先拷贝成数组。
+ */
+public final class ClassHeaderParser {
+    private static final int Magic = 0xCAFEBABE;
+
+    /**
+     * 常量池偏移表
+     */
+    private static final ThreadLocal<int[]> Offsets = ThreadLocal.withInitial(() -> new int[1024]);
+    /**
+     * Utf8解码缓冲区
+     */
+    private static final ThreadLocal<byte[]> Bytes = ThreadLocal.withInitial(() -> new byte[256]);
+    /**
+     * 非ASCII的Utf8解码缓冲区
+     */
+    private static final ThreadLocal<char[]> Chars = ThreadLocal.withInitial(() -> new char[256]);
+
+    private ClassHeaderParser() {
+    }
+
+    /**
+     * 解析class文件头部。
+     *
+     * @param bytes class文件内容
+     * @return 类信息
+     * @throws IllegalArgumentException 不是合法的class文件时抛出
+     */
+    public static @NotNull ClassInfo parse(byte @NotNull [] bytes) {
+        return parse(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * 解析class文件头部，从buffer的当前位置开始读取，不会修改buffer的位置。
+     *
+     * @param buffer class文件内容
+     * @return 类信息
+     * @throws IllegalArgumentException 不是合法的class文件时抛出
+     */
+    public static @NotNull ClassInfo parse(@NotNull ByteBuffer buffer) {
+        // class文件是大端序的
+        if (buffer.order() != ByteOrder.BIG_ENDIAN) {
+            buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        }
+        int base = buffer.position();
+        int limit = buffer.limit();
+        try {
+            if (limit - base < 10 || buffer.getInt(base) != Magic) {
+                throw new IllegalArgumentException("not a class file");
+            }
+            int version = u2(buffer, base + 6);
+            int constantCount = u2(buffer, base + 8);
+            int[] offsets = Offsets.get();
+            if (offsets.length < constantCount) {
+                offsets = new int[Math.max(constantCount, offsets.length * 2)];
+                Offsets.set(offsets);
+            }
+
+            // 记录每个常量的偏移，指向tag之后的内容
+            int pos = base + 10;
+            for (int i = 1; i < constantCount; i++) {
+                int tag = buffer.get(pos);
+                offsets[i] = pos + 1;
+                switch (tag) {
+                    case 1 -> pos += 3 + u2(buffer, pos + 1);
+                    case 3, 4, 9, 10, 11, 12, 17, 18 -> pos += 5;
+                    case 5, 6 -> {
+                        pos += 9;
+                        // long和double占两个位置
+                        i++;
+                    }
+                    case 7, 8, 16, 19, 20 -> pos += 3;
+                    case 15 -> pos += 4;
+                    default -> throw new IllegalArgumentException("invalid constant pool tag " + tag + " at " + i);
+                }
+            }
+
+            int access = u2(buffer, pos);
+            String name = className(buffer, offsets, u2(buffer, pos + 2));
+            int superIndex = u2(buffer, pos + 4);
+            String superName = superIndex == 0 ? null : className(buffer, offsets, superIndex);
+            int interfaceCount = u2(buffer, pos + 6);
+            List<String> interfaces;
+            if (interfaceCount == 0) {
+                interfaces = List.of();
+            } else {
+                String[] names = new String[interfaceCount];
+                for (int i = 0; i < interfaceCount; i++) {
+                    names[i] = className(buffer, offsets, u2(buffer, pos + 8 + i * 2));
+                }
+                interfaces = List.of(names);
+            }
+            return new ClassInfo(name, access, superName, interfaces, version);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("truncated class file", e);
+        }
+    }
+
+    private static int u2(@NotNull ByteBuffer buffer, int pos) {
+        return Short.toUnsignedInt(buffer.getShort(pos));
+    }
+
+    private static @NotNull String className(@NotNull ByteBuffer buffer, int[] offsets, int classIndex) {
+        // CONSTANT_Class指向一个Utf8
+        int utf8Index = u2(buffer, offsets[classIndex]);
+        return utf8(buffer, offsets[utf8Index]);
+    }
+
+    /**
+     * 解码一个Utf8常量，全部是ASCII时直接构造Latin1字符串，否则按照修改过的UTF-8解码。
+     */
+    private static @NotNull String utf8(@NotNull ByteBuffer buffer, int offset) {
+        int length = u2(buffer, offset);
+        byte[] bytes = Bytes.get();
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+            Bytes.set(bytes);
+        }
+        buffer.get(offset + 2, bytes, 0, length);
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] < 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        return decodeModifiedUtf8(bytes, length);
+    }
+
+    private static @NotNull String decodeModifiedUtf8(byte[] bytes, int length) {
+        char[] chars = Chars.get();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+            Chars.set(chars);
+        }
+        int n = 0;
+        int i = 0;
+        while (i < length) {
+            int b = bytes[i++] & 0xFF;
+            if (b < 0x80) {
+                chars[n++] = (char) b;
+            } else if (b < 0xE0) {
+                chars[n++] = (char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F));
+            } else {
+                chars[n++] = (char) (((b & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F));
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    /**
+     * 清空当前线程的缓冲区，缓冲区因为很大的类被扩容之后可以调用来释放内存。
+     */
+    public static void releaseBuffers() {
+        Offsets.remove();
+        Bytes.remove();
+        Chars.remove();
+    }
+}
@@ -0,0 +1,580 @@
+package com.github.luiox.morpher.info;
+
+import com.github.luiox.morpher.asm.writer.ICommonSuperClassProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类继承关系索引，计算栈帧时的公共父类查询和Pass中的继承关系分析都基于它。
+ * <p>
+ * 类信息来自一个{@link IClassInfoLookup}，每个类在第一次被用到时解析，之后不再查找。
+ * 解析一个类之前先解析它的全部父类型，因此每个类的整数id总是大于它的父类型，
+ * 继承关系中如果存在循环，会在解析时被断开。查不到类信息的类也会被记录，它没有父类型。
+ * <p>
+ * 每个类只保存父类、接口和父类链的深度，不保存全部父类型的集合：
+ * {@link #getCommonSuperClass}对齐两条父类链的深度之后一起向上走，不分配对象；
+ * {@link #isAssignableFrom}只沿着id不小于目标类型的父类型查找。
+ * <p>
+ * 已经解析的类的查询不加锁，解析新的类时加锁，可以在多个线程之间共享。
+ * 类信息来源的内容变化之后（例如容器中的类被修改），需要重新创建索引。
+ */
+public class ClassHierarchy implements ICommonSuperClassProvider {
+    private static final Logger logger = LoggerFactory.getLogger(ClassHierarchy.class);
+
+    /**
+     * 所有类的根
+     */
+    public static final String ObjectName = "java/lang/Object";
+
+    private static final Node[] EmptyNodes = new Node[0];
+
+    /**
+     * 索引中的一个类，创建之后不可变
+     */
+    private static final class Node {
+        final int id;
+        final String name;
+        /**
+         * 类信息，查不到时为null
+         */
+        final ClassInfo info;
+        /**
+         * 父类，没有父类、父类形成循环时为null
+         */
+        final Node superNode;
+        final Node[] interfaces;
+        /**
+         * 父类链的深度，没有父类的类为0
+         */
+        final int depth;
+
+        Node(int id, String name, ClassInfo info, Node superNode, Node[] interfaces) {
+            this.id = id;
+            this.name = name;
+            this.info = info;
+            this.superNode = superNode;
+            this.interfaces = interfaces;
+            this.depth = superNode == null ? 0 : superNode.depth + 1;
+        }
+
+        boolean isInterface() {
+            return info != null && (info.access & Opcodes.ACC_INTERFACE) != 0;
+        }
+    }
+
+    /**
+     * 类信息来源
+     */
+    private final IClassInfoLookup lookup;
+    /**
+     * 类名 -> 已经解析的类
+     */
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    /**
+     * id -> 已经解析的类，只在解析时加锁扩容，扩容之后整体替换
+     */
+    private volatile Node[] byId = new Node[64];
+
+    private ClassHierarchy(@NotNull IClassInfoLookup lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * 创建一个构建器。
+     *
+     * @return 构建器
+     */
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 以一组类信息创建继承关系索引，所有类在创建时解析。
+     *
+     * @param infos 类信息
+     * @return 继承关系索引
+     */
+    public static @NotNull ClassHierarchy of(@NotNull Collection<ClassInfo> infos) {
+        return builder().addAll(infos).build();
+    }
+
+    /**
+     * 以一个类信息来源创建继承关系索引，类在第一次被用到时才解析。
+     * <p>
+     * 多个来源可以用{@link IClassInfoLookup#layered}组合，例如依次查找容器、依赖库和JDK。
+     *
+     * @param lookup 类信息来源，需要是线程安全的
+     * @return 继承关系索引
+     */
+    public static @NotNull ClassHierarchy of(@NotNull IClassInfoLookup lookup) {
+        return new ClassHierarchy(lookup);
+    }
+
+    /**
+     * 已经解析的类数量，包括查不到类信息的类
+     *
+     * @return 数量
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * 获取类的id，类还没有解析时先解析。
+     *
+     * @param name 类名
+     * @return id
+     */
+    public int getId(@NotNull String name) {
+        return resolve(name).id;
+    }
+
+    /**
+     * 根据id获取类名。
+     *
+     * @param id {@link #getId}返回的id
+     * @return 类名
+     */
+    public @NotNull String getName(int id) {
+        return byId[id].name;
+    }
+
+    /**
+     * 是否有这个类的类信息
+     *
+     * @param name 类名
+     * @return 是否存在
+     */
+    public boolean contains(@NotNull String name) {
+        return resolve(name).info != null;
+    }
+
+    /**
+     * 获取类信息。
+     *
+     * @param name 类名
+     * @return 类信息，不存在返回null
+     */
+    public @Nullable ClassInfo getClassInfo(@NotNull String name) {
+        return resolve(name).info;
+    }
+
+    /**
+     * 获取直接父类。
+     *
+     * @param name 类名
+     * @return 父类名，不存在或者没有父类返回null
+     */
+    public @Nullable String getSuperName(@NotNull String name) {
+        var superNode = resolve(name).superNode;
+        return superNode == null ? null : superNode.name;
+    }
+
+    /**
+     * 是否是接口
+     *
+     * @param name 类名
+     * @return 是否是接口，没有类信息时返回false
+     */
+    public boolean isInterface(@NotNull String name) {
+        return resolve(name).isInterface();
+    }
+
+    /**
+     * 父类链的深度，java/lang/Object为0。
+     *
+     * @param name 类名
+     * @return 深度，没有类信息返回-1
+     */
+    public int getDepth(@NotNull String name) {
+        var node = resolve(name);
+        return node.info == null ? -1 : node.depth;
+    }
+
+    /**
+     * 获取父类链，从最顶层的父类（一般是java/lang/Object）开始，到这个类自己结束。
+     *
+     * @param name 类名
+     * @return 父类链，没有类信息时只包含这个类自己
+     */
+    public @NotNull List<String> getSuperClasses(@NotNull String name) {
+        var node = resolve(name);
+        String[] chain = new String[node.depth + 1];
+        for (var current = node; current != null; current = current.superNode) {
+            chain[current.depth] = current.name;
+        }
+        return Arrays.asList(chain);
+    }
+
+    /**
+     * 判断other类型的值能否赋值给type类型，语义和{@link Class#isAssignableFrom}相同。
+     *
+     * @param type  父类型
+     * @param other 子类型
+     * @return 是否可以赋值
+     */
+    public boolean isAssignableFrom(@NotNull String type, @NotNull String other) {
+        if (type.equals(other) || type.equals(ObjectName)) {
+            return true;
+        }
+        return isAssignableFrom(resolve(type), resolve(other));
+    }
+
+    /**
+     * 获取全部父类型（父类和接口，不包括自己）。
+     *
+     * @param name 类名
+     * @return 父类型，父类链上的类在前
+     */
+    public @NotNull Set<String> getAllSupertypes(@NotNull String name) {
+        var node = resolve(name);
+        Set<String> result = new LinkedHashSet<>();
+        for (var current = node.superNode; current != null; current = current.superNode) {
+            result.add(current.name);
+        }
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        for (var current = node; current != null; current = current.superNode) {
+            Collections.addAll(stack, current.interfaces);
+        }
+        while (!stack.isEmpty()) {
+            var current = stack.pop();
+            if (result.add(current.name)) {
+                Collections.addAll(stack, current.interfaces);
+                if (current.superNode != null) {
+                    stack.push(current.superNode);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取直接子类型，只在已经解析的类中查找。
+     * <p>
+     * 通过{@link #of(IClassInfoLookup)}创建的索引只解析用到过的类，结果可能不完整；
+     * 需要完整结果时用{@link Builder}创建，添加的类都在创建时解析。
+     *
+     * @param name 类名
+     * @return 直接子类型
+     */
+    public @NotNull List<String> getDirectSubtypes(@NotNull String name) {
+        var node = resolve(name);
+        List<String> result = new ArrayList<>();
+        for (var candidate : nodes.values()) {
+            if (isDirectSubtype(candidate, node)) {
+                result.add(candidate.name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取全部子类型（直接和间接继承或者实现的类，不包括自己），只在已经解析的类中查找。
+     * <p>
+     * 通过{@link #of(Collection)}或者{@link Builder}创建的索引在创建时解析了全部添加的类，结果包含这些类；
+     * 通过{@link #of(IClassInfoLookup)}创建的索引只解析用到过的类，结果可能不完整。
+     *
+     * @param name 类名
+     * @return 子类型
+     */
+    public @NotNull Set<String> getAllSubtypes(@NotNull String name) {
+        var node = resolve(name);
+        Set<String> result = new LinkedHashSet<>();
+        for (var candidate : nodes.values()) {
+            if (candidate != node && isAssignableFrom(node, candidate)) {
+                result.add(candidate.name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取两个类的公共父类，语义和{@link org.objectweb.asm.ClassWriter#getCommonSuperClass}相同。
+     *
+     * @param type1 类1
+     * @param type2 类2
+     * @return 公共父类
+     */
+    public @NotNull String getCommonSuperClass(@NotNull String type1, @NotNull String type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+        var node1 = resolve(type1);
+        var node2 = resolve(type2);
+        if (node1.info == null || node2.info == null) {
+            return ObjectName;
+        }
+        if (isAssignableFrom(node1, node2)) {
+            return type1;
+        }
+        if (isAssignableFrom(node2, node1)) {
+            return type2;
+        }
+        if (node1.isInterface() || node2.isInterface()) {
+            return ObjectName;
+        }
+        // 对齐深度之后两条父类链一起向上走，第一个相同的类就是公共父类
+        var a = node1;
+        var b = node2;
+        while (a.depth > b.depth) {
+            a = a.superNode;
+        }
+        while (b.depth > a.depth) {
+            b = b.superNode;
+        }
+        while (a != b) {
+            a = a.superNode;
+            b = b.superNode;
+            if (a == null || b == null) {
+                // 父类链断开（父类查不到或者有循环），没有公共的根
+                return ObjectName;
+            }
+        }
+        return a.name;
+    }
+
+    @Override
+    public String getCommonSuperClasses(String type1, String type2) {
+        return getCommonSuperClass(type1, type2);
+    }
+
+    private static boolean isDirectSubtype(@NotNull Node candidate, @NotNull Node node) {
+        if (candidate.superNode == node) {
+            return true;
+        }
+        for (var itf : candidate.interfaces) {
+            if (itf == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断other类型的值能否赋值给type类型。
+     * <p>
+     * 父类型的id总是更小，所以只需要查找id不小于type的父类型；type是类时只需要沿着父类链查找。
+     */
+    private static boolean isAssignableFrom(@NotNull Node type, @NotNull Node other) {
+        if (type == other || type.name.equals(ObjectName)) {
+            return true;
+        }
+        if (type.id > other.id) {
+            return false;
+        }
+        if (!type.isInterface()) {
+            for (var current = other.superNode; current != null && current.id >= type.id; current = current.superNode) {
+                if (current == type) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        stack.push(other);
+        while (!stack.isEmpty()) {
+            var current = stack.pop();
+            if (current == type) {
+                return true;
+            }
+            if (current.id < type.id || !visited.add(current)) {
+                continue;
+            }
+            if (current.superNode != null) {
+                stack.push(current.superNode);
+            }
+            for (var itf : current.interfaces) {
+                stack.push(itf);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取一个类，还没有解析时先解析。
+     *
+     * @param name 类名
+     * @return 类
+     */
+    private @NotNull Node resolve(@NotNull String name) {
+        var node = nodes.get(name);
+        if (node != null) {
+            return node;
+        }
+        synchronized (this) {
+            return resolveLocked(name);
+        }
+    }
+
+    /**
+     * 正在解析的类
+     */
+    private static final class Pending {
+        final String name;
+        final ClassInfo info;
+        final List<String> supertypes;
+        int next;
+
+        Pending(String name, ClassInfo info) {
+            this.name = name;
+            this.info = info;
+            if (info == null) {
+                supertypes = List.of();
+            } else {
+                supertypes = new ArrayList<>();
+                if (info.superName != null) {
+                    supertypes.add(info.superName);
+                }
+                if (info.interfaces != null) {
+                    supertypes.addAll(info.interfaces);
+                }
+            }
+        }
+    }
+
+    /**
+     * 深度优先解析一个类和它的全部父类型，父类型先于子类型创建。
+     * <p>
+     * 用显式的栈遍历，很深的继承链也不会栈溢出；指向正在解析的类的边说明有循环，创建时断开。
+     */
+    private @NotNull Node resolveLocked(@NotNull String root) {
+        var existing = nodes.get(root);
+        if (existing != null) {
+            return existing;
+        }
+        ArrayDeque<Pending> stack = new ArrayDeque<>();
+        Set<String> visiting = new HashSet<>();
+        stack.push(pending(root));
+        visiting.add(root);
+        Node created = null;
+        while (!stack.isEmpty()) {
+            var top = stack.peek();
+            if (top.next < top.supertypes.size()) {
+                var next = top.supertypes.get(top.next++);
+                if (!nodes.containsKey(next) && visiting.add(next)) {
+                    stack.push(pending(next));
+                }
+                continue;
+            }
+            stack.pop();
+            visiting.remove(top.name);
+            created = create(top);
+        }
+        return created;
+    }
+
+    private @NotNull Pending pending(@NotNull String name) {
+        var info = lookup.lookup(name);
+        if (info == null) {
+            // 每个类只会解析一次，所以每个找不到的类只记录一次
+            logger.debug("type not found: {}", name);
+        }
+        return new Pending(name, info);
+    }
+
+    private @NotNull Node create(@NotNull Pending pending) {
+        var info = pending.info;
+        Node superNode = null;
+        Node[] interfaces = EmptyNodes;
+        if (info != null) {
+            if (info.superName != null) {
+                superNode = nodes.get(info.superName);
+                if (superNode == null) {
+                    logger.error("circular dependency found: {}", pending.name);
+                }
+            }
+            if (info.interfaces != null && !info.interfaces.isEmpty()) {
+                interfaces = new Node[info.interfaces.size()];
+                int n = 0;
+                for (var itf : info.interfaces) {
+                    var itfNode = nodes.get(itf);
+                    if (itfNode != null) {
+                        interfaces[n++] = itfNode;
+                    } else {
+                        logger.error("circular dependency found: {}", pending.name);
+                    }
+                }
+                if (n != interfaces.length) {
+                    interfaces = Arrays.copyOf(interfaces, n);
+                }
+            }
+        }
+        int id = nodes.size();
+        var node = new Node(id, pending.name, info, superNode, interfaces);
+        var table = byId;
+        if (id == table.length) {
+            table = Arrays.copyOf(table, id * 2);
+        }
+        table[id] = node;
+        byId = table;
+        nodes.put(pending.name, node);
+        return node;
+    }
+
+    /**
+     * 继承关系索引的构建器，同名的类先添加的优先。
+     */
+    public static class Builder {
+        private final Map<String, ClassInfo> infos = new LinkedHashMap<>();
+        private IClassInfoLookup fallback;
+
+        /**
+         * 添加一个类，已经存在同名的类时忽略。
+         *
+         * @param info 类信息
+         * @return 当前实例
+         */
+        public @NotNull Builder add(@NotNull ClassInfo info) {
+            infos.putIfAbsent(info.name, info);
+            return this;
+        }
+
+        /**
+         * 添加一组类，已经存在同名的类时忽略。
+         *
+         * @param infos 类信息
+         * @return 当前实例
+         */
+        public @NotNull Builder addAll(@NotNull Collection<ClassInfo> infos) {
+            for (var info : infos) {
+                add(info);
+            }
+            return this;
+        }
+
+        /**
+         * 设置添加的类中查不到的类的来源，例如JDK中的类，这些类在第一次被用到时才解析。
+         *
+         * @param fallback 类信息来源，需要是线程安全的
+         * @return 当前实例
+         */
+        public @NotNull Builder withFallback(@Nullable IClassInfoLookup fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        /**
+         * 构建继承关系索引，添加的类全部在这里解析。
+         *
+         * @return 继承关系索引
+         */
+        public @NotNull ClassHierarchy build() {
+            var snapshot = Map.copyOf(infos);
+            IClassInfoLookup lookup = fallback == null ? snapshot::get
+                    : IClassInfoLookup.layered(List.of(snapshot::get, fallback));
+            var hierarchy = new ClassHierarchy(lookup);
+            hierarchy.resolve(ObjectName);
+            for (var name : infos.keySet()) {
+                hierarchy.resolve(name);
+            }
+            return hierarchy;
+        }
+    }
+}
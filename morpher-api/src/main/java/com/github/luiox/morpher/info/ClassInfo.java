@@ -1,5 +1,9 @@
 package com.github.luiox.morpher.info;
 
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
 import java.util.List;
 
 /**
@@ -44,4 +48,37 @@ public class ClassInfo {
         this.interfaces = interfaces;
         this.version = version;
     }
+
+    /**
+     * 从class文件头部创建类信息。
+     *
+     * @param classReader    class读取器
+     * @param skipInterfaces 是否跳过接口
+     * @return 类信息
+     */
+    public static @NotNull ClassInfo of(@NotNull ClassReader classReader, boolean skipInterfaces) {
+        var interfaces = skipInterfaces ? null : List.of(classReader.getInterfaces());
+        return new ClassInfo(classReader.getClassName(),
+                classReader.getAccess(),
+                classReader.getSuperName(),
+                interfaces,
+                classReader.readShort(6)
+        );
+    }
+
+    /**
+     * 从ClassNode创建类信息，接口列表会被拷贝，之后对ClassNode的修改不会影响类信息。
+     *
+     * @param classNode 类
+     * @return 类信息
+     */
+    public static @NotNull ClassInfo of(@NotNull ClassNode classNode) {
+        return new ClassInfo(classNode.name,
+                classNode.access,
+                classNode.superName,
+                List.copyOf(classNode.interfaces),
+                // 只保留主版本号，和class文件头部读取的一致
+                classNode.version & 0xFFFF
+        );
+    }
 }
@@ -0,0 +1,203 @@
+package com.github.luiox.morpher.info;
+
+import com.github.luiox.morpher.model.ClassResource;
+import com.github.luiox.morpher.model.IResourceContainer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 增量维护的类信息索引，资源位置到ClassInfo的映射，同时维护类名到资源位置的映射。
+ * <p>
+ * 每条记录同时记下对应的ClassResource对象和它的修改次数，{@link #sync}时只重新解析资源对象被替换
+ * 或者内容被{@link ClassResource#set}过的类，因此遍历之间没有变化的类不需要重新读取头部。
+ * 遍历写回、改名、增删类时会直接更新索引，不需要等到下次同步。
+ * <p>
+ * 索引是线程安全的，并行遍历时工作线程可以同时更新不同的类。
+ */
+public class ClassInfoIndex implements IClassInfoLookup {
+    /**
+     * 索引中的一条记录
+     */
+    private static final class Tracked {
+        final ClassResource resource;
+        final int revision;
+        final ClassInfo info;
+
+        Tracked(ClassResource resource, int revision, ClassInfo info) {
+            this.resource = resource;
+            this.revision = revision;
+            this.info = info;
+        }
+    }
+
+    /**
+     * 资源位置 -> 记录
+     */
+    private final Map<String, Tracked> byLocation = new ConcurrentHashMap<>();
+    /**
+     * 类名 -> 资源位置
+     */
+    private final Map<String, String> nameToLocation = new ConcurrentHashMap<>();
+
+    /**
+     * 和资源容器同步，只重新解析新增或者内容变化过的类，并移除容器中已经不存在的类。
+     *
+     * @param container 资源容器
+     * @return 重新解析的类数量
+     */
+    public int sync(@NotNull IResourceContainer container) {
+        Set<String> seen = new HashSet<>();
+        AtomicInteger parsed = new AtomicInteger();
+        container.classes().forEach(classResource -> {
+            var location = classResource.getLocation();
+            seen.add(location);
+            var tracked = byLocation.get(location);
+            if (tracked != null && tracked.resource == classResource
+                    && tracked.revision == classResource.getRevision()) {
+                return;
+            }
+            update(location, classResource, parse(classResource));
+            parsed.incrementAndGet();
+        });
+        if (seen.size() != byLocation.size()) {
+            for (var location : byLocation.keySet()) {
+                if (!seen.contains(location)) {
+                    remove(location);
+                }
+            }
+        }
+        return parsed.get();
+    }
+
+    /**
+     * 解析资源的头部并更新索引。
+     *
+     * @param location 资源位置
+     * @param resource 类资源
+     */
+    public void update(@NotNull String location, @NotNull ClassResource resource) {
+        update(location, resource, parse(resource));
+    }
+
+    /**
+     * 用处理完的ClassNode更新索引，不需要重新解析字节。
+     * <p>
+     * 需要在把内容写回资源之后调用，索引会记下资源当前的修改次数。
+     *
+     * @param location  资源位置
+     * @param resource  类资源
+     * @param classNode 类
+     */
+    public void update(@NotNull String location, @NotNull ClassResource resource, @NotNull ClassNode classNode) {
+        update(location, resource, ClassInfo.of(classNode));
+    }
+
+    /**
+     * 更新索引中的一个类。
+     *
+     * @param location 资源位置
+     * @param resource 类资源
+     * @param info     类信息
+     */
+    public void update(@NotNull String location, @NotNull ClassResource resource, @NotNull ClassInfo info) {
+        var old = byLocation.put(location, new Tracked(resource, resource.getRevision(), info));
+        if (old != null && !old.info.name.equals(info.name)) {
+            nameToLocation.remove(old.info.name, location);
+        }
+        nameToLocation.put(info.name, location);
+    }
+
+    /**
+     * 从索引中移除一个类。
+     *
+     * @param location 资源位置
+     */
+    public void remove(@NotNull String location) {
+        var old = byLocation.remove(location);
+        if (old != null) {
+            nameToLocation.remove(old.info.name, location);
+        }
+    }
+
+    /**
+     * 根据资源位置获取类信息。
+     *
+     * @param location 资源位置
+     * @return 类信息，不存在返回null
+     */
+    public @Nullable ClassInfo get(@NotNull String location) {
+        var tracked = byLocation.get(location);
+        return tracked == null ? null : tracked.info;
+    }
+
+    /**
+     * 根据类名获取类信息。
+     *
+     * @param className 斜杠分隔的类名
+     * @return 类信息，不存在返回null
+     */
+    public @Nullable ClassInfo getByName(@NotNull String className) {
+        var location = nameToLocation.get(className);
+        return location == null ? null : get(location);
+    }
+
+    @Override
+    public @Nullable ClassInfo lookup(@NotNull String className) {
+        return getByName(className);
+    }
+
+    /**
+     * 根据类名获取资源位置。
+     *
+     * @param className 斜杠分隔的类名
+     * @return 资源位置，不存在返回null
+     */
+    public @Nullable String getLocation(@NotNull String className) {
+        return nameToLocation.get(className);
+    }
+
+    /**
+     * 获取资源位置到类信息映射的快照，之后对索引的修改不会影响快照。
+     *
+     * @return 资源位置到类信息的映射
+     */
+    public @NotNull Map<String, ClassInfo> snapshot() {
+        Map<String, ClassInfo> result = new HashMap<>(byLocation.size() * 4 / 3 + 1);
+        for (var entry : byLocation.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().info);
+        }
+        return result;
+    }
+
+    /**
+     * 索引中的类数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return byLocation.size();
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        byLocation.clear();
+        nameToLocation.clear();
+    }
+
+    private static @NotNull ClassInfo parse(@NotNull ClassResource resource) {
+        var info = ClassHeaderParser.parse(resource.get());
+        // 只读取了头部，延迟加载的资源可以再丢弃内容
+        resource.release();
+        return info;
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.luiox.morpher.info;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * 按类名查找类信息。
+ */
+@FunctionalInterface
+public interface IClassInfoLookup {
+    /**
+     * 查找类信息
+     *
+     * @param className 斜杠分隔的类名，例如java/lang/Object
+     * @return 类信息，找不到返回null
+     */
+    @Nullable ClassInfo lookup(@NotNull String className);
+
+    /**
+     * 把多个来源组合成一个，依次在每一层中查找，先找到的优先。
+     * <p>
+     * 一般的顺序是：正在转换的容器中的类、依赖库中的类、JDK中的类。
+     *
+     * @param layers 查找层，按顺序查找
+     * @return 组合后的来源
+     */
+    static @NotNull IClassInfoLookup layered(@NotNull List<IClassInfoLookup> layers) {
+        var copy = List.copyOf(layers);
+        return className -> {
+            for (var layer : copy) {
+                var info = layer.lookup(className);
+                if (info != null) {
+                    return info;
+                }
+            }
+            return null;
+        };
+    }
+}
@@ -1,12 +1,10 @@
 package com.github.luiox.morpher.info;
 
-import com.github.luiox.morpher.model.ResourceContainer;
+import com.github.luiox.morpher.model.IResourceContainer;
 import com.github.luiox.morpher.util.type.Pair;
 import org.jetbrains.annotations.NotNull;
-import org.objectweb.asm.ClassReader;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,7 +24,7 @@ public class InfoUtil {
      * @param container 资源容器
      * @return 类名到Pair(资源位置, ClassInfo)的映射
      */
-    public static @NotNull Map<String, Pair<String, ClassInfo>> buildClassName2Info(@NotNull ResourceContainer container) {
+    public static @NotNull Map<String, Pair<String, ClassInfo>> buildClassName2Info(@NotNull IResourceContainer container) {
         return buildClassName2Info(container, false);
     }
 
@@ -37,25 +35,18 @@ public class InfoUtil {
      * @param skipInterfaces 是否跳过接口
      * @return 类名到Pair(资源位置, ClassInfo)的映射
      */
-    public static @NotNull Map<String, Pair<String, ClassInfo>> buildClassName2Info(@NotNull ResourceContainer container,
+    public static @NotNull Map<String, Pair<String, ClassInfo>> buildClassName2Info(@NotNull IResourceContainer container,
                                                                                     boolean skipInterfaces) {
         Map<String, Pair<String, ClassInfo>> classInfos = new HashMap<>();
 
         container.classes().forEach(classResource -> {
-            var bytes = classResource.get();
-            ClassReader classReader = new ClassReader(bytes);
-            classReader.getClassName();
-            var interfaces = skipInterfaces ? null : List.of(classReader.getInterfaces());
-            classInfos.put(classReader.getClassName(),
-                    Pair.of(classResource.getLocation(),
-                            new ClassInfo(classReader.getClassName(),
-                                    classReader.getAccess(),
-                                    classReader.getSuperName(),
-                                    interfaces,
-                                    classReader.readShort(6)
-                            )
-                    )
-            );
+            var info = ClassHeaderParser.parse(classResource.get());
+            if (skipInterfaces) {
+                info.interfaces = null;
+            }
+            classInfos.put(info.name, Pair.of(classResource.getLocation(), info));
+            // 只读取了头部，延迟加载的资源可以再丢弃内容
+            classResource.release();
         });
 
         return classInfos;
@@ -0,0 +1,129 @@
+package com.github.luiox.morpher.info;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 从当前运行的JDK镜像（jrt:/文件系统）中查找类信息。
+ * <p>
+ * 先通过/packages目录找到包所在的模块，再读取/modules下对应的class文件头部。
+ * 包到模块的映射和找到的类信息会被缓存，找不到的类不缓存，避免任意的类名让缓存无限增长。
+ * 读取在映射操作之外进行，多个线程同时查询同一个类时可能各读一次，保留先写入的结果。
+ */
+public class JrtClassInfoLookup implements IClassInfoLookup {
+    private static final Logger logger = LoggerFactory.getLogger(JrtClassInfoLookup.class);
+
+    private static volatile JrtClassInfoLookup Instance;
+
+    /**
+     * 获取共享的实例，JDK镜像在运行期间不会变化，所以缓存可以全局共享。
+     *
+     * @return 实例
+     */
+    public static @NotNull JrtClassInfoLookup getInstance() {
+        var instance = Instance;
+        if (instance == null) {
+            synchronized (JrtClassInfoLookup.class) {
+                instance = Instance;
+                if (instance == null) {
+                    instance = new JrtClassInfoLookup();
+                    Instance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * jrt文件系统，不可用时为null
+     */
+    private final FileSystem fileSystem;
+    /**
+     * 包名（点分隔） -> 模块名列表
+     */
+    private final Map<String, List<String>> packageModules = new ConcurrentHashMap<>();
+    /**
+     * 类名 -> 类信息
+     */
+    private final Map<String, ClassInfo> classInfos = new ConcurrentHashMap<>();
+
+    private JrtClassInfoLookup() {
+        FileSystem jrt = null;
+        try {
+            jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        } catch (Exception e) {
+            logger.error("jrt file system is not available, {}", e.getMessage());
+        }
+        this.fileSystem = jrt;
+    }
+
+    @Override
+    public @Nullable ClassInfo lookup(@NotNull String className) {
+        var cached = classInfos.get(className);
+        if (cached != null) {
+            return cached;
+        }
+        var info = load(className);
+        if (info == null) {
+            return null;
+        }
+        var previous = classInfos.putIfAbsent(className, info);
+        return previous != null ? previous : info;
+    }
+
+    private @Nullable ClassInfo load(@NotNull String className) {
+        if (fileSystem == null || className.startsWith("[")) {
+            return null;
+        }
+        int slash = className.lastIndexOf('/');
+        // 默认包的类不会在JDK里
+        if (slash < 0) {
+            return null;
+        }
+        var packageName = className.substring(0, slash).replace('/', '.');
+        for (var module : modulesOf(packageName)) {
+            var path = fileSystem.getPath("/modules", module, className + ".class");
+            try {
+                byte[] bytes = Files.readAllBytes(path);
+                return ClassHeaderParser.parse(bytes);
+            } catch (NoSuchFileException e) {
+                // 同一个包不会分散在多个模块里，不过还是都找一遍
+            } catch (IOException e) {
+                logger.error("Error reading {} from jrt, {}", className, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private @NotNull List<String> modulesOf(@NotNull String packageName) {
+        var modules = packageModules.get(packageName);
+        if (modules != null) {
+            return modules;
+        }
+        var dir = fileSystem.getPath("/packages", packageName);
+        if (!Files.isDirectory(dir)) {
+            // 不在JDK里的包不缓存
+            return List.of();
+        }
+        List<String> result = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.forEach(path -> result.add(path.getFileName().toString()));
+        } catch (IOException e) {
+            logger.error("Error listing package {} in jrt, {}", packageName, e.getMessage());
+            return List.of();
+        }
+        var previous = packageModules.putIfAbsent(packageName, List.copyOf(result));
+        return previous != null ? previous : packageModules.get(packageName);
+    }
+}
@@ -0,0 +1,220 @@
+package com.github.luiox.morpher.info;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * 依赖库类信息的二进制索引文件。
+ * <p>
+ * 文件中先是一个字符串表，之后每个jar一条记录：jar路径、大小、修改时间，以及jar中每个类的
+ * 类名、父类名、访问标志、版本号和接口列表，名称都以字符串表中的下标保存。
+ * 加载时整个文件一次读入内存再解析，扫描依赖库时大小和修改时间都没有变化的jar可以直接使用记录，
+ * 不需要再读取jar。
+ * <p>
+ * 文件格式：
+ * <pre>
+ * int magic, int version
+ * int stringCount, { int length, byte[length] utf8 } * stringCount
+ * int jarCount, {
+ *     int path, long size, long lastModified, int classCount, {
+ *         int name, int superName(-1表示null), int access, int version, int interfaceCount, int[interfaceCount]
+ *     } * classCount
+ * } * jarCount
+ * </pre>
+ */
+public final class LibraryIndexFile {
+    private static final Logger logger = LoggerFactory.getLogger(LibraryIndexFile.class);
+
+    private static final int Magic = 0x4D4C4958;
+    private static final int FormatVersion = 1;
+
+    private LibraryIndexFile() {
+    }
+
+    /**
+     * 一个jar的记录
+     */
+    public static final class JarRecord {
+        /**
+         * jar的绝对路径
+         */
+        public final String path;
+        /**
+         * 文件大小
+         */
+        public final long size;
+        /**
+         * 修改时间（毫秒）
+         */
+        public final long lastModified;
+        /**
+         * jar中的类
+         */
+        public final List<ClassInfo> classes;
+
+        public JarRecord(@NotNull String path, long size, long lastModified, @NotNull List<ClassInfo> classes) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.classes = classes;
+        }
+
+        /**
+         * 记录是否和jar文件当前的状态一致
+         *
+         * @param size         文件大小
+         * @param lastModified 修改时间（毫秒）
+         * @return 是否一致
+         */
+        public boolean matches(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified;
+        }
+    }
+
+    /**
+     * 加载索引文件。
+     * <p>
+     * 文件不存在、格式不对或者版本不同时返回空的映射，调用者会重新扫描所有jar。
+     *
+     * @param file 索引文件
+     * @return jar路径 -> 记录
+     */
+    public static @NotNull Map<String, JarRecord> load(@NotNull Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Map.of();
+        }
+        try {
+            // 索引文件不大，直接读入堆内存，映射的话在GC回收之前文件会一直被占用
+            return read(ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            logger.error("Failed to load library index {}, {}", file, e.toString());
+            return Map.of();
+        }
+    }
+
+    private static @NotNull Map<String, JarRecord> read(@NotNull ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != Magic || buffer.getInt() != FormatVersion) {
+            throw new IOException("not a library index or unsupported version");
+        }
+        int stringCount = buffer.getInt();
+        String[] strings = new String[stringCount];
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < stringCount; i++) {
+            int length = buffer.getInt();
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        int jarCount = buffer.getInt();
+        Map<String, JarRecord> records = new LinkedHashMap<>(jarCount * 4 / 3 + 1);
+        for (int i = 0; i < jarCount; i++) {
+            var path = strings[buffer.getInt()];
+            long size = buffer.getLong();
+            long lastModified = buffer.getLong();
+            int classCount = buffer.getInt();
+            List<ClassInfo> classes = new ArrayList<>(classCount);
+            for (int j = 0; j < classCount; j++) {
+                var name = strings[buffer.getInt()];
+                int superId = buffer.getInt();
+                int access = buffer.getInt();
+                int version = buffer.getInt();
+                int interfaceCount = buffer.getInt();
+                String[] interfaces = new String[interfaceCount];
+                for (int k = 0; k < interfaceCount; k++) {
+                    interfaces[k] = strings[buffer.getInt()];
+                }
+                classes.add(new ClassInfo(name, access, superId < 0 ? null : strings[superId],
+                        List.of(interfaces), version));
+            }
+            records.put(path, new JarRecord(path, size, lastModified, classes));
+        }
+        return records;
+    }
+
+    /**
+     * 写出索引文件，先写到临时文件再替换，写出失败不会破坏已有的索引。
+     *
+     * @param file    索引文件
+     * @param records jar的记录
+     * @throws IOException 写出异常
+     */
+    public static void write(@NotNull Path file, @NotNull Collection<JarRecord> records) throws IOException {
+        // 构建字符串表
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (var record : records) {
+            intern(record.path, stringIds, strings);
+            for (var info : record.classes) {
+                intern(info.name, stringIds, strings);
+                intern(info.superName, stringIds, strings);
+                if (info.interfaces != null) {
+                    for (var itf : info.interfaces) {
+                        intern(itf, stringIds, strings);
+                    }
+                }
+            }
+        }
+
+        var absolute = file.toAbsolutePath();
+        var parent = absolute.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        var temp = Files.createTempFile(parent, absolute.getFileName().toString(), ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(Magic);
+                out.writeInt(FormatVersion);
+                out.writeInt(strings.size());
+                for (var string : strings) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                out.writeInt(records.size());
+                for (var record : records) {
+                    out.writeInt(stringIds.get(record.path));
+                    out.writeLong(record.size);
+                    out.writeLong(record.lastModified);
+                    out.writeInt(record.classes.size());
+                    for (var info : record.classes) {
+                        out.writeInt(stringIds.get(info.name));
+                        out.writeInt(info.superName == null ? -1 : stringIds.get(info.superName));
+                        out.writeInt(info.access);
+                        out.writeInt(info.version);
+                        var interfaces = info.interfaces == null ? List.<String>of() : info.interfaces;
+                        out.writeInt(interfaces.size());
+                        for (var itf : interfaces) {
+                            out.writeInt(stringIds.get(itf));
+                        }
+                    }
+                }
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void intern(@Nullable String string, @NotNull Map<String, Integer> ids, @NotNull List<String> strings) {
+        if (string != null && !ids.containsKey(string)) {
+            ids.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+}
@@ -2,7 +2,10 @@ package com.github.luiox.morpher.jar;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public interface IJarReader {
     /**
@@ -12,4 +15,37 @@ public interface IJarReader {
      * @throws IOException 如果出现问题会抛出异常
      */
     void read(BiConsumer<String, InputStream> consumer) throws IOException;
+
+    /**
+     * 读取jar，以ByteBuffer的形式交出每个条目的内容。
+     * <p>
+     * 缓冲区可能是只读的映射区切片，只在回调期间有效，调用者需要保存内容时应当自己拷贝。
+     * 默认实现基于{@link #read(BiConsumer)}。
+     *
+     * @param consumer 每个条目会调用一次<条目路径，条目内容>的回调
+     * @throws IOException 如果出现问题会抛出异常
+     */
+    default void readBuffer(BiConsumer<String, ByteBuffer> consumer) throws IOException {
+        read((entryName, is) -> {
+            try {
+                consumer.accept(entryName, ByteBuffer.wrap(is.readAllBytes()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 读取jar，但把每个条目内容的获取（通常是解压）推迟到调用者需要的时候。
+     * <p>
+     * 回调按条目顺序在读取线程上调用，Supplier可以被转交给其他线程执行，
+     * 读取失败时Supplier抛出{@link UncheckedIOException}。
+     * 默认实现在读取线程上读出内容，Supplier只是返回已经读好的缓冲区。
+     *
+     * @param consumer 每个条目会调用一次<条目路径，条目内容的Supplier>的回调
+     * @throws IOException 如果出现问题会抛出异常
+     */
+    default void readDeferred(BiConsumer<String, Supplier<ByteBuffer>> consumer) throws IOException {
+        readBuffer((entryName, buffer) -> consumer.accept(entryName, () -> buffer));
+    }
 }
@@ -3,6 +3,8 @@ package com.github.luiox.morpher.jar;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.function.Consumer;
 
 public interface IJarWriter {
@@ -22,5 +24,24 @@ public interface IJarWriter {
          * @param content   条目的内容，如果为null，则写入一个空条目
          */
         void writeEntry(@NotNull String entryName, byte @Nullable [] content);
+
+        /**
+         * 写入一个没有修改过的、来自映射jar的条目
+         * <p>
+         * 支持的写入器直接拷贝源jar中已经压缩好的数据和CRC，不需要重新压缩；
+         * 默认实现读取（解压）条目内容后按照{@link #writeEntry}写入。
+         *
+         * @param entryName 条目的路径
+         * @param archive   源jar
+         * @param entry     在源jar中的条目
+         */
+        default void writeRawEntry(@NotNull String entryName, @NotNull MappedJarFile archive,
+                                   @NotNull MappedJarFile.Entry entry) {
+            try {
+                writeEntry(entryName, archive.readBytes(entry));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 }
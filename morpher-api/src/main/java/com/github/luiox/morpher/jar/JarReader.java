@@ -3,6 +3,7 @@ package com.github.luiox.morpher.jar;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Enumeration;
 import java.util.function.BiConsumer;
 import java.util.jar.JarEntry;
@@ -29,4 +30,19 @@ public class JarReader implements IJarReader {
             throw new IOException("jar read error, " + e.getMessage());
         }
     }
+
+    @Override
+    public void readBuffer(BiConsumer<String, ByteBuffer> consumer) throws IOException {
+        try (var jarFile = new JarFile(path)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                try (InputStream entryInputStream = jarFile.getInputStream(entry)) {
+                    consumer.accept(entry.getName(), ByteBuffer.wrap(entryInputStream.readAllBytes()));
+                }
+            }
+        } catch (Exception e) {
+            throw new IOException("jar read error, " + e.getMessage());
+        }
+    }
 }
@@ -6,6 +6,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class JarUtil {
     private static final Logger logger = LoggerFactory.getLogger(JarUtil.class);
@@ -66,8 +74,94 @@ public class JarUtil {
         if (bytes.length < 4) {
             return false;
         }
-        int magicNumber = (bytes[0] << 24) | (bytes[1] << 16) | (bytes[2] << 8) | bytes[3];
+        int magicNumber = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16)
+                | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
         return magicNumber == JarMagicNumber;
     }
 
+    /**
+     * 检查通过前四个字节判定一个缓冲区是不是class文件，不改变缓冲区的位置
+     *
+     * @param buffer 缓冲区
+     * @return 是否是class文件
+     */
+    public static boolean isClassFile(@NotNull ByteBuffer buffer) {
+        if (buffer.remaining() < 4) {
+            return false;
+        }
+        int p = buffer.position();
+        int magicNumber = ((buffer.get(p) & 0xFF) << 24) | ((buffer.get(p + 1) & 0xFF) << 16)
+                | ((buffer.get(p + 2) & 0xFF) << 8) | (buffer.get(p + 3) & 0xFF);
+        return magicNumber == JarMagicNumber;
+    }
+
+    /**
+     * 把缓冲区剩余的内容转换成字节数组。
+     * 如果缓冲区正好包装了一个完整的数组，直接返回该数组而不拷贝。
+     *
+     * @param buffer 缓冲区
+     * @return 字节数组
+     */
+    public static byte @NotNull [] toByteArray(@NotNull ByteBuffer buffer) {
+        if (buffer.hasArray() && !buffer.isReadOnly() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(buffer.position(), bytes);
+        return bytes;
+    }
+
+    /**
+     * 在目标文件所在的目录中创建一个临时文件。
+     * <p>
+     * 写jar时先写到临时文件，完成后再用{@link #replaceWith}替换目标。
+     * 目标可能正是导入时映射的源jar，直接截断目标会破坏还没有拷贝出来的源数据。
+     * <p>
+     * 临时文件替换目标之后就是最终的jar，因此不使用只有所有者可读写的{@link Files#createTempFile}：
+     * 目标已经存在时沿用目标的POSIX权限，否则和普通新建的文件一样由umask决定。
+     *
+     * @param target 目标文件
+     * @return 临时文件
+     * @throws IOException 创建失败时抛出
+     */
+    public static @NotNull Path createTempSibling(@NotNull Path target) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path dir = absolute.getParent();
+        String prefix = absolute.getFileName().toString() + ".";
+        Path temp;
+        while (true) {
+            temp = dir.resolve(prefix + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                Files.createFile(temp);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // 名称冲突，换一个重试
+            }
+        }
+        try {
+            if (Files.exists(absolute) && Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(absolute));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * 用写好的临时文件替换目标文件，文件系统支持时使用原子移动。
+     *
+     * @param temp   临时文件
+     * @param target 目标文件
+     * @throws IOException 移动失败时抛出
+     */
+    public static void replaceWith(@NotNull Path temp, @NotNull Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 }
@@ -4,8 +4,12 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
@@ -15,12 +19,25 @@ public class JarWriter implements IJarWriter {
 
     String path;
     JarOutputStream jos;
+    // 已经写出的条目名，重复的条目跳过，和ParallelJarWriter一致
+    Set<String> names;
 
     public JarWriter(String path) {
         this.path = path;
     }
 
+    /**
+     * 写入一个条目，重复的条目输出错误后跳过。
+     *
+     * @param entryName 条目的路径
+     * @param content   条目的内容，如果为null，则写入一个空条目
+     * @throws UncheckedIOException 写出失败，此时输出流可能停在条目中间，整个jar都不能再使用
+     */
     public void writeEntry(String entryName, byte[] content) {
+        if (!names.add(entryName)) {
+            logger.error("duplicate entry: {}", entryName);
+            return;
+        }
         JarEntry jarEntry = new JarEntry(entryName);
         try {
             jos.putNextEntry(jarEntry);
@@ -34,20 +51,49 @@ public class JarWriter implements IJarWriter {
                 jos.closeEntry();
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Failed to write entry " + entryName, e);
         }
     }
 
+    /**
+     * 写出完整jar。
+     * <p>
+     * 先写到目标目录下的临时文件，全部写完后再替换目标，因此目标可以就是导入时映射的源jar。
+     * 任何一个条目写出失败时，整个jar都视为失败，删除临时文件，目标保持原样。
+     */
     @Override
     public void write(@NotNull Consumer<IEntryWriter> handler) {
-        try (JarOutputStream t = new JarOutputStream(new FileOutputStream(path))) {
+        Path target = Path.of(path);
+        Path temp;
+        try {
+            temp = JarUtil.createTempSibling(target);
+        } catch (IOException e) {
+            logger.error("Failed to create temp file for {}, {}", path, e.getMessage());
+            return;
+        }
+        boolean completed = false;
+        try (JarOutputStream t = new JarOutputStream(Files.newOutputStream(temp))) {
             jos = t;
+            names = new HashSet<>();
 
             handler.accept(this::writeEntry);
 
-        } catch (IOException e) {
-            logger.info("Failed to write jar file, e: {}", e.getMessage());
-            logger.error(e.getMessage());
+            completed = true;
+        } catch (IOException | UncheckedIOException e) {
+            completed = false;
+            logger.error("Failed to write jar file {}, target is left unchanged", path, e);
+        } finally {
+            jos = null;
+            names = null;
+            try {
+                if (completed) {
+                    JarUtil.replaceWith(temp, target);
+                } else {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException e) {
+                logger.error("Failed to replace {}, {}", path, e.getMessage());
+            }
         }
     }
 
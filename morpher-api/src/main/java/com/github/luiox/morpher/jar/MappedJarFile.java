@@ -0,0 +1,442 @@
+package com.github.luiox.morpher.jar;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * 基于内存映射的jar（zip）文件。
+ * <p>
+ * 自己解析zip的中央目录，不经过JarFile。STORED条目直接以ByteBuffer切片的形式返回，不发生拷贝；
+ * DEFLATED条目直接解压到大小正好的数组中。所有读取方法都只使用绝对位置访问映射区，可以被多个线程同时调用。
+ * 映射的文件不能超过2GB。
+ * <p>
+ * 映射通过{@link #close()}立即释放，释放之后再读取会抛出{@link IllegalStateException}，
+ * 从映射区切出的缓冲区也随之失效。映射存在期间Windows上无法删除或覆盖这个文件，用完后应当尽快关闭。
+ */
+public class MappedJarFile implements AutoCloseable {
+    private static final int LocalHeaderSignature = 0x04034b50;
+    private static final int CentralHeaderSignature = 0x02014b50;
+    private static final int EndSignature = 0x06054b50;
+    private static final int Zip64LocatorSignature = 0x07064b50;
+    private static final int Zip64EndSignature = 0x06064b50;
+    private static final int Zip64ExtraId = 0x0001;
+    private static final long Zip64Magic = 0xFFFFFFFFL;
+    /**
+     * 解压时每次从映射区拷贝的压缩数据大小
+     */
+    private static final int InflateChunkSize = 1 << 14;
+
+    /**
+     * jar中的一个条目，信息全部来自中央目录
+     */
+    public static class Entry {
+        /**
+         * 条目在中央目录中的序号
+         */
+        public final int index;
+        /**
+         * 条目路径
+         */
+        public final String name;
+        /**
+         * 压缩方式，{@link ZipEntry#STORED}或{@link ZipEntry#DEFLATED}
+         */
+        public final int method;
+        /**
+         * 未压缩数据的CRC32
+         */
+        public final long crc;
+        /**
+         * 压缩后的大小
+         */
+        public final long compressedSize;
+        /**
+         * 未压缩的大小
+         */
+        public final long size;
+        /**
+         * 本地文件头在文件中的偏移
+         */
+        public final long localHeaderOffset;
+
+        Entry(int index, String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.index = index;
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        /**
+         * 是否是目录条目
+         *
+         * @return 是否是目录
+         */
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    /**
+     * 文件路径
+     */
+    private final Path path;
+    /**
+     * 映射所属的内存区域，关闭它即解除映射
+     */
+    private final Arena arena;
+    /**
+     * 能否通过{@link #close()}主动释放映射
+     */
+    private final boolean closeable;
+    /**
+     * 是否已经关闭
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+    /**
+     * 整个文件的只读映射
+     */
+    private final ByteBuffer buffer;
+    /**
+     * 按中央目录顺序排列的条目
+     */
+    private final List<Entry> entries;
+
+    private MappedJarFile(Path path, Arena arena, boolean closeable, ByteBuffer buffer, List<Entry> entries) {
+        this.path = path;
+        this.arena = arena;
+        this.closeable = closeable;
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    /**
+     * 映射并解析一个jar文件，映射建立后文件通道立刻关闭，映射本身需要调用{@link #close()}释放。
+     *
+     * @param path jar路径
+     * @return MappedJarFile实例
+     * @throws IOException 文件不可读或者不是合法的zip时抛出
+     */
+    public static @NotNull MappedJarFile open(@NotNull Path path) throws IOException {
+        return open(path, Arena.ofShared(), true);
+    }
+
+    /**
+     * 映射并解析一个jar文件，映射在实例不可达之后由GC释放，{@link #close()}不做任何事。
+     * <p>
+     * 只用于无法确定最后一次读取发生在什么时候的场景，例如交给其他线程的延迟读取。
+     *
+     * @param path jar路径
+     * @return MappedJarFile实例
+     * @throws IOException 文件不可读或者不是合法的zip时抛出
+     */
+    static @NotNull MappedJarFile openAutoReleased(@NotNull Path path) throws IOException {
+        return open(path, Arena.ofAuto(), false);
+    }
+
+    private static @NotNull MappedJarFile open(@NotNull Path path, @NotNull Arena arena,
+                                               boolean closeable) throws IOException {
+        try {
+            MemorySegment mapped;
+            try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("jar larger than 2GB can not be mapped: " + path);
+                }
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+            }
+            ByteBuffer buffer = mapped.asByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+            var entries = Collections.unmodifiableList(readCentralDirectory(buffer));
+            return new MappedJarFile(path, arena, closeable, buffer, entries);
+        } catch (IOException | RuntimeException e) {
+            if (closeable) {
+                arena.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 映射是否仍然有效
+     *
+     * @return 是否有效
+     */
+    public boolean isOpen() {
+        return !closed.get() && arena.scope().isAlive();
+    }
+
+    /**
+     * 释放映射，重复调用没有影响。
+     * <p>
+     * 之后对这个实例以及之前交出的映射区切片的访问都会抛出{@link IllegalStateException}，
+     * 已经拷贝到堆上的内容（例如{@link #readBytes}的结果）不受影响。
+     */
+    @Override
+    public void close() {
+        if (closeable && closed.compareAndSet(false, true)) {
+            arena.close();
+        }
+    }
+
+    /**
+     * 获取文件路径
+     *
+     * @return 文件路径
+     */
+    public @NotNull Path getPath() {
+        return path;
+    }
+
+    /**
+     * 获取所有条目，顺序与中央目录一致
+     *
+     * @return 条目列表
+     */
+    public @NotNull List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * 获取条目原始的（可能是压缩过的）数据，不发生拷贝，切片只在映射释放之前有效。
+     *
+     * @param entry 条目
+     * @return 只读的数据切片
+     * @throws IOException 本地文件头损坏时抛出
+     */
+    public @NotNull ByteBuffer rawData(@NotNull Entry entry) throws IOException {
+        int header = checkedOffset(entry.localHeaderOffset);
+        if (header + 30 > buffer.limit() || buffer.getInt(header) != LocalHeaderSignature) {
+            throw new IOException("invalid local header for entry: " + entry.name);
+        }
+        int nameLength = Short.toUnsignedInt(buffer.getShort(header + 26));
+        int extraLength = Short.toUnsignedInt(buffer.getShort(header + 28));
+        int dataOffset = header + 30 + nameLength + extraLength;
+        long end = dataOffset + entry.compressedSize;
+        if (end > buffer.limit()) {
+            throw new IOException("truncated data for entry: " + entry.name);
+        }
+        return buffer.slice(dataOffset, (int) entry.compressedSize).asReadOnlyBuffer();
+    }
+
+    /**
+     * 读取条目解压后的内容。
+     * STORED条目返回映射区的只读切片，DEFLATED条目返回包装了新数组的堆缓冲区。
+     *
+     * @param entry 条目
+     * @return 条目内容
+     * @throws IOException 解压失败时抛出
+     */
+    public @NotNull ByteBuffer read(@NotNull Entry entry) throws IOException {
+        if (entry.method == ZipEntry.STORED) {
+            return rawData(entry);
+        }
+        return ByteBuffer.wrap(inflate(entry));
+    }
+
+    /**
+     * 读取条目解压后的内容到数组。
+     * DEFLATED条目直接解压到大小正好的数组，STORED条目从映射区拷贝一次。
+     *
+     * @param entry 条目
+     * @return 条目内容
+     * @throws IOException 解压失败时抛出
+     */
+    public byte @NotNull [] readBytes(@NotNull Entry entry) throws IOException {
+        if (entry.method == ZipEntry.STORED) {
+            var data = rawData(entry);
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            return bytes;
+        }
+        return inflate(entry);
+    }
+
+    /**
+     * 只读取条目内容的前几个字节，DEFLATED条目只解压需要的部分，用于检查魔数等场景。
+     *
+     * @param entry  条目
+     * @param length 需要的字节数
+     * @return 内容的前length个字节，条目不足length时返回全部内容
+     * @throws IOException 解压失败时抛出
+     */
+    public byte @NotNull [] readHead(@NotNull Entry entry, int length) throws IOException {
+        int n = (int) Math.min(length, entry.size);
+        byte[] head = new byte[n];
+        if (entry.method == ZipEntry.STORED) {
+            rawData(entry).get(0, head);
+            return head;
+        }
+        if (entry.method != ZipEntry.DEFLATED) {
+            throw new IOException("unsupported compression method " + entry.method + " for entry: " + entry.name);
+        }
+        int read = inflate(entry, head, n);
+        return read == n ? head : Arrays.copyOf(head, read);
+    }
+
+    private byte @NotNull [] inflate(@NotNull Entry entry) throws IOException {
+        if (entry.method != ZipEntry.DEFLATED) {
+            throw new IOException("unsupported compression method " + entry.method + " for entry: " + entry.name);
+        }
+        if (entry.size > Integer.MAX_VALUE - 8) {
+            throw new IOException("entry too large: " + entry.name);
+        }
+        byte[] out = new byte[(int) entry.size];
+        if (inflate(entry, out, out.length) != out.length) {
+            throw new IOException("size mismatch when inflating entry: " + entry.name);
+        }
+        return out;
+    }
+
+    /**
+     * 解压条目的前length个字节到out中。
+     * <p>
+     * 可关闭的映射区不能直接交给Inflater，压缩数据分块拷贝到堆上再输入。
+     *
+     * @param entry  条目
+     * @param out    输出数组
+     * @param length 需要的字节数
+     * @return 实际解压出的字节数
+     * @throws IOException 解压失败时抛出
+     */
+    private int inflate(@NotNull Entry entry, byte @NotNull [] out, int length) throws IOException {
+        var data = rawData(entry);
+        byte[] chunk = new byte[Math.min(data.remaining(), InflateChunkSize)];
+        Inflater inflater = new Inflater(true);
+        try {
+            int n = 0;
+            while (n < length) {
+                if (inflater.needsInput()) {
+                    if (!data.hasRemaining()) {
+                        break;
+                    }
+                    int k = Math.min(chunk.length, data.remaining());
+                    data.get(chunk, 0, k);
+                    inflater.setInput(chunk, 0, k);
+                }
+                int read = inflater.inflate(out, n, length - n);
+                if (read == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            return n;
+        } catch (DataFormatException e) {
+            throw new IOException("invalid deflate data for entry: " + entry.name, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int checkedOffset(long offset) throws IOException {
+        if (offset < 0 || offset > Integer.MAX_VALUE) {
+            throw new IOException("offset out of range: " + offset);
+        }
+        return (int) offset;
+    }
+
+    private static @NotNull List<Entry> readCentralDirectory(@NotNull ByteBuffer buffer) throws IOException {
+        int end = findEndRecord(buffer);
+        long total = Short.toUnsignedInt(buffer.getShort(end + 10));
+        long cdSize = Integer.toUnsignedLong(buffer.getInt(end + 12));
+        long cdOffset = Integer.toUnsignedLong(buffer.getInt(end + 16));
+        // zip数据前面可能还有其他内容（例如jmod的文件头），记录中的偏移都是相对zip数据开头的
+        long base = Math.max(0, end - cdSize - cdOffset);
+
+        // zip64的结束记录
+        int locator = end - 20;
+        if (locator >= 0 && buffer.getInt(locator) == Zip64LocatorSignature) {
+            int zip64End = checkedOffset(buffer.getLong(locator + 8));
+            if (zip64End + 56 > buffer.limit() || buffer.getInt(zip64End) != Zip64EndSignature) {
+                throw new IOException("invalid zip64 end of central directory record");
+            }
+            total = buffer.getLong(zip64End + 32);
+            cdOffset = buffer.getLong(zip64End + 48);
+            base = 0;
+        }
+
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("too many entries: " + total);
+        }
+        List<Entry> entries = new ArrayList<>((int) total);
+        int pos = checkedOffset(base + cdOffset);
+        for (int i = 0; i < total; i++) {
+            if (pos + 46 > buffer.limit() || buffer.getInt(pos) != CentralHeaderSignature) {
+                throw new IOException("invalid central directory header at " + pos);
+            }
+            int flags = Short.toUnsignedInt(buffer.getShort(pos + 8));
+            if ((flags & 1) != 0) {
+                throw new IOException("encrypted entries are not supported");
+            }
+            int method = Short.toUnsignedInt(buffer.getShort(pos + 10));
+            long crc = Integer.toUnsignedLong(buffer.getInt(pos + 16));
+            long compressedSize = Integer.toUnsignedLong(buffer.getInt(pos + 20));
+            long size = Integer.toUnsignedLong(buffer.getInt(pos + 24));
+            int nameLength = Short.toUnsignedInt(buffer.getShort(pos + 28));
+            int extraLength = Short.toUnsignedInt(buffer.getShort(pos + 30));
+            int commentLength = Short.toUnsignedInt(buffer.getShort(pos + 32));
+            long localHeaderOffset = Integer.toUnsignedLong(buffer.getInt(pos + 42));
+
+            byte[] nameBytes = new byte[nameLength];
+            buffer.get(pos + 46, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // zip64扩展字段，只有值为0xFFFFFFFF的字段才会出现，顺序固定
+            int extra = pos + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = Short.toUnsignedInt(buffer.getShort(extra));
+                int length = Short.toUnsignedInt(buffer.getShort(extra + 2));
+                if (id == Zip64ExtraId) {
+                    int field = extra + 4;
+                    if (size == Zip64Magic) {
+                        size = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == Zip64Magic) {
+                        compressedSize = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == Zip64Magic) {
+                        localHeaderOffset = buffer.getLong(field);
+                    }
+                    break;
+                }
+                extra += 4 + length;
+            }
+
+            entries.add(new Entry(i, name, method, crc, compressedSize, size, base + localHeaderOffset));
+            pos = extraEnd + commentLength;
+        }
+        return entries;
+    }
+
+    private static int findEndRecord(@NotNull ByteBuffer buffer) throws IOException {
+        // 结束记录22字节，后面最多跟65535字节的注释
+        int min = Math.max(0, buffer.limit() - 22 - 0xFFFF);
+        for (int pos = buffer.limit() - 22; pos >= min; pos--) {
+            if (buffer.getInt(pos) == EndSignature) {
+                return pos;
+            }
+        }
+        throw new IOException("end of central directory record not found");
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.luiox.morpher.jar;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 基于内存映射的jar读取器。
+ * <p>
+ * 通过{@link MappedJarFile}自己解析中央目录，STORED条目以切片形式交给调用者，
+ * DEFLATED条目直接解压到大小正好的数组中，避免JarReader中每个条目在堆上的两次拷贝。
+ * <p>
+ * {@link #read}和{@link #readBuffer}在返回前释放各自的映射；{@link #open()}得到的映射归读取器所有，
+ * 在{@link #close()}时释放。
+ */
+public class MappedJarReader implements IJarReader, AutoCloseable {
+    public final String path;
+    /**
+     * {@link #open()}打开的映射，没有打开时为null
+     */
+    private MappedJarFile archive;
+
+    public MappedJarReader(String path) {
+        this.path = path;
+    }
+
+    /**
+     * 打开并映射jar文件，多次调用返回同一个映射。
+     * <p>
+     * 从这个映射导入的资源在导出之前都可能需要读取它，因此映射一直保留到{@link #close()}。
+     *
+     * @return 映射后的jar文件
+     * @throws IOException 打开失败时抛出
+     */
+    public synchronized @NotNull MappedJarFile open() throws IOException {
+        if (archive == null || !archive.isOpen()) {
+            archive = MappedJarFile.open(Path.of(path));
+        }
+        return archive;
+    }
+
+    /**
+     * 释放{@link #open()}打开的映射
+     */
+    @Override
+    public synchronized void close() {
+        if (archive != null) {
+            archive.close();
+            archive = null;
+        }
+    }
+
+    @Override
+    public void read(BiConsumer<String, InputStream> consumer) throws IOException {
+        try (var jarFile = MappedJarFile.open(Path.of(path))) {
+            for (var entry : jarFile.entries()) {
+                consumer.accept(entry.name, new ByteArrayInputStream(jarFile.readBytes(entry)));
+            }
+        }
+    }
+
+    @Override
+    public void readBuffer(BiConsumer<String, ByteBuffer> consumer) throws IOException {
+        try (var jarFile = MappedJarFile.open(Path.of(path))) {
+            for (var entry : jarFile.entries()) {
+                consumer.accept(entry.name, jarFile.read(entry));
+            }
+        }
+    }
+
+    /**
+     * 只解析中央目录，条目的解压推迟到Supplier被调用时进行，Supplier可以在任意线程上并发调用。
+     * <p>
+     * 无法知道最后一个Supplier什么时候被调用，因此这里的映射在不再被引用之后由GC释放。
+     */
+    @Override
+    public void readDeferred(BiConsumer<String, Supplier<ByteBuffer>> consumer) throws IOException {
+        var jarFile = MappedJarFile.openAutoReleased(Path.of(path));
+        for (var entry : jarFile.entries()) {
+            consumer.accept(entry.name, () -> {
+                try {
+                    return jarFile.read(entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
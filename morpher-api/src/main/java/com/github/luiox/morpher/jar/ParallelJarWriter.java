@@ -0,0 +1,438 @@
+package com.github.luiox.morpher.jar;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * 并行压缩的jar写入器。
+ * <p>
+ * 每个条目在工作线程上计算CRC并压缩到独立的缓冲区，写出线程按照提交顺序把压缩好的数据拼接进zip流，
+ * 本地文件头中直接写入正确的CRC和大小，不需要数据描述符。支持设置压缩级别，或者全部以STORED方式存储。
+ * 条目数量或偏移超过zip格式的限制时自动使用zip64。
+ */
+public class ParallelJarWriter implements IJarWriter {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelJarWriter.class);
+
+    private static final int LocalHeaderSignature = 0x04034b50;
+    private static final int CentralHeaderSignature = 0x02014b50;
+    private static final int EndSignature = 0x06054b50;
+    private static final int Zip64LocatorSignature = 0x07064b50;
+    private static final int Zip64EndSignature = 0x06064b50;
+    private static final int Utf8Flag = 0x0800;
+    private static final long Zip64Limit = 0xFFFFFFFFL;
+
+    String path;
+    /**
+     * 压缩使用的线程数
+     */
+    int parallelism;
+    /**
+     * 压缩级别，见{@link Deflater}
+     */
+    int level = Deflater.DEFAULT_COMPRESSION;
+    /**
+     * 是否所有条目都以STORED方式存储
+     */
+    boolean stored = false;
+
+    public ParallelJarWriter(String path) {
+        this(path, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelJarWriter(String path, int parallelism) {
+        this.path = path;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 设置压缩级别。
+     *
+     * @param level 0-9，或者{@link Deflater#DEFAULT_COMPRESSION}
+     * @return 当前实例
+     */
+    public ParallelJarWriter withLevel(int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("invalid compression level: " + level);
+        }
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * 设置是否以STORED方式存储所有条目，不做压缩。
+     *
+     * @param stored 是否存储
+     * @return 当前实例
+     */
+    public ParallelJarWriter withStored(boolean stored) {
+        this.stored = stored;
+        return this;
+    }
+
+    /**
+     * 准备好写出的条目
+     */
+    static class PreparedEntry {
+        final byte[] name;
+        final int method;
+        final long crc;
+        final long size;
+        final ByteBuffer data;
+        long localHeaderOffset;
+
+        PreparedEntry(byte[] name, int method, long crc, long size, ByteBuffer data) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+
+        long compressedSize() {
+            return data.remaining();
+        }
+    }
+
+    /**
+     * 写出完整jar。
+     * <p>
+     * 先写到目标目录下的临时文件，全部写完后再替换目标，因此目标可以就是导入时映射的源jar。
+     * 任何一个条目读取、压缩或写出失败时，整个jar都视为失败，删除临时文件，目标保持原样。
+     */
+    @Override
+    public void write(@NotNull Consumer<IEntryWriter> handler) {
+        long dosTime = dosTime(LocalDateTime.now());
+        Path target = Path.of(path);
+        Path temp;
+        try {
+            temp = JarUtil.createTempSibling(target);
+        } catch (IOException e) {
+            logger.error("Failed to create temp file for {}, {}", path, e.getMessage());
+            return;
+        }
+        boolean completed = false;
+        try (var os = new ZipStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+             var executor = new ForkJoinPool(parallelism)) {
+            Set<String> names = new HashSet<>();
+            Deque<Future<PreparedEntry>> pending = new ArrayDeque<>();
+            List<PreparedEntry> written = new ArrayList<>();
+            int maxPending = parallelism * 4;
+
+            handler.accept(new IEntryWriter() {
+                @Override
+                public void writeEntry(@NotNull String entryName, byte @Nullable [] content) {
+                    submit(entryName, () -> prepare(entryName, content));
+                }
+
+                @Override
+                public void writeRawEntry(@NotNull String entryName,
+                                          @NotNull MappedJarFile archive,
+                                          @NotNull MappedJarFile.Entry entry) {
+                    if (!canCopyRaw(entry)) {
+                        IEntryWriter.super.writeRawEntry(entryName, archive, entry);
+                        return;
+                    }
+                    // 原样拷贝压缩数据和CRC，不需要经过线程池
+                    try {
+                        var prepared = new PreparedEntry(entryName.getBytes(StandardCharsets.UTF_8),
+                                entry.method, entry.crc, entry.size, archive.rawData(entry));
+                        submit(entryName, CompletableFuture.completedFuture(prepared));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to copy entry " + entryName, e);
+                    }
+                }
+
+                private void submit(@NotNull String entryName, @NotNull Callable<PreparedEntry> task) {
+                    if (names.contains(entryName)) {
+                        logger.error("duplicate entry: {}", entryName);
+                        return;
+                    }
+                    submit(entryName, executor.submit(task));
+                }
+
+                private void submit(@NotNull String entryName, @NotNull Future<PreparedEntry> future) {
+                    if (!names.add(entryName)) {
+                        logger.error("duplicate entry: {}", entryName);
+                        return;
+                    }
+                    pending.add(future);
+                    // 按提交顺序写出已经完成的条目，并限制同时在内存中的压缩结果数量
+                    while (!pending.isEmpty() && (pending.peek().isDone() || pending.size() > maxPending)) {
+                        try {
+                            ParallelJarWriter.this.writeEntry(os, pending.poll(), written, dosTime);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }
+            });
+            while (!pending.isEmpty()) {
+                writeEntry(os, pending.poll(), written, dosTime);
+            }
+            os.writeCentralDirectory(written, dosTime);
+            completed = true;
+        } catch (IOException | UncheckedIOException e) {
+            // 关闭输出流时的异常也在这里，此时临时文件不完整
+            completed = false;
+            logger.error("Failed to write jar file {}, target is left unchanged", path, e);
+        } finally {
+            finish(temp, target, completed);
+        }
+    }
+
+    /**
+     * 写完之后用临时文件替换目标，没有写完时删除临时文件，目标保持原样。
+     *
+     * @param temp      临时文件
+     * @param target    目标文件
+     * @param completed 是否完整写出
+     */
+    private void finish(@NotNull Path temp, @NotNull Path target, boolean completed) {
+        try {
+            if (completed) {
+                JarUtil.replaceWith(temp, target);
+            } else {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to replace {}, {}", target, e.getMessage());
+        }
+    }
+
+    /**
+     * 等待一个条目准备完成并写出。
+     * <p>
+     * 失败时输出流可能停在条目中间，已经记录的位置不再可靠，因此不能跳过这个条目继续写，只能抛出异常放弃整个jar。
+     *
+     * @throws IOException 条目准备失败、写出失败或者等待时被中断
+     */
+    private void writeEntry(@NotNull ZipStream os,
+                            @NotNull Future<PreparedEntry> future,
+                            @NotNull List<PreparedEntry> written,
+                            long dosTime) throws IOException {
+        PreparedEntry entry;
+        try {
+            entry = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted when writing jar");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to prepare entry", e.getCause());
+        }
+        os.writeLocal(entry, dosTime);
+        written.add(entry);
+    }
+
+    /**
+     * 源条目的压缩数据能否直接拷贝到输出中。
+     * <p>
+     * 只拷贝存储和deflate压缩的条目；要求全部存储时，压缩过的条目仍然需要解压后重新写入。
+     *
+     * @param entry 源条目
+     * @return 能否直接拷贝
+     */
+    private boolean canCopyRaw(@NotNull MappedJarFile.Entry entry) {
+        if (entry.method == ZipEntry.STORED) {
+            return true;
+        }
+        return entry.method == ZipEntry.DEFLATED && !stored;
+    }
+
+    /**
+     * 计算CRC并压缩一个条目，在工作线程上执行。
+     *
+     * @param entryName 条目名
+     * @param content   条目内容
+     * @return 准备好的条目
+     */
+    @NotNull PreparedEntry prepare(@NotNull String entryName, byte @Nullable [] content) {
+        byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+        if (content == null) {
+            content = new byte[0];
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        if (stored || content.length == 0) {
+            return new PreparedEntry(name, ZipEntry.STORED, crc.getValue(), content.length, ByteBuffer.wrap(content));
+        }
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            byte[] out = new byte[Math.max(64, content.length / 2)];
+            int n = 0;
+            while (!deflater.finished()) {
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                n += deflater.deflate(out, n, out.length - n);
+            }
+            // 压缩后反而更大的条目直接存储
+            if (n >= content.length) {
+                return new PreparedEntry(name, ZipEntry.STORED, crc.getValue(), content.length, ByteBuffer.wrap(content));
+            }
+            return new PreparedEntry(name, ZipEntry.DEFLATED, crc.getValue(), content.length, ByteBuffer.wrap(out, 0, n));
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static long dosTime(@NotNull LocalDateTime time) {
+        int year = time.getYear();
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (year - 1980) << 25) | ((long) time.getMonthValue() << 21) | ((long) time.getDayOfMonth() << 16)
+                | ((long) time.getHour() << 11) | ((long) time.getMinute() << 5) | (time.getSecond() >> 1);
+    }
+
+    /**
+     * 记录写出位置的zip输出流
+     */
+    static class ZipStream implements AutoCloseable {
+        private final OutputStream out;
+        private final ByteBuffer header = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        ZipStream(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeLocal(@NotNull PreparedEntry entry, long dosTime) throws IOException {
+            entry.localHeaderOffset = position;
+            header.clear();
+            header.putInt(LocalHeaderSignature);
+            header.putShort((short) 20);
+            header.putShort((short) Utf8Flag);
+            header.putShort((short) entry.method);
+            header.putInt((int) dosTime);
+            header.putInt((int) entry.crc);
+            header.putInt((int) entry.compressedSize());
+            header.putInt((int) entry.size);
+            header.putShort((short) entry.name.length);
+            header.putShort((short) 0);
+            flushHeader();
+            write(entry.name);
+            write(entry.data);
+        }
+
+        void writeCentralDirectory(@NotNull List<PreparedEntry> entries, long dosTime) throws IOException {
+            long cdOffset = position;
+            for (var entry : entries) {
+                boolean zip64 = entry.localHeaderOffset >= Zip64Limit;
+                header.clear();
+                header.putInt(CentralHeaderSignature);
+                header.putShort((short) (zip64 ? 45 : 20));
+                header.putShort((short) (zip64 ? 45 : 20));
+                header.putShort((short) Utf8Flag);
+                header.putShort((short) entry.method);
+                header.putInt((int) dosTime);
+                header.putInt((int) entry.crc);
+                header.putInt((int) entry.compressedSize());
+                header.putInt((int) entry.size);
+                header.putShort((short) entry.name.length);
+                header.putShort((short) (zip64 ? 12 : 0));
+                header.putShort((short) 0);
+                header.putShort((short) 0);
+                header.putShort((short) 0);
+                header.putInt(0);
+                header.putInt(zip64 ? (int) Zip64Limit : (int) entry.localHeaderOffset);
+                flushHeader();
+                write(entry.name);
+                if (zip64) {
+                    header.clear();
+                    header.putShort((short) 0x0001);
+                    header.putShort((short) 8);
+                    header.putLong(entry.localHeaderOffset);
+                    flushHeader();
+                }
+            }
+            long cdSize = position - cdOffset;
+            int count = entries.size();
+            if (count >= 0xFFFF || cdOffset >= Zip64Limit || cdSize >= Zip64Limit) {
+                long zip64End = position;
+                header.clear();
+                header.putInt(Zip64EndSignature);
+                header.putLong(44);
+                header.putShort((short) 45);
+                header.putShort((short) 45);
+                header.putInt(0);
+                header.putInt(0);
+                header.putLong(count);
+                header.putLong(count);
+                header.putLong(cdSize);
+                header.putLong(cdOffset);
+                header.putInt(Zip64LocatorSignature);
+                header.putInt(0);
+                header.putLong(zip64End);
+                header.putInt(1);
+                flushHeader();
+            }
+            header.clear();
+            header.putInt(EndSignature);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) Math.min(count, 0xFFFF));
+            header.putShort((short) Math.min(count, 0xFFFF));
+            header.putInt((int) Math.min(cdSize, Zip64Limit));
+            header.putInt((int) Math.min(cdOffset, Zip64Limit));
+            header.putShort((short) 0);
+            flushHeader();
+        }
+
+        private void flushHeader() throws IOException {
+            out.write(header.array(), 0, header.position());
+            position += header.position();
+        }
+
+        private void write(byte @NotNull [] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        private void write(@NotNull ByteBuffer data) throws IOException {
+            var buffer = data.duplicate();
+            int length = buffer.remaining();
+            if (buffer.hasArray()) {
+                out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            } else {
+                byte[] chunk = new byte[Math.min(length, 1 << 16)];
+                while (buffer.hasRemaining()) {
+                    int n = Math.min(chunk.length, buffer.remaining());
+                    buffer.get(chunk, 0, n);
+                    out.write(chunk, 0, n);
+                }
+            }
+            position += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.luiox.morpher.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的对数线性直方图，和HdrHistogram的分桶方式类似。
+ * <p>
+ * 小于64的值每个值一个桶，之后每个2的幂区间再均分成32个桶，相对误差不超过1/32，
+ * 覆盖整个非负long范围只需要固定的1888个计数器，记录一个值只是一次原子加。
+ */
+public final class Histogram {
+    /**
+     * 每个2的幂区间的子桶数量的位数
+     */
+    private static final int SubBucketBits = 5;
+    private static final int SubBucketCount = 1 << SubBucketBits;
+    /**
+     * 线性部分的上界，小于这个值的每个值一个桶
+     */
+    private static final int LinearLimit = SubBucketCount * 2;
+    private static final int BucketCount = (62 - SubBucketBits) * SubBucketCount + LinearLimit;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BucketCount);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * 记录一个值，负数会被当作0
+     *
+     * @param value 值
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+            // 重试
+        }
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 重试
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < LinearLimit) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SubBucketBits;
+        int mantissa = (int) (value >>> shift);
+        return shift * SubBucketCount + mantissa;
+    }
+
+    /**
+     * 一个桶中的最大值
+     */
+    static long highestValueOf(int index) {
+        if (index < LinearLimit) {
+            return index;
+        }
+        int shift = index / SubBucketCount - 1;
+        long mantissa = index % SubBucketCount + SubBucketCount;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+
+    public long getMax() {
+        return getCount() == 0 ? 0 : max.get();
+    }
+
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getSum() / n;
+    }
+
+    /**
+     * 获取百分位数，结果是所在桶的最大值，不会超过记录过的最大值
+     *
+     * @param percentile 百分位，范围[0, 100]
+     * @return 百分位数
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BucketCount; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * 输出为JSON对象
+     *
+     * @param out 输出
+     */
+    void writeJson(@NotNull StringBuilder out) {
+        out.append("{\"count\":").append(getCount())
+                .append(",\"sum\":").append(getSum())
+                .append(",\"min\":").append(getMin())
+                .append(",\"max\":").append(getMax())
+                .append(",\"mean\":").append(Math.round(getMean()))
+                .append(",\"p50\":").append(getValueAtPercentile(50))
+                .append(",\"p90\":").append(getValueAtPercentile(90))
+                .append(",\"p99\":").append(getValueAtPercentile(99))
+                .append('}');
+    }
+}
@@ -0,0 +1,433 @@
+package com.github.luiox.morpher.metrics;
+
+import com.github.luiox.morpher.transformer.AbstractPass;
+import com.github.luiox.morpher.transformer.ClassPass;
+import com.github.luiox.morpher.transformer.GlobalPass;
+import com.github.luiox.morpher.transformer.MethodPass;
+import com.github.luiox.morpher.transformer.PassInfo;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 记录每个Pass、每个类和每个方法的耗时、CPU时间和内存分配。
+ * <p>
+ * 调用者在执行前读取{@link System#nanoTime()}、{@link ThreadUsage#cpuTime()}和{@link ThreadUsage#allocatedBytes()}，
+ * 执行后把这三个起始值传给record方法，记录本身不会计入测量的区间。
+ * 所有方法都是线程安全的，并行遍历时多个线程可以同时记录。
+ * <p>
+ * 每个Pass的每次调用会进入直方图，MethodPass的一次调用是处理一个方法，ClassPass是处理一个类，
+ * GlobalPass是一次完整运行。类和方法只累计总量，用于找出最耗时的类和方法。
+ */
+public class PassMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(PassMetrics.class);
+
+    private static final int Count = 0;
+    private static final int Wall = 1;
+    private static final int Cpu = 2;
+    private static final int Alloc = 3;
+
+    /**
+     * 一个Pass的统计
+     */
+    public static final class PassStats {
+        /**
+         * Pass名称，优先使用{@link PassInfo#name()}
+         */
+        public final String name;
+        /**
+         * Pass类型，MethodPass、ClassPass或GlobalPass
+         */
+        public final String type;
+        /**
+         * 每次调用的耗时（纳秒）
+         */
+        public final Histogram wallNanos = new Histogram();
+        /**
+         * 每次调用的CPU时间（纳秒）
+         */
+        public final Histogram cpuNanos = new Histogram();
+        /**
+         * 每次调用分配的字节数
+         */
+        public final Histogram allocatedBytes = new Histogram();
+
+        PassStats(@NotNull String name, @NotNull String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        /**
+         * 调用次数
+         *
+         * @return 次数
+         */
+        public long getInvocations() {
+            return wallNanos.getCount();
+        }
+    }
+
+    /**
+     * 一个类或方法的累计值
+     *
+     * @param name           类名，或者是 类名.方法名描述符
+     * @param count          记录次数
+     * @param wallNanos      累计耗时（纳秒）
+     * @param cpuNanos       累计CPU时间（纳秒）
+     * @param allocatedBytes 累计分配字节数
+     */
+    public record Totals(String name, long count, long wallNanos, long cpuNanos, long allocatedBytes) {
+    }
+
+    /**
+     * 每个Pass的统计，以Pass对象作为键
+     */
+    private final Map<AbstractPass, PassStats> passes = new ConcurrentHashMap<>();
+    /**
+     * 和passes中的统计相同，按首次记录的顺序排列
+     */
+    private final List<PassStats> passOrder = new CopyOnWriteArrayList<>();
+    private final Map<String, AtomicLongArray> classes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLongArray> methods = new ConcurrentHashMap<>();
+
+    /**
+     * 是否累计每个方法的值，方法很多时会占用较多内存
+     */
+    private volatile boolean methodTotals = true;
+
+    /**
+     * 设置是否累计每个方法的值，关闭后MethodPass的调用仍然会进入Pass的直方图。
+     *
+     * @param methodTotals 是否累计
+     * @return 当前实例
+     */
+    public PassMetrics withMethodTotals(boolean methodTotals) {
+        this.methodTotals = methodTotals;
+        return this;
+    }
+
+    /**
+     * 记录一次Pass调用，用于GlobalPass和ClassPass。
+     *
+     * @param pass       Pass
+     * @param wallStart  开始时的{@link System#nanoTime()}
+     * @param cpuStart   开始时的{@link ThreadUsage#cpuTime()}
+     * @param allocStart 开始时的{@link ThreadUsage#allocatedBytes()}
+     */
+    public void recordPass(@NotNull AbstractPass pass, long wallStart, long cpuStart, long allocStart) {
+        long wall = System.nanoTime() - wallStart;
+        long cpu = delta(ThreadUsage.cpuTime(), cpuStart);
+        long alloc = delta(ThreadUsage.allocatedBytes(), allocStart);
+        record(statsOf(pass), wall, cpu, alloc);
+    }
+
+    /**
+     * 记录一次MethodPass对一个方法的调用，同时累计到这个方法上。
+     *
+     * @param pass       Pass
+     * @param owner      方法所在的类名
+     * @param name       方法名
+     * @param desc       方法描述符
+     * @param wallStart  开始时的{@link System#nanoTime()}
+     * @param cpuStart   开始时的{@link ThreadUsage#cpuTime()}
+     * @param allocStart 开始时的{@link ThreadUsage#allocatedBytes()}
+     */
+    public void recordMethod(@NotNull MethodPass pass,
+                             @NotNull String owner,
+                             @NotNull String name,
+                             @NotNull String desc,
+                             long wallStart,
+                             long cpuStart,
+                             long allocStart) {
+        long wall = System.nanoTime() - wallStart;
+        long cpu = delta(ThreadUsage.cpuTime(), cpuStart);
+        long alloc = delta(ThreadUsage.allocatedBytes(), allocStart);
+        record(statsOf(pass), wall, cpu, alloc);
+        if (methodTotals) {
+            add(methods, owner + '.' + name + desc, wall, cpu, alloc);
+        }
+    }
+
+    /**
+     * 记录一个类在一个阶段中的处理，包含这个阶段所有Pass对它的处理。
+     *
+     * @param className  类名
+     * @param wallStart  开始时的{@link System#nanoTime()}
+     * @param cpuStart   开始时的{@link ThreadUsage#cpuTime()}
+     * @param allocStart 开始时的{@link ThreadUsage#allocatedBytes()}
+     */
+    public void recordClass(@NotNull String className, long wallStart, long cpuStart, long allocStart) {
+        long wall = System.nanoTime() - wallStart;
+        long cpu = delta(ThreadUsage.cpuTime(), cpuStart);
+        long alloc = delta(ThreadUsage.allocatedBytes(), allocStart);
+        add(classes, className, wall, cpu, alloc);
+    }
+
+    private static long delta(long end, long start) {
+        return end < 0 || start < 0 ? -1 : end - start;
+    }
+
+    private static void record(@NotNull PassStats stats, long wall, long cpu, long alloc) {
+        stats.wallNanos.record(wall);
+        if (cpu >= 0) {
+            stats.cpuNanos.record(cpu);
+        }
+        if (alloc >= 0) {
+            stats.allocatedBytes.record(alloc);
+        }
+    }
+
+    private static void add(@NotNull Map<String, AtomicLongArray> map, @NotNull String key,
+                            long wall, long cpu, long alloc) {
+        var totals = map.computeIfAbsent(key, _ -> new AtomicLongArray(4));
+        totals.incrementAndGet(Count);
+        totals.addAndGet(Wall, wall);
+        totals.addAndGet(Cpu, Math.max(cpu, 0));
+        totals.addAndGet(Alloc, Math.max(alloc, 0));
+    }
+
+    private @NotNull PassStats statsOf(@NotNull AbstractPass pass) {
+        var stats = passes.get(pass);
+        if (stats != null) {
+            return stats;
+        }
+        // 每个Pass只会创建一次统计，创建时顺便记下顺序
+        return passes.computeIfAbsent(pass, p -> {
+            var created = new PassStats(nameOf(p), typeOf(p));
+            passOrder.add(created);
+            return created;
+        });
+    }
+
+    /**
+     * Pass的名称，有{@link PassInfo}时使用注解中的名称，否则使用类名。
+     *
+     * @param pass Pass
+     * @return 名称
+     */
+    public static @NotNull String nameOf(@NotNull AbstractPass pass) {
+        var info = pass.getClass().getAnnotation(PassInfo.class);
+        return info != null ? info.name() : pass.getClass().getSimpleName();
+    }
+
+    private static @NotNull String typeOf(@NotNull AbstractPass pass) {
+        if (pass instanceof MethodPass) {
+            return "MethodPass";
+        } else if (pass instanceof ClassPass) {
+            return "ClassPass";
+        } else if (pass instanceof GlobalPass) {
+            return "GlobalPass";
+        }
+        return pass.getClass().getSimpleName();
+    }
+
+    /**
+     * 所有Pass的统计，按首次记录的顺序
+     *
+     * @return 统计列表
+     */
+    public @NotNull List<PassStats> getPassStats() {
+        return List.copyOf(passOrder);
+    }
+
+    /**
+     * 累计耗时最多的类
+     *
+     * @param topN 数量
+     * @return 按耗时从大到小排列
+     */
+    public @NotNull List<Totals> getTopClasses(int topN) {
+        return top(classes, topN);
+    }
+
+    /**
+     * 累计耗时最多的方法
+     *
+     * @param topN 数量
+     * @return 按耗时从大到小排列
+     */
+    public @NotNull List<Totals> getTopMethods(int topN) {
+        return top(methods, topN);
+    }
+
+    private static @NotNull List<Totals> top(@NotNull Map<String, AtomicLongArray> map, int topN) {
+        if (topN <= 0) {
+            return List.of();
+        }
+        // 只保留topN个的小顶堆
+        PriorityQueue<Totals> heap = new PriorityQueue<>(Comparator.comparingLong(Totals::wallNanos));
+        for (var entry : map.entrySet()) {
+            var values = entry.getValue();
+            long wall = values.get(Wall);
+            if (heap.size() < topN) {
+                heap.add(toTotals(entry.getKey(), values));
+            } else if (wall > heap.peek().wallNanos()) {
+                heap.poll();
+                heap.add(toTotals(entry.getKey(), values));
+            }
+        }
+        List<Totals> result = new ArrayList<>(heap);
+        result.sort(Comparator.comparingLong(Totals::wallNanos).reversed());
+        return result;
+    }
+
+    private static @NotNull Totals toTotals(@NotNull String name, @NotNull AtomicLongArray values) {
+        return new Totals(name, values.get(Count), values.get(Wall), values.get(Cpu), values.get(Alloc));
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        passes.clear();
+        passOrder.clear();
+        classes.clear();
+        methods.clear();
+    }
+
+    /**
+     * 生成文本报告，包含每个Pass的统计，以及耗时最多的类和方法。
+     *
+     * @param topN 类和方法各列出的数量
+     * @return 报告
+     */
+    public @NotNull String report(int topN) {
+        var sb = new StringBuilder();
+        sb.append(String.format("%-32s %-10s %10s %12s %12s %12s %10s %10s %14s%n",
+                "pass", "type", "calls", "wall(ms)", "cpu(ms)", "alloc(MB)", "p50(us)", "p99(us)", "max(us)"));
+        for (var stats : getPassStats()) {
+            sb.append(String.format("%-32s %-10s %10d %12.2f %12.2f %12.2f %10.1f %10.1f %14.1f%n",
+                    stats.name, stats.type, stats.getInvocations(),
+                    stats.wallNanos.getSum() / 1e6, stats.cpuNanos.getSum() / 1e6,
+                    stats.allocatedBytes.getSum() / (1024.0 * 1024.0),
+                    stats.wallNanos.getValueAtPercentile(50) / 1e3,
+                    stats.wallNanos.getValueAtPercentile(99) / 1e3,
+                    stats.wallNanos.getMax() / 1e3));
+        }
+        appendTop(sb, "classes", getTopClasses(topN));
+        appendTop(sb, "methods", getTopMethods(topN));
+        return sb.toString();
+    }
+
+    private static void appendTop(@NotNull StringBuilder sb, @NotNull String title, @NotNull List<Totals> totals) {
+        if (totals.isEmpty()) {
+            return;
+        }
+        sb.append(String.format("top %d %s:%n", totals.size(), title));
+        for (var t : totals) {
+            sb.append(String.format("  %12.2f ms wall %12.2f ms cpu %10.2f MB  %s%n",
+                    t.wallNanos() / 1e6, t.cpuNanos() / 1e6, t.allocatedBytes() / (1024.0 * 1024.0), t.name()));
+        }
+    }
+
+    /**
+     * 以info级别输出报告
+     *
+     * @param topN 类和方法各列出的数量
+     */
+    public void logReport(int topN) {
+        logger.info("pass metrics:{}{}", System.lineSeparator(), report(topN));
+    }
+
+    /**
+     * 导出为JSON，时间单位是纳秒，内存单位是字节。
+     *
+     * @param topN 类和方法各导出的数量
+     * @return JSON字符串
+     */
+    public @NotNull String toJson(int topN) {
+        var out = new StringBuilder(1024);
+        out.append("{\"cpuTimeAvailable\":").append(ThreadUsage.isCpuTimeAvailable())
+                .append(",\"allocationAvailable\":").append(ThreadUsage.isAllocationAvailable())
+                .append(",\"passes\":[");
+        boolean first = true;
+        for (var stats : getPassStats()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            out.append("{\"name\":");
+            appendString(out, stats.name);
+            out.append(",\"type\":");
+            appendString(out, stats.type);
+            out.append(",\"invocations\":").append(stats.getInvocations());
+            out.append(",\"wallNanos\":");
+            stats.wallNanos.writeJson(out);
+            out.append(",\"cpuNanos\":");
+            stats.cpuNanos.writeJson(out);
+            out.append(",\"allocatedBytes\":");
+            stats.allocatedBytes.writeJson(out);
+            out.append('}');
+        }
+        out.append("],\"classes\":");
+        appendTotals(out, getTopClasses(topN));
+        out.append(",\"methods\":");
+        appendTotals(out, getTopMethods(topN));
+        out.append('}');
+        return out.toString();
+    }
+
+    /**
+     * 导出为JSON文件。
+     *
+     * @param file 文件
+     * @param topN 类和方法各导出的数量
+     * @throws IOException 写出异常
+     */
+    public void writeJson(@NotNull Path file, int topN) throws IOException {
+        var parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(file, toJson(topN), StandardCharsets.UTF_8);
+    }
+
+    private static void appendTotals(@NotNull StringBuilder out, @NotNull List<Totals> totals) {
+        out.append('[');
+        for (int i = 0; i < totals.size(); i++) {
+            var t = totals.get(i);
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"name\":");
+            appendString(out, t.name());
+            out.append(",\"count\":").append(t.count())
+                    .append(",\"wallNanos\":").append(t.wallNanos())
+                    .append(",\"cpuNanos\":").append(t.cpuNanos())
+                    .append(",\"allocatedBytes\":").append(t.allocatedBytes())
+                    .append('}');
+        }
+        out.append(']');
+    }
+
+    private static void appendString(@NotNull StringBuilder out, @NotNull String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
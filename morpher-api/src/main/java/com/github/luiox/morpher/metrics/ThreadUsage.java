@@ -0,0 +1,74 @@
+package com.github.luiox.morpher.metrics;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 读取当前线程的CPU时间和已分配字节数。
+ * <p>
+ * 依赖{@link com.sun.management.ThreadMXBean}，JVM不支持或者当前是虚拟线程时返回-1，
+ * 记录时会跳过这一项。虚拟线程会在不同的载体线程之间切换，载体线程的计数不能代表它自己的用量。
+ */
+public final class ThreadUsage {
+    private static final java.lang.management.ThreadMXBean Bean = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ExtBean =
+            Bean instanceof com.sun.management.ThreadMXBean ext ? ext : null;
+    private static final boolean CpuTimeAvailable;
+    private static final boolean AllocationAvailable;
+
+    static {
+        boolean cpu = false;
+        if (Bean.isCurrentThreadCpuTimeSupported()) {
+            try {
+                if (!Bean.isThreadCpuTimeEnabled()) {
+                    Bean.setThreadCpuTimeEnabled(true);
+                }
+                cpu = Bean.isThreadCpuTimeEnabled();
+            } catch (UnsupportedOperationException | SecurityException e) {
+                cpu = false;
+            }
+        }
+        CpuTimeAvailable = cpu;
+
+        boolean alloc = false;
+        if (ExtBean != null && ExtBean.isThreadAllocatedMemorySupported()) {
+            try {
+                if (!ExtBean.isThreadAllocatedMemoryEnabled()) {
+                    ExtBean.setThreadAllocatedMemoryEnabled(true);
+                }
+                alloc = ExtBean.isThreadAllocatedMemoryEnabled();
+            } catch (UnsupportedOperationException | SecurityException e) {
+                alloc = false;
+            }
+        }
+        AllocationAvailable = alloc;
+    }
+
+    private ThreadUsage() {
+    }
+
+    /**
+     * 当前线程的CPU时间（纳秒）
+     *
+     * @return CPU时间，不可用或者当前是虚拟线程时返回-1
+     */
+    public static long cpuTime() {
+        return CpuTimeAvailable && !Thread.currentThread().isVirtual() ? Bean.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * 当前线程累计分配的字节数
+     *
+     * @return 字节数，不可用或者当前是虚拟线程时返回-1
+     */
+    public static long allocatedBytes() {
+        return AllocationAvailable && !Thread.currentThread().isVirtual() ? ExtBean.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    public static boolean isCpuTimeAvailable() {
+        return CpuTimeAvailable;
+    }
+
+    public static boolean isAllocationAvailable() {
+        return AllocationAvailable;
+    }
+}
@@ -1,11 +1,16 @@
 package com.github.luiox.morpher.model;
 
+import com.github.luiox.morpher.jar.MappedJarFile;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
 /**
  * 表示一个class文件资源。
  * <p>
  * 封装了class文件的路径和字节内容。
  */
-public class ClassResource implements IResource {
+public class ClassResource implements IArchiveResource {
     /**
      * 资源路径
      */
@@ -14,6 +19,22 @@ public class ClassResource implements IResource {
      * class文件内容
      */
     byte[] content;
+    /**
+     * 源jar，可能为null
+     */
+    final MappedJarFile archive;
+    /**
+     * 在源jar中的条目，可能为null
+     */
+    final MappedJarFile.Entry archiveEntry;
+    /**
+     * 内容是否被修改过
+     */
+    boolean dirty;
+    /**
+     * 修改次数，每次设置内容时增加，用于判断缓存的类信息是否过期
+     */
+    int revision;
 
     /**
      * 构造方法。
@@ -22,8 +43,23 @@ public class ClassResource implements IResource {
      * @param content class文件内容
      */
     public ClassResource(String path, byte[] content) {
+        this(path, content, null, null);
+    }
+
+    /**
+     * 构造一个记录了源jar条目的资源。
+     *
+     * @param path         资源路径
+     * @param content      class文件内容
+     * @param archive      源jar
+     * @param archiveEntry 在源jar中的条目
+     */
+    public ClassResource(String path, byte[] content,
+                         @Nullable MappedJarFile archive, @Nullable MappedJarFile.Entry archiveEntry) {
         this.path = path;
         this.content = content;
+        this.archive = archive;
+        this.archiveEntry = archiveEntry;
     }
 
     /**
@@ -56,11 +92,54 @@ public class ClassResource implements IResource {
     }
 
     /**
-     * 设置class文件内容。
+     * 设置class文件内容，并标记为已修改。
+     * <p>
+     * 新内容和当前内容相同时不算修改，没有变化的类导出时仍然可以直接拷贝源jar中的压缩数据。
+     * 传入的就是当前数组时总是视为修改，因为调用者可能直接改了数组里的内容。
      *
      * @param bytes 新内容
      */
     public void set(byte[] bytes) {
+        if (bytes != content && Arrays.equals(content, bytes)) {
+            return;
+        }
         content = bytes;
+        dirty = true;
+        revision++;
+    }
+
+    /**
+     * 获取修改次数，每次{@link #set}都会增加。
+     *
+     * @return 修改次数
+     */
+    public int getRevision() {
+        return revision;
+    }
+
+    /**
+     * 释放可以重新加载的内容以节省内存。
+     * <p>
+     * 普通的ClassResource内容无法重新加载，因此什么都不做。
+     *
+     * @return 是否释放了内容
+     */
+    public boolean release() {
+        return false;
+    }
+
+    @Override
+    public @Nullable MappedJarFile getArchive() {
+        return archive;
+    }
+
+    @Override
+    public @Nullable MappedJarFile.Entry getArchiveEntry() {
+        return archiveEntry;
+    }
+
+    @Override
+    public boolean isDirty() {
+        return dirty;
     }
 }
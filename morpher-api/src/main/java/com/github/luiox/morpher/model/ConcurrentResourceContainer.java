@@ -0,0 +1,125 @@
+package com.github.luiox.morpher.model;
+
+import com.github.luiox.morpher.model.io.IResourceExporter;
+import com.github.luiox.morpher.model.io.IResourceImporter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 线程安全的资源容器实现。
+ * <p>
+ * 基于ConcurrentHashMap实现，适合多线程导入、转换和导出时共享同一个容器。
+ * 遍历操作是弱一致的，不会抛出ConcurrentModificationException。
+ * <p>
+ * 和ConcurrentHashMap一样，URI和资源都不能为null，传入null时抛出NullPointerException；
+ * 基于HashMap的{@link ResourceContainer}则允许null。
+ */
+public class ConcurrentResourceContainer extends ConcurrentHashMap<String, IResource> implements IResourceContainer {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 构造一个空的容器。
+     */
+    public ConcurrentResourceContainer() {
+    }
+
+    /**
+     * 构造一个指定初始容量的容器，导入大jar时可以避免反复扩容。
+     *
+     * @param initialCapacity 初始容量
+     */
+    public ConcurrentResourceContainer(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * 添加资源到容器。
+     *
+     * @param uri      资源URI，不能为null
+     * @param resource 资源对象，不能为null
+     */
+    @Override
+    public void addResource(@NotNull String uri, @NotNull IResource resource) {
+        put(Objects.requireNonNull(uri, "uri"), Objects.requireNonNull(resource, "resource"));
+    }
+
+    /**
+     * 判断容器中是否存在指定URI的资源。
+     *
+     * @param uri 资源URI
+     * @return 是否存在
+     */
+    @Override
+    public boolean hasResource(String uri) {
+        return containsKey(uri);
+    }
+
+    /**
+     * 把资源从旧URI移动到新URI。
+     * <p>
+     * ConcurrentHashMap不能原子地修改两个键，这里以容器自身为锁，多个改名之间互斥，
+     * 例如两个类互相改名时不会丢失其中一个。改名过程中先写入新的URI，再在旧URI仍然指向原资源时才移除，
+     * 因此不加锁的读者在任意时刻至少能看到其中一个，且不会误删其他线程刚写入旧URI的资源。
+     *
+     * @param oldUri   旧的资源URI，不能为null
+     * @param newUri   新的资源URI，不能为null
+     * @param resource 新的资源对象，不能为null
+     * @return 如果旧URI存在并被替换返回true
+     */
+    @Override
+    public boolean renameResource(@NotNull String oldUri, @NotNull String newUri, @NotNull IResource resource) {
+        Objects.requireNonNull(oldUri, "oldUri");
+        Objects.requireNonNull(newUri, "newUri");
+        Objects.requireNonNull(resource, "resource");
+        synchronized (this) {
+            var old = get(oldUri);
+            if (old == null) {
+                return false;
+            }
+            put(newUri, resource);
+            if (!oldUri.equals(newUri)) {
+                remove(oldUri, old);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 获取所有ClassResource的流。
+     * <p>
+     * 流是弱一致的，可以直接调用parallel()并行消费。
+     *
+     * @return ClassResource流
+     */
+    @Override
+    public Stream<ClassResource> classes() {
+        return values().stream().filter(r -> r instanceof ClassResource).map(r -> (ClassResource) r);
+    }
+
+    /**
+     * 使用指定导入器导入资源。
+     *
+     * @param importer 资源导入器
+     * @throws Exception 导入异常
+     */
+    @Override
+    public void importResource(@NotNull IResourceImporter importer) throws Exception {
+        importer.importResource(this);
+    }
+
+    /**
+     * 使用指定导出器导出资源。
+     *
+     * @param exporter 资源导出器
+     * @throws Exception 导出异常
+     */
+    @Override
+    public void exportResource(@NotNull IResourceExporter exporter) throws Exception {
+        exporter.exportResource(this);
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.luiox.morpher.model;
+
+import com.github.luiox.morpher.jar.MappedJarFile;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 可能来自某个映射jar条目的资源。
+ * <p>
+ * 资源记录自己在源jar中的条目，并跟踪内容是否被修改过。
+ * 没有被修改过的资源在导出时可以直接拷贝源jar中已经压缩好的数据，不需要重新压缩。
+ */
+public interface IArchiveResource extends IResource {
+    /**
+     * 获取源jar
+     *
+     * @return 源jar，不是从映射jar中导入的资源返回null
+     */
+    @Nullable MappedJarFile getArchive();
+
+    /**
+     * 获取在源jar中的条目
+     *
+     * @return 条目，不是从映射jar中导入的资源返回null
+     */
+    @Nullable MappedJarFile.Entry getArchiveEntry();
+
+    /**
+     * 内容是否在导入之后被修改过
+     *
+     * @return 是否修改过
+     */
+    boolean isDirty();
+}
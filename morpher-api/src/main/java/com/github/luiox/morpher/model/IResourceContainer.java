@@ -13,6 +13,9 @@ import java.util.stream.Stream;
  * 资源容器接口。
  * <p>
  * 用于统一管理和操作多种类型的资源，支持导入、导出、查找、流式处理等功能。
+ * <p>
+ * 是否允许null的URI和资源由实现决定：{@link ResourceContainer}允许，
+ * {@link ConcurrentResourceContainer}不允许，调用者不应依赖null。
  */
 public interface IResourceContainer extends Map<String, IResource> {
     /**
@@ -31,6 +34,25 @@ public interface IResourceContainer extends Map<String, IResource> {
      */
     boolean hasResource(String uri);
 
+    /**
+     * 把资源从旧URI移动到新URI，用于类改名等场景。
+     * <p>
+     * 默认实现不是原子的，线程安全的容器应当覆盖此方法。
+     *
+     * @param oldUri   旧的资源URI
+     * @param newUri   新的资源URI
+     * @param resource 新的资源对象
+     * @return 如果旧URI存在并被替换返回true
+     */
+    default boolean renameResource(String oldUri, String newUri, @NotNull IResource resource) {
+        if (!containsKey(oldUri)) {
+            return false;
+        }
+        remove(oldUri);
+        put(newUri, resource);
+        return true;
+    }
+
     /**
      * 使用指定导入器导入资源。
      *
@@ -0,0 +1,105 @@
+package com.github.luiox.morpher.model;
+
+import com.github.luiox.morpher.jar.MappedJarFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * 延迟加载的class文件资源。
+ * <p>
+ * 只记录条目在映射的源jar中的位置，第一次{@link #get()}时才读取（解压）内容。
+ * 内容没有被修改时可以通过{@link #release()}丢弃，之后需要时再从源jar中重新读取，
+ * 因此对一个很大的jar只处理少量类时，不需要把所有类的内容都放在堆上。
+ * 源jar的映射释放之后，没有加载到堆上的内容无法再读取。
+ */
+public class LazyClassResource extends ClassResource {
+
+    /**
+     * 构造方法。
+     *
+     * @param path    资源路径
+     * @param archive 源jar
+     * @param entry   在源jar中的条目
+     */
+    public LazyClassResource(String path, @NotNull MappedJarFile archive, @NotNull MappedJarFile.Entry entry) {
+        super(path, null, archive, entry);
+    }
+
+    /**
+     * 获取class文件内容，第一次调用时从源jar中读取。
+     *
+     * @return 字节数组
+     */
+    @Override
+    public synchronized byte[] get() {
+        if (content == null) {
+            try {
+                content = archive.readBytes(archiveEntry);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * 设置class文件内容，和当前内容相同时不算修改。
+     *
+     * @param bytes 新内容
+     */
+    @Override
+    public synchronized void set(byte[] bytes) {
+        if (content != null && bytes != content && Arrays.equals(content, bytes)) {
+            return;
+        }
+        content = bytes;
+        dirty = true;
+        revision++;
+    }
+
+    /**
+     * 如果内容没有被修改过，丢弃已经加载的内容。
+     *
+     * @return 是否释放了内容
+     */
+    @Override
+    public synchronized boolean release() {
+        if (dirty || content == null) {
+            return false;
+        }
+        content = null;
+        return true;
+    }
+
+    /**
+     * 内容当前是否已经加载到堆上
+     *
+     * @return 是否已加载
+     */
+    public synchronized boolean isLoaded() {
+        return content != null;
+    }
+
+    /**
+     * 内容是否被修改过，修改过的内容无法再从源jar恢复
+     *
+     * @return 是否修改过
+     */
+    @Override
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public @NotNull MappedJarFile getArchive() {
+        return archive;
+    }
+
+    @Override
+    public @NotNull MappedJarFile.Entry getArchiveEntry() {
+        return archiveEntry;
+    }
+}
@@ -1,11 +1,14 @@
 package com.github.luiox.morpher.model;
 
+import com.github.luiox.morpher.jar.MappedJarFile;
+import org.jetbrains.annotations.Nullable;
+
 /**
  * 表示一个未知类型的资源。
  * <p>
  * 用于存储无法识别类型的二进制资源。
  */
-public class UnknownResource implements IResource {
+public class UnknownResource implements IArchiveResource {
     /**
      * 资源路径
      */
@@ -14,6 +17,18 @@ public class UnknownResource implements IResource {
      * 资源内容
      */
     byte[] content;
+    /**
+     * 源jar，可能为null
+     */
+    final MappedJarFile archive;
+    /**
+     * 在源jar中的条目，可能为null
+     */
+    final MappedJarFile.Entry archiveEntry;
+    /**
+     * 内容是否被修改过
+     */
+    boolean dirty;
 
     /**
      * 构造方法。
@@ -22,8 +37,23 @@ public class UnknownResource implements IResource {
      * @param content 资源内容
      */
     public UnknownResource(String path, byte[] content) {
+        this(path, content, null, null);
+    }
+
+    /**
+     * 构造一个记录了源jar条目的资源。
+     *
+     * @param path         资源路径
+     * @param content      资源内容
+     * @param archive      源jar
+     * @param archiveEntry 在源jar中的条目
+     */
+    public UnknownResource(String path, byte[] content,
+                           @Nullable MappedJarFile archive, @Nullable MappedJarFile.Entry archiveEntry) {
         this.path = path;
         this.content = content;
+        this.archive = archive;
+        this.archiveEntry = archiveEntry;
     }
 
     /**
@@ -46,11 +76,27 @@ public class UnknownResource implements IResource {
     }
 
     /**
-     * 设置资源内容。
+     * 设置资源内容，并标记为已修改。
      *
      * @param bytes 新内容
      */
     public void set(byte[] bytes) {
         content = bytes;
+        dirty = true;
+    }
+
+    @Override
+    public @Nullable MappedJarFile getArchive() {
+        return archive;
+    }
+
+    @Override
+    public @Nullable MappedJarFile.Entry getArchiveEntry() {
+        return archiveEntry;
+    }
+
+    @Override
+    public boolean isDirty() {
+        return dirty;
     }
 }
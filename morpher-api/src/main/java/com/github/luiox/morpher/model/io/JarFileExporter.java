@@ -41,8 +41,19 @@ public class JarFileExporter implements IResourceExporter {
      * @param resource 资源对象
      */
     public void writeResource(IJarWriter.IEntryWriter writer, IResource resource) {
-        if (resource instanceof ClassResource classResource) {
+        if (resource instanceof IArchiveResource archiveResource && !archiveResource.isDirty()
+                && archiveResource.getArchive() != null && archiveResource.getArchive().isOpen()
+                && archiveResource.getArchiveEntry() != null) {
+            // 没有修改过的条目直接拷贝源jar中的压缩数据，源jar的映射已经释放时按普通条目写入
+            writer.writeRawEntry(archiveResource.getLocation(), archiveResource.getArchive(),
+                    archiveResource.getArchiveEntry());
+            if (archiveResource instanceof ClassResource classResource) {
+                classResource.release();
+            }
+        } else if (resource instanceof ClassResource classResource) {
             writer.writeEntry(classResource.getLocation(), classResource.get());
+            // 写出之后，没有修改过的延迟加载内容可以丢弃
+            classResource.release();
         } else if (resource instanceof ManifestResource manifestResource) {
             try {
                 Manifest manifest = manifestResource.get();
@@ -2,13 +2,19 @@ package com.github.luiox.morpher.model.io;
 
 import com.github.luiox.morpher.jar.IJarReader;
 import com.github.luiox.morpher.jar.JarUtil;
-import com.github.luiox.morpher.model.ClassResource;
-import com.github.luiox.morpher.model.IResourceContainer;
-import com.github.luiox.morpher.model.ManifestResource;
-import com.github.luiox.morpher.model.UnknownResource;
+import com.github.luiox.morpher.jar.MappedJarFile;
+import com.github.luiox.morpher.jar.MappedJarReader;
+import com.github.luiox.morpher.model.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Jar包导入器。
@@ -20,6 +26,14 @@ public class JarFileImporter implements IResourceImporter {
      * Jar读取器
      */
     IJarReader reader;
+    /**
+     * 并行解压和分类使用的线程数，小于等于1时在读取线程上依次处理
+     */
+    int parallelism;
+    /**
+     * 是否延迟加载class文件内容
+     */
+    boolean lazyClasses;
 
     /**
      * 构造方法。
@@ -27,38 +41,178 @@ public class JarFileImporter implements IResourceImporter {
      * @param reader Jar读取器
      */
     public JarFileImporter(@NotNull IJarReader reader) {
+        this(reader, 1);
+    }
+
+    /**
+     * 构造一个并行导入器。
+     * <p>
+     * 条目的解压和分类在工作线程上进行，结果仍然按照条目顺序写入容器，因此导入结果是确定的。
+     * 只有读取器支持延迟读取（例如{@link com.github.luiox.morpher.jar.MappedJarReader}）时，解压才会真正并行。
+     *
+     * @param reader      Jar读取器
+     * @param parallelism 线程数
+     */
+    public JarFileImporter(@NotNull IJarReader reader, int parallelism) {
         this.reader = reader;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 设置是否延迟加载class文件。
+     * <p>
+     * 开启后，如果读取器是{@link MappedJarReader}，class条目会被导入为{@link LazyClassResource}，
+     * 只记录在源jar中的位置，第一次访问时才解压；其他读取器仍然立即读取全部内容。
+     * 延迟加载的资源依赖读取器的映射，导出完成之前不能关闭读取器。
+     *
+     * @param lazyClasses 是否延迟加载
+     * @return 当前实例
+     */
+    public JarFileImporter withLazyClasses(boolean lazyClasses) {
+        this.lazyClasses = lazyClasses;
+        return this;
     }
 
     /**
      * 从Jar包导入资源到容器。
+     * <p>
+     * 通过{@link IJarReader#readBuffer}读取，每个条目最多拷贝一次，
+     * 如果读取器交出的缓冲区正好包装了完整的数组（例如解压结果），则直接使用该数组。
      *
      * @param container 资源容器
      * @throws Exception 导入异常
      */
     @Override
     public void importResource(@NotNull IResourceContainer container) throws Exception {
-        reader.read((entryName, is) -> {
+        if (reader instanceof MappedJarReader mappedReader) {
+            importMapped(container, mappedReader);
+            return;
+        }
+        if (parallelism > 1) {
+            importParallel(container);
+            return;
+        }
+        reader.readBuffer((entryName, buffer) -> {
             // 根据读入的内容加到container里面
-            if (entryName.equals(JarUtil.ManifestFileName)) {
-                try {
-                    container.addResource(JarUtil.ManifestFileName, ManifestResource.from(is.readAllBytes()));
-                } catch (IOException e) {
-                    e.printStackTrace();
+            var resource = toResource(entryName, buffer, null, null);
+            if (resource != null) {
+                container.addResource(entryName, resource);
+            }
+        });
+    }
+
+    /**
+     * 从映射jar导入，导入的资源会记录自己在源jar中的条目，没有修改过的资源导出时可以直接拷贝压缩数据。
+     * <p>
+     * 开启延迟加载时，class条目只检查魔数，不读取完整内容。
+     * 映射归读取器所有，在读取器关闭之前一直有效；关闭之后，非延迟加载的资源导出时退回到重新压缩堆上的内容。
+     *
+     * @param container    资源容器
+     * @param mappedReader 映射jar读取器
+     * @throws IOException 导入异常
+     */
+    private void importMapped(@NotNull IResourceContainer container,
+                              @NotNull MappedJarReader mappedReader) throws IOException {
+        var archive = mappedReader.open();
+        var entries = archive.entries();
+        if (parallelism <= 1) {
+            for (var entry : entries) {
+                var resource = toResource(archive, entry);
+                if (resource != null) {
+                    container.addResource(entry.name, resource);
                 }
-            } else if (JarUtil.isClassFile(entryName) && JarUtil.isClassFile(is)) {
+            }
+            return;
+        }
+        List<Future<IResource>> futures = new ArrayList<>(entries.size());
+        try (var executor = new ForkJoinPool(parallelism)) {
+            for (var entry : entries) {
+                futures.add(executor.submit(() -> toResource(archive, entry)));
+            }
+            // 按照条目顺序合并
+            for (int i = 0; i < futures.size(); i++) {
                 try {
-                    container.addResource(entryName, new ClassResource(entryName, is.readAllBytes()));
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    var resource = futures.get(i).get();
+                    if (resource != null) {
+                        container.addResource(entries.get(i).name, resource);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while importing " + archive.getPath(), e);
+                } catch (ExecutionException e) {
+                    throw new IOException("failed to import entry: " + entries.get(i).name, e.getCause());
                 }
-            } else {
+            }
+        }
+    }
+
+    /**
+     * 根据映射jar中的条目创建对应的资源。
+     *
+     * @param archive 映射jar
+     * @param entry   条目
+     * @return 资源，解析失败返回null
+     * @throws IOException 读取异常
+     */
+    private @Nullable IResource toResource(@NotNull MappedJarFile archive,
+                                           @NotNull MappedJarFile.Entry entry) throws IOException {
+        if (lazyClasses && JarUtil.isClassFile(entry.name) && JarUtil.isClassFile(archive.readHead(entry, 4))) {
+            return new LazyClassResource(entry.name, archive, entry);
+        }
+        return toResource(entry.name, archive.read(entry), archive, entry);
+    }
+
+    /**
+     * 并行导入，读取线程只负责分发，解压和分类在工作线程上进行。
+     *
+     * @param container 资源容器
+     * @throws Exception 导入异常
+     */
+    private void importParallel(@NotNull IResourceContainer container) throws Exception {
+        List<String> names = new ArrayList<>();
+        List<Future<IResource>> futures = new ArrayList<>();
+        try (var executor = new ForkJoinPool(parallelism)) {
+            reader.readDeferred((entryName, supplier) -> {
+                names.add(entryName);
+                futures.add(executor.submit(() -> toResource(entryName, supplier.get(), null, null)));
+            });
+            // 按照条目顺序合并
+            for (int i = 0; i < futures.size(); i++) {
                 try {
-                    container.addResource(entryName, new UnknownResource(entryName, is.readAllBytes()));
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    var resource = futures.get(i).get();
+                    if (resource != null) {
+                        container.addResource(names.get(i), resource);
+                    }
+                } catch (ExecutionException e) {
+                    throw new IOException("failed to import entry: " + names.get(i), e.getCause());
                 }
             }
-        });
+        }
+    }
+
+    /**
+     * 根据条目名和内容创建对应的资源。
+     *
+     * @param entryName 条目名
+     * @param buffer    条目内容
+     * @param archive   源jar，不是从映射jar读取时为null
+     * @param entry     在源jar中的条目，不是从映射jar读取时为null
+     * @return 资源，解析失败返回null
+     */
+    private static @Nullable IResource toResource(@NotNull String entryName, @NotNull ByteBuffer buffer,
+                                                  @Nullable MappedJarFile archive,
+                                                  @Nullable MappedJarFile.Entry entry) {
+        if (entryName.equals(JarUtil.ManifestFileName)) {
+            try {
+                return ManifestResource.from(JarUtil.toByteArray(buffer));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        } else if (JarUtil.isClassFile(entryName) && JarUtil.isClassFile(buffer)) {
+            return new ClassResource(entryName, JarUtil.toByteArray(buffer), archive, entry);
+        } else {
+            return new UnknownResource(entryName, JarUtil.toByteArray(buffer), archive, entry);
+        }
     }
 }
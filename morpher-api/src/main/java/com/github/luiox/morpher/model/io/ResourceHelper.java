@@ -1,9 +1,11 @@
 package com.github.luiox.morpher.model.io;
 
 import com.github.luiox.morpher.jar.JarReader;
+import com.github.luiox.morpher.jar.MappedJarReader;
+import com.github.luiox.morpher.jar.ParallelJarWriter;
 import com.github.luiox.morpher.jar.JarWriter;
 import com.github.luiox.morpher.model.IResource;
-import com.github.luiox.morpher.model.ResourceContainer;
+import com.github.luiox.morpher.model.IResourceContainer;
 import com.github.luiox.morpher.util.type.Result;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -29,7 +31,7 @@ public class ResourceHelper {
      * @param container 资源容器
      * @param filePath  class文件路径
      */
-    public static void importFromClassFile(@NotNull ResourceContainer container, String filePath) {
+    public static void importFromClassFile(@NotNull IResourceContainer container, String filePath) {
         try {
             container.importResource(new SimpleClassFileImporter(filePath));
         } catch (Exception e) {
@@ -43,7 +45,7 @@ public class ResourceHelper {
      * @param container 资源容器
      * @param filePath  jar包路径
      */
-    public static void importFromJar(@NotNull ResourceContainer container, String filePath) {
+    public static void importFromJar(@NotNull IResourceContainer container, String filePath) {
         try {
             container.importResource(new JarFileImporter(new JarReader(filePath)));
         } catch (Exception e) {
@@ -51,13 +53,31 @@ public class ResourceHelper {
         }
     }
 
+    /**
+     * 以内存映射的方式从jar包并行导入资源到容器，条目的解压分散到多个线程上进行。
+     * <p>
+     * 导入完成后映射立即释放，不会锁住jar文件；需要在导出时直接拷贝未修改条目的压缩数据，
+     * 应当自己持有{@link MappedJarReader}，在导出完成之后再关闭。
+     *
+     * @param container   资源容器
+     * @param filePath    jar包路径
+     * @param parallelism 线程数
+     */
+    public static void importFromJar(@NotNull IResourceContainer container, String filePath, int parallelism) {
+        try (var reader = new MappedJarReader(filePath)) {
+            container.importResource(new JarFileImporter(reader, parallelism));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * 将资源容器导出为jar包。
      *
      * @param container 资源容器
      * @param filePath  jar包路径
      */
-    public static void exportToJar(@NotNull ResourceContainer container, String filePath) {
+    public static void exportToJar(@NotNull IResourceContainer container, String filePath) {
         try {
             container.exportResource(new JarFileExporter(new JarWriter(filePath)));
         } catch (Exception e) {
@@ -65,6 +85,21 @@ public class ResourceHelper {
         }
     }
 
+    /**
+     * 将资源容器导出为jar包，条目的压缩分散到多个线程上进行。
+     *
+     * @param container   资源容器
+     * @param filePath    jar包路径
+     * @param parallelism 线程数
+     */
+    public static void exportToJar(@NotNull IResourceContainer container, String filePath, int parallelism) {
+        try {
+            container.exportResource(new JarFileExporter(new ParallelJarWriter(filePath, parallelism)));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * 将指定资源导出为class文件。
      *
@@ -72,7 +107,7 @@ public class ResourceHelper {
      * @param filePath     class文件输出路径
      * @param resourcePath 资源在容器中的路径
      */
-    public static void exportToClassFile(@NotNull ResourceContainer container, String filePath, String resourcePath) {
+    public static void exportToClassFile(@NotNull IResourceContainer container, String filePath, String resourcePath) {
         try {
             container.exportResource(new SimpleClassFileExporter(resourcePath, filePath));
         } catch (Exception e) {
@@ -80,7 +115,7 @@ public class ResourceHelper {
         }
     }
 
-    public static Result<IResource, String> getOnlyResource(@NotNull ResourceContainer container) {
+    public static Result<IResource, String> getOnlyResource(@NotNull IResourceContainer container) {
         if (container.isEmpty()) {
             return Result.Err("the container is empty");
         }
@@ -0,0 +1,123 @@
+package com.github.luiox.morpher.progress;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在控制台显示进度的监听器。
+ * <p>
+ * 处理类的线程只更新计数和最近处理的类名，不做任何I/O；由一个后台守护线程按固定的间隔刷新同一行，
+ * 因此输出的频率和类的数量无关，也不会让并行遍历的线程在控制台的锁上排队。
+ */
+public class ConsoleProgressListener implements IProgressListener {
+    /**
+     * 默认的刷新间隔（毫秒）
+     */
+    public static final long DefaultIntervalMillis = 200;
+
+    private static final String Separator = "-".repeat(120);
+
+    /**
+     * 刷新线程，所有实例共享，只在遍历期间有任务
+     */
+    private static final ScheduledExecutorService Renderer = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "morpher-progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final PrintStream out;
+    private final long intervalMillis;
+
+    private final LongAdder done = new LongAdder();
+    private volatile String current = "";
+    private volatile int total;
+    private @Nullable ScheduledFuture<?> task;
+    /**
+     * 上一次输出的长度，用于覆盖更长的旧内容
+     */
+    private int lastLength;
+
+    /**
+     * 以默认的刷新间隔输出到标准输出
+     */
+    public ConsoleProgressListener() {
+        this(System.out, DefaultIntervalMillis);
+    }
+
+    /**
+     * 构造方法。
+     *
+     * @param out            输出
+     * @param intervalMillis 刷新间隔（毫秒）
+     */
+    public ConsoleProgressListener(@NotNull PrintStream out, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive");
+        }
+        this.out = out;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void onPhaseStart(@NotNull String name) {
+        out.println(Separator);
+    }
+
+    @Override
+    public synchronized void onIterationStart(int total) {
+        stop();
+        done.reset();
+        current = "";
+        this.total = total;
+        task = Renderer.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void onIterationExtended(int additional) {
+        total += additional;
+    }
+
+    @Override
+    public void onClassDone(@NotNull String className) {
+        done.increment();
+        current = className;
+    }
+
+    @Override
+    public synchronized void onIterationEnd() {
+        stop();
+        render();
+        out.println();
+        lastLength = 0;
+    }
+
+    private void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    private synchronized void tick() {
+        // 遍历结束之后才执行到这里的刷新直接丢弃
+        if (task != null) {
+            render();
+        }
+    }
+
+    private void render() {
+        var line = "Class: [" + done.sum() + "/" + total + "] " + current;
+        int padding = Math.max(0, lastLength - line.length());
+        lastLength = line.length();
+        out.print("\r" + line + " ".repeat(padding));
+        out.flush();
+    }
+}
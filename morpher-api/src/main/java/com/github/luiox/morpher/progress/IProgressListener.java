@@ -0,0 +1,85 @@
+package com.github.luiox.morpher.progress;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 转换进度的监听器。
+ * <p>
+ * {@link #onClassDone}在每个类处理完之后调用，并行遍历时会被多个线程同时调用，
+ * 实现需要是线程安全的，并且不能在这里做I/O，只更新计数，显示由实现自己按固定的间隔完成。
+ * 其余方法依次调用，不会同时进行，遍历的开始和结束也不会交错；
+ * {@link com.github.luiox.morpher.transformer.PassScheduler}同时运行多个阶段时通过{@link #shared}保证这一点，
+ * 此时这些回调可能来自不同的线程。
+ */
+public interface IProgressListener {
+    /**
+     * 一个阶段开始
+     *
+     * @param name 阶段名称
+     */
+    default void onPhaseStart(@NotNull String name) {
+    }
+
+    /**
+     * 一个阶段结束
+     *
+     * @param name   阶段名称
+     * @param millis 耗时（毫秒）
+     */
+    default void onPhaseEnd(@NotNull String name, long millis) {
+    }
+
+    /**
+     * 开始遍历所有类
+     *
+     * @param total 需要处理的类数量
+     */
+    default void onIterationStart(int total) {
+    }
+
+    /**
+     * 同时运行的另一个阶段加入了正在进行的遍历，需要处理的类数量增加
+     *
+     * @param additional 增加的类数量
+     */
+    default void onIterationExtended(int additional) {
+    }
+
+    /**
+     * 一个类处理完成，无论成功还是失败都会调用
+     *
+     * @param className 类名
+     */
+    default void onClassDone(@NotNull String className) {
+    }
+
+    /**
+     * 遍历结束
+     */
+    default void onIterationEnd() {
+    }
+
+    /**
+     * 不输出任何内容的监听器，用于批处理任务
+     *
+     * @return 监听器
+     */
+    static @NotNull IProgressListener silent() {
+        return SilentProgressListener.Instance;
+    }
+
+    /**
+     * 包装一个监听器，供同时运行的多个阶段共享。
+     * <p>
+     * 回调被串行化，同时进行的遍历合并成一次，被包装的监听器仍然满足本接口关于调用顺序的约定。
+     *
+     * @param delegate 被包装的监听器
+     * @return 共享的监听器
+     */
+    static @NotNull IProgressListener shared(@NotNull IProgressListener delegate) {
+        if (delegate instanceof SharedProgressListener || delegate instanceof SilentProgressListener) {
+            return delegate;
+        }
+        return new SharedProgressListener(delegate);
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.luiox.morpher.progress;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 让多个同时运行的阶段共享一个监听器。
+ * <p>
+ * 除了{@link #onClassDone}以外的回调都在锁内转发，同时进行的遍历被合并成一次：
+ * 第一个遍历开始时转发{@link #onIterationStart}，之后加入的遍历转发{@link #onIterationExtended}，
+ * 最后一个遍历结束时才转发{@link #onIterationEnd}，因此被包装的监听器仍然看到依次调用的回调。
+ */
+final class SharedProgressListener implements IProgressListener {
+    private final IProgressListener delegate;
+    /**
+     * 正在进行的遍历数量
+     */
+    private int activeIterations;
+
+    SharedProgressListener(@NotNull IProgressListener delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void onPhaseStart(@NotNull String name) {
+        delegate.onPhaseStart(name);
+    }
+
+    @Override
+    public synchronized void onPhaseEnd(@NotNull String name, long millis) {
+        delegate.onPhaseEnd(name, millis);
+    }
+
+    @Override
+    public synchronized void onIterationStart(int total) {
+        if (activeIterations++ == 0) {
+            delegate.onIterationStart(total);
+        } else {
+            delegate.onIterationExtended(total);
+        }
+    }
+
+    @Override
+    public synchronized void onIterationExtended(int additional) {
+        delegate.onIterationExtended(additional);
+    }
+
+    @Override
+    public void onClassDone(@NotNull String className) {
+        delegate.onClassDone(className);
+    }
+
+    @Override
+    public synchronized void onIterationEnd() {
+        if (--activeIterations == 0) {
+            delegate.onIterationEnd();
+        }
+    }
+}
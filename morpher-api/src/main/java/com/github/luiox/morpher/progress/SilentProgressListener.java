@@ -0,0 +1,11 @@
+package com.github.luiox.morpher.progress;
+
+/**
+ * 不输出任何内容的监听器
+ */
+final class SilentProgressListener implements IProgressListener {
+    static final SilentProgressListener Instance = new SilentProgressListener();
+
+    private SilentProgressListener() {
+    }
+}
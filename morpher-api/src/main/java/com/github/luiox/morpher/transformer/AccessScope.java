@@ -0,0 +1,24 @@
+package com.github.luiox.morpher.transformer;
+
+/**
+ * Pass读写的数据范围，用于{@link PassInfo#reads()}和{@link PassInfo#writes()}，
+ * 调度器据此判断两个阶段能否同时运行或者合并成一次遍历。
+ */
+public enum AccessScope {
+    /**
+     * 正在处理的类的方法体，只在类的内部可见，不会影响其他类
+     */
+    Code,
+    /**
+     * 字段和方法的声明、签名、注解等，其他类可以通过引用看到
+     */
+    Members,
+    /**
+     * 类名、父类和接口，修改时会改变容器的结构（改名）
+     */
+    Hierarchy,
+    /**
+     * 容器中的非class资源，以及资源的增删
+     */
+    Resources
+}
@@ -1,11 +1,20 @@
 package com.github.luiox.morpher.transformer;
 
+import com.github.luiox.morpher.metrics.PassMetrics;
+import com.github.luiox.morpher.progress.ConsoleProgressListener;
+import com.github.luiox.morpher.progress.IProgressListener;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
@@ -17,16 +26,13 @@ public class BasicPassContext implements IPassContext {
     }
 
     // pass声明周期操作
-    private Map<AbstractPass, LifecycleHook> lifecycleHookMap = new HashMap<>();
+    private Map<AbstractPass, LifecycleHook> lifecycleHookMap = new ConcurrentHashMap<>();
 
     /**
      * 生命周期钩子注册
      */
     public LifecycleHook regLifecycleHook(AbstractPass owner) {
-        if (!lifecycleHookMap.containsKey(owner)) {
-            lifecycleHookMap.put(owner, new LifecycleHook());
-        }
-        return lifecycleHookMap.get(owner);
+        return lifecycleHookMap.computeIfAbsent(owner, _ -> new LifecycleHook());
     }
 
     public void runBeforeAllClassesHooks() {
@@ -48,7 +54,7 @@ public class BasicPassContext implements IPassContext {
     }
 
     public void setNewClassNode(ClassNode newNode) {
-        currentClass = newNode;
+        currentClass.set(newNode);
     }
 
     public static class LifecycleHook {
@@ -66,21 +72,27 @@ public class BasicPassContext implements IPassContext {
         }
     }
 
-    // 计数器
-    private Map<Class<?>, Map<String, AtomicInteger>> passCounters = new HashMap<>();
+    // 计数器，并行遍历时会被多个线程同时访问
+    private Map<Class<?>, Map<String, AtomicInteger>> passCounters = new ConcurrentHashMap<>();
 
     public AtomicInteger getCounter(Class<?> clazz, String name) {
-        passCounters.computeIfAbsent(clazz, k -> new HashMap<>()).computeIfAbsent(name, k -> new AtomicInteger());
-        return passCounters.get(clazz).get(name);
+        return passCounters.computeIfAbsent(clazz, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(name, k -> new AtomicInteger());
     }
 
-    // 基础的上下文信息
-    private ClassNode currentClass;
+    // 基础的上下文信息，当前类是线程封闭的，并行遍历时每个线程只能看到自己正在处理的类
+    private final ThreadLocal<ClassNode> currentClass = new ThreadLocal<>();
     // 如果为null就不过滤，其次就是传入一个谓词，用于判断是否需要过滤，如果类名让这个谓词返回true那么就被保留
     private Predicate<String> currentClassFilter;
 
     private AbstractPass prevPass;
 
+    // 性能统计，默认关闭
+    private volatile PassMetrics metrics;
+
+    // 进度监听器，默认在控制台显示
+    private volatile IProgressListener progressListener = new ConsoleProgressListener();
+
     public void setCurrentClassFilter(Predicate<String> currentClassFilter) {
         this.currentClassFilter = currentClassFilter;
     }
@@ -91,12 +103,19 @@ public class BasicPassContext implements IPassContext {
 
     @Override
     public @NotNull ClassNode currentClass() {
-        return currentClass;
+        return currentClass.get();
     }
 
     @Override
     public void setCurrentClass(@NotNull ClassNode classNode) {
-        currentClass = classNode;
+        currentClass.set(classNode);
+    }
+
+    /**
+     * 清除当前线程正在处理的类，用于工作线程处理完一个类之后释放引用
+     */
+    public void clearCurrentClass() {
+        currentClass.remove();
     }
 
     @Override
@@ -108,4 +127,77 @@ public class BasicPassContext implements IPassContext {
     public void setPrevPass(@NotNull AbstractPass pass) {
         prevPass = pass;
     }
+
+    @Override
+    public @Nullable PassMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 设置性能统计，设置为null时关闭统计
+     *
+     * @param metrics 性能统计
+     */
+    public void setMetrics(@Nullable PassMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 开启性能统计，已经开启时返回当前的统计
+     *
+     * @return 性能统计
+     */
+    public synchronized @NotNull PassMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new PassMetrics();
+        }
+        return metrics;
+    }
+
+    @Override
+    public @NotNull IProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * 设置进度监听器，批处理任务可以使用{@link IProgressListener#silent()}关闭输出
+     *
+     * @param progressListener 进度监听器
+     */
+    public void setProgressListener(@NotNull IProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    // 最近一次分析的方法和栈帧，线程封闭的，同一个方法上连续的Pass可以共享
+    private final ThreadLocal<CachedFrames> cachedFrames = new ThreadLocal<>();
+
+    private record CachedFrames(MethodNode methodNode, Frame<BasicValue>[] frames) {
+    }
+
+    /**
+     * 获取栈帧分析结果，当前线程最近分析的是同一个方法并且没有失效时直接返回缓存的结果
+     */
+    @Override
+    public Frame<BasicValue> @NotNull [] getFrames(@NotNull MethodNode methodNode) throws AnalyzerException {
+        var cached = cachedFrames.get();
+        if (cached != null && cached.methodNode == methodNode) {
+            return cached.frames;
+        }
+        var frames = new Analyzer<>(new BasicInterpreter()).analyze(currentClass().name, methodNode);
+        cachedFrames.set(new CachedFrames(methodNode, frames));
+        return frames;
+    }
+
+    @Override
+    public void invalidateFrames(@NotNull MethodNode methodNode) {
+        var cached = cachedFrames.get();
+        if (cached != null && cached.methodNode == methodNode) {
+            cachedFrames.remove();
+        }
+    }
+
+    @Override
+    public void invalidateFrames() {
+        cachedFrames.remove();
+    }
 }
@@ -0,0 +1,247 @@
+package com.github.luiox.morpher.transformer;
+
+import com.github.luiox.morpher.model.ClassResource;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.ClassNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在连续的Phase之间保留ClassNode，避免每个阶段都重新解析和写出一遍class文件。
+ * <p>
+ * 阶段处理完一个类之后，如果不需要计算栈帧，就把ClassNode放回缓存，而不是立即写回字节，
+ * 下一个阶段以相同的读取标志处理这个类时直接取出使用。写回时使用的标志是所有未写回的阶段写入标志的并集。
+ * <p>
+ * 缓存按照估算的内存占用限制总大小，超过预算时按照最近最少使用的顺序把ClassNode写回字节后丢弃。
+ * 一个类在被某个线程处理时会从缓存中取出，处理完再放回，因此写回不会和正在进行的修改冲突。
+ * <p>
+ * 缓存中的类在写回之前，容器里的字节是旧的，所以直接读取容器字节的GlobalPass运行前，以及整个流程结束时，
+ * 都需要调用{@link #flush()}。
+ */
+public class ClassNodeCache {
+    private static final Logger logger = LoggerFactory.getLogger(ClassNodeCache.class);
+
+    /**
+     * 根据class文件大小估算ClassNode内存占用时使用的倍数
+     */
+    private static final int NodeSizeFactor = 10;
+
+    /**
+     * 把ClassNode写成字节的方法
+     */
+    public interface IClassNodeWriter {
+        /**
+         * 写出一个类
+         *
+         * @param classNode 类
+         * @param wflag     ClassWriter的标志
+         * @return class文件内容
+         */
+        byte @NotNull [] write(@NotNull ClassNode classNode, int wflag);
+    }
+
+    /**
+     * 缓存中的一个类
+     */
+    public static final class CachedNode {
+        /**
+         * 类
+         */
+        public final ClassNode classNode;
+        /**
+         * 解析时使用的读取标志
+         */
+        public final int readFlag;
+        /**
+         * 还没有写回的阶段的写入标志并集
+         */
+        public final int pendingWriteFlag;
+        /**
+         * 估算的内存占用
+         */
+        public final long estimatedSize;
+
+        CachedNode(@NotNull ClassNode classNode, int readFlag, int pendingWriteFlag, long estimatedSize) {
+            this.classNode = classNode;
+            this.readFlag = readFlag;
+            this.pendingWriteFlag = pendingWriteFlag;
+            this.estimatedSize = estimatedSize;
+        }
+    }
+
+    /**
+     * 内存预算（字节）
+     */
+    private final long budgetBytes;
+    /**
+     * 写出方法
+     */
+    private final IClassNodeWriter writer;
+    /**
+     * 按访问顺序排列的缓存，ClassResource没有重写equals，因此以对象本身作为键
+     */
+    private final LinkedHashMap<ClassResource, CachedNode> nodes = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 当前缓存的估算占用
+     */
+    private long usedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * 构造方法。
+     *
+     * @param budgetBytes 内存预算（字节）
+     * @param writer      写出方法
+     */
+    public ClassNodeCache(long budgetBytes, @NotNull IClassNodeWriter writer) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("budgetBytes must be positive");
+        }
+        this.budgetBytes = budgetBytes;
+        this.writer = writer;
+    }
+
+    /**
+     * 根据class文件大小估算ClassNode的内存占用。
+     *
+     * @param classFileSize class文件大小
+     * @return 估算的占用
+     */
+    public static long estimateSize(int classFileSize) {
+        return (long) classFileSize * NodeSizeFactor;
+    }
+
+    /**
+     * 取出一个类用于处理，取出之后直到{@link #checkIn}之前不会被写回或驱逐。
+     * <p>
+     * 缓存的ClassNode解析时的读取标志和本次不同时不能复用，会先写回字节，然后返回null，由调用者重新解析。
+     *
+     * @param resource 类资源
+     * @param readFlag 本次的读取标志
+     * @return 缓存的类，没有可复用的返回null
+     */
+    public @Nullable CachedNode checkOut(@NotNull ClassResource resource, int readFlag) {
+        CachedNode cached;
+        synchronized (this) {
+            cached = nodes.remove(resource);
+            if (cached == null) {
+                misses++;
+                return null;
+            }
+            usedBytes -= cached.estimatedSize;
+            if (cached.readFlag == readFlag) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        writeBack(resource, cached);
+        return null;
+    }
+
+    /**
+     * 把处理完的类放回缓存，超过预算时写回最久没有使用的类。
+     *
+     * @param resource      类资源
+     * @param classNode     类
+     * @param readFlag      解析时使用的读取标志
+     * @param writeFlag     写回时使用的写入标志，需要已经合并了之前没有写回的阶段的标志
+     * @param estimatedSize 估算的内存占用
+     */
+    public void checkIn(@NotNull ClassResource resource,
+                        @NotNull ClassNode classNode,
+                        int readFlag,
+                        int writeFlag,
+                        long estimatedSize) {
+        List<Map.Entry<ClassResource, CachedNode>> evicted = new ArrayList<>();
+        synchronized (this) {
+            var old = nodes.put(resource, new CachedNode(classNode, readFlag, writeFlag, estimatedSize));
+            if (old != null) {
+                usedBytes -= old.estimatedSize;
+            }
+            usedBytes += estimatedSize;
+            var iterator = nodes.entrySet().iterator();
+            while (usedBytes > budgetBytes && iterator.hasNext()) {
+                var eldest = iterator.next();
+                iterator.remove();
+                usedBytes -= eldest.getValue().estimatedSize;
+                evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+                evictions++;
+            }
+        }
+        // 在锁外写出，避免阻塞其他线程
+        for (var entry : evicted) {
+            writeBack(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 丢弃一个类的缓存，不写回。
+     *
+     * @param resource 类资源
+     */
+    public synchronized void invalidate(@NotNull ClassResource resource) {
+        var cached = nodes.remove(resource);
+        if (cached != null) {
+            usedBytes -= cached.estimatedSize;
+        }
+    }
+
+    /**
+     * 把所有缓存的类写回字节并清空缓存。
+     */
+    public void flush() {
+        List<Map.Entry<ClassResource, CachedNode>> entries;
+        long hits, misses, evictions;
+        synchronized (this) {
+            if (nodes.isEmpty()) {
+                return;
+            }
+            hits = this.hits;
+            misses = this.misses;
+            evictions = this.evictions;
+            entries = new ArrayList<>(nodes.size());
+            for (var entry : nodes.entrySet()) {
+                entries.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+            nodes.clear();
+            usedBytes = 0;
+        }
+        for (var entry : entries) {
+            writeBack(entry.getKey(), entry.getValue());
+        }
+        logger.info("flushed {} cached classes, hits: {}, misses: {}, evictions: {}",
+                entries.size(), hits, misses, evictions);
+    }
+
+    /**
+     * 当前缓存的类数量
+     *
+     * @return 数量
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    /**
+     * 当前缓存的估算占用
+     *
+     * @return 字节数
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private void writeBack(@NotNull ClassResource resource, @NotNull CachedNode cached) {
+        resource.set(writer.write(cached.classNode, cached.pendingWriteFlag));
+    }
+}
@@ -1,8 +1,16 @@
 package com.github.luiox.morpher.transformer;
 
+import com.github.luiox.morpher.metrics.PassMetrics;
+import com.github.luiox.morpher.progress.IProgressListener;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
 
 public interface IPassContext {
     /**
@@ -41,4 +49,50 @@ public interface IPassContext {
      * @return PassHelper
      */
     PassHelper getPassHelper();
+
+    /**
+     * 获取性能统计，返回null时不做统计
+     *
+     * @return 性能统计
+     */
+    default @Nullable PassMetrics getMetrics() {
+        return null;
+    }
+
+    /**
+     * 获取进度监听器，默认不输出进度
+     *
+     * @return 进度监听器
+     */
+    default @NotNull IProgressListener getProgressListener() {
+        return IProgressListener.silent();
+    }
+
+    /**
+     * 获取当前类中一个方法的栈帧分析结果，使用{@link BasicInterpreter}。
+     * <p>
+     * 默认每次都重新分析，实现可以缓存结果，让同一个方法上的多个Pass共享；
+     * 修改了指令之后需要调用{@link #invalidateFrames(MethodNode)}，Phase会在不保留栈帧的Pass之后自动调用。
+     *
+     * @param methodNode 方法
+     * @return 每条指令对应的栈帧，不可达的指令为null
+     * @throws AnalyzerException 分析失败时抛出
+     */
+    default Frame<BasicValue> @NotNull [] getFrames(@NotNull MethodNode methodNode) throws AnalyzerException {
+        return new Analyzer<>(new BasicInterpreter()).analyze(currentClass().name, methodNode);
+    }
+
+    /**
+     * 丢弃一个方法缓存的栈帧
+     *
+     * @param methodNode 方法
+     */
+    default void invalidateFrames(@NotNull MethodNode methodNode) {
+    }
+
+    /**
+     * 丢弃当前线程缓存的所有栈帧
+     */
+    default void invalidateFrames() {
+    }
 }
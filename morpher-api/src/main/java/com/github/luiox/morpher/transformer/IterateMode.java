@@ -0,0 +1,21 @@
+package com.github.luiox.morpher.transformer;
+
+/**
+ * 类遍历模式。
+ * <p>
+ * 决定Phase在遍历所有ClassNode时是单线程逐个处理，还是把类分发到多个线程上并行处理。
+ */
+public enum IterateMode {
+    /**
+     * 单线程依次处理
+     */
+    Serial,
+    /**
+     * 使用ForkJoinPool并行处理
+     */
+    ForkJoin,
+    /**
+     * 每个类一个虚拟线程并行处理
+     */
+    VirtualThread,
+}
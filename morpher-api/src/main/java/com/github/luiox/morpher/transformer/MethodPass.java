@@ -16,4 +16,26 @@ public abstract class MethodPass implements AbstractPass {
      * @param context    Pass上下文
      */
     public abstract void run(@NotNull MethodNode methodNode, @NotNull IPassContext context);
+
+    /**
+     * 是否需要栈帧分析结果。
+     * <p>
+     * 返回true时，Phase会在运行之前分析方法，分析失败的方法会跳过这个Pass，
+     * Pass中通过{@link IPassContext#getFrames}取得的是同一份结果。
+     *
+     * @return 是否需要栈帧
+     */
+    public boolean requiresFrames() {
+        return false;
+    }
+
+    /**
+     * 运行之后之前的栈帧分析结果是否仍然有效，只读取指令或者不改变指令的Pass可以返回true，
+     * 否则Phase会在运行之后丢弃缓存的栈帧。
+     *
+     * @return 是否保留栈帧
+     */
+    public boolean preservesFrames() {
+        return false;
+    }
 }
@@ -1,26 +1,84 @@
 package com.github.luiox.morpher.transformer;
 
+import com.github.luiox.morpher.info.ClassInfoIndex;
 import com.github.luiox.morpher.model.ClassResource;
+import com.github.luiox.morpher.model.IResourceContainer;
 import com.github.luiox.morpher.model.ResourceContainer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.ClassNode;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class PassContext extends BasicPassContext {
-    private final ResourceContainer container = new ResourceContainer();
+    private final IResourceContainer container;
 
-    public ResourceContainer getContainer() {
+    /**
+     * 使用默认的{@link ResourceContainer}构造上下文。
+     */
+    public PassContext() {
+        this(new ResourceContainer());
+    }
+
+    /**
+     * 使用指定的资源容器构造上下文，多线程导入、转换和导出时可以传入
+     * {@link com.github.luiox.morpher.model.ConcurrentResourceContainer}。
+     *
+     * @param container 资源容器
+     */
+    public PassContext(@NotNull IResourceContainer container) {
+        this.container = container;
+    }
+
+    /**
+     * 获取资源容器。
+     * <p>
+     * 容器可以在构造时替换，返回类型因此是{@link IResourceContainer}，不再是{@link ResourceContainer}。
+     * 以前把返回值赋给ResourceContainer变量的代码需要改为使用IResourceContainer，
+     * 它继承了Map，HashMap上常用的操作都可以直接使用。
+     *
+     * @return 资源容器
+     */
+    public @NotNull IResourceContainer getContainer() {
         return container;
     }
 
+    // 增量维护的类信息索引，阶段开始时只需要同步变化过的类
+    private final ClassInfoIndex classInfoIndex = new ClassInfoIndex();
+
+    public @NotNull ClassInfoIndex getClassInfoIndex() {
+        return classInfoIndex;
+    }
+
+    // 在阶段之间保留ClassNode的缓存，为null时每个阶段都从字节重新解析
+    private volatile ClassNodeCache classNodeCache;
+
+    public @Nullable ClassNodeCache getClassNodeCache() {
+        return classNodeCache;
+    }
+
+    public void setClassNodeCache(@Nullable ClassNodeCache classNodeCache) {
+        this.classNodeCache = classNodeCache;
+    }
+
+    /**
+     * 把缓存中的ClassNode全部写回容器，需要直接读取容器中的字节之前调用。
+     */
+    public void flushClassNodeCache() {
+        var cache = classNodeCache;
+        if (cache != null) {
+            cache.flush();
+        }
+    }
+
+    // 阶段中登记的删除和新增，可能被多个工作线程同时登记，在阶段结束时统一应用
     // class name
-    private final List<String> classDeleteList = new ArrayList<>();
+    private final Queue<String> classDeleteList = new ConcurrentLinkedQueue<>();
     // class name -> byte[]
-    private final Map<String, byte[]> classAddList = new HashMap<>();
+    private final Map<String, byte[]> classAddList = new ConcurrentHashMap<>();
 
     public void deleteClassNode(String className) {
         classDeleteList.add(className);
@@ -34,13 +92,32 @@ public class PassContext extends BasicPassContext {
         classAddList.put(className, classBytes);
     }
 
+    /**
+     * 应用阶段中登记的删除和新增，每个阶段结束时由{@link Phase#runPhase}调用。
+     * <p>
+     * 已经应用的登记会被移除，重复调用只处理之后新登记的部分。
+     */
     public void applyClassModify() {
-        for (var className : classDeleteList) {
-            container.remove(className + ".class");
+        var cache = classNodeCache;
+        String className;
+        while ((className = classDeleteList.poll()) != null) {
+            var key = className + ".class";
+            var removed = container.remove(key);
+            if (cache != null && removed instanceof ClassResource classResource) {
+                cache.invalidate(classResource);
+            }
+            classInfoIndex.remove(key);
         }
-        for (var entry : classAddList.entrySet()) {
+        for (var iterator = classAddList.entrySet().iterator(); iterator.hasNext(); ) {
+            var entry = iterator.next();
+            iterator.remove();
             var key = entry.getKey() + ".class";
-            container.addResource(key, new ClassResource(key, entry.getValue()));
+            var resource = new ClassResource(key, entry.getValue());
+            var replaced = container.put(key, resource);
+            if (cache != null && replaced instanceof ClassResource classResource) {
+                cache.invalidate(classResource);
+            }
+            classInfoIndex.update(key, resource);
         }
     }
 
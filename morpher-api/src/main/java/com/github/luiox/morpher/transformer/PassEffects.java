@@ -0,0 +1,182 @@
+package com.github.luiox.morpher.transformer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * 一个Pass或者一个阶段读写的数据范围和处理的类，由{@link PassInfo}得到。
+ * <p>
+ * 没有{@link PassInfo}的Pass和GlobalPass按照读写全部数据处理。
+ *
+ * @param reads         读取范围
+ * @param writes        修改范围
+ * @param classPrefixes 处理的类名前缀，null表示所有类
+ * @param global        是否包含GlobalPass，GlobalPass直接操作整个容器
+ */
+public record PassEffects(@NotNull Set<AccessScope> reads,
+                          @NotNull Set<AccessScope> writes,
+                          @Nullable List<String> classPrefixes,
+                          boolean global) {
+    public PassEffects {
+        reads = Collections.unmodifiableSet(copy(reads));
+        writes = Collections.unmodifiableSet(copy(writes));
+        classPrefixes = classPrefixes == null ? null : List.copyOf(classPrefixes);
+    }
+
+    private static final PassEffects All = new PassEffects(EnumSet.allOf(AccessScope.class),
+            EnumSet.allOf(AccessScope.class), null, false);
+
+    /**
+     * 单个Pass的读写范围
+     *
+     * @param pass Pass
+     * @return 读写范围
+     */
+    public static @NotNull PassEffects of(@NotNull AbstractPass pass) {
+        var info = pass.getClass().getAnnotation(PassInfo.class);
+        if (pass instanceof GlobalPass) {
+            return new PassEffects(All.reads, All.writes, null, true);
+        }
+        if (info == null) {
+            return All;
+        }
+        return new PassEffects(toSet(info.reads()), toSet(info.writes()),
+                info.classes().length == 0 ? null : List.of(info.classes()), false);
+    }
+
+    /**
+     * 多个Pass合起来的读写范围
+     *
+     * @param passes Pass列表
+     * @return 读写范围
+     */
+    public static @NotNull PassEffects of(@NotNull List<? extends AbstractPass> passes) {
+        if (passes.isEmpty()) {
+            return new PassEffects(EnumSet.noneOf(AccessScope.class), EnumSet.noneOf(AccessScope.class),
+                    List.of(), false);
+        }
+        var result = of(passes.getFirst());
+        for (int i = 1; i < passes.size(); i++) {
+            result = result.union(of(passes.get(i)));
+        }
+        return result;
+    }
+
+    private static @NotNull Set<AccessScope> copy(@NotNull Set<AccessScope> scopes) {
+        var set = EnumSet.noneOf(AccessScope.class);
+        set.addAll(scopes);
+        return set;
+    }
+
+    private static @NotNull Set<AccessScope> toSet(AccessScope @NotNull [] scopes) {
+        var set = EnumSet.noneOf(AccessScope.class);
+        set.addAll(Arrays.asList(scopes));
+        return set;
+    }
+
+    /**
+     * 合并两个读写范围
+     *
+     * @param other 另一个
+     * @return 合并后的范围
+     */
+    public @NotNull PassEffects union(@NotNull PassEffects other) {
+        var r = EnumSet.noneOf(AccessScope.class);
+        r.addAll(reads);
+        r.addAll(other.reads);
+        var w = EnumSet.noneOf(AccessScope.class);
+        w.addAll(writes);
+        w.addAll(other.writes);
+        List<String> prefixes = null;
+        if (classPrefixes != null && other.classPrefixes != null) {
+            var merged = new LinkedHashSet<>(classPrefixes);
+            merged.addAll(other.classPrefixes);
+            prefixes = List.copyOf(merged);
+        }
+        return new PassEffects(r, w, prefixes, global || other.global);
+    }
+
+    /**
+     * 是否会改变容器的结构，例如改名或者增删资源，这样的阶段不能和任何阶段同时运行
+     *
+     * @return 是否改变结构
+     */
+    public boolean isStructural() {
+        return global || writes.contains(AccessScope.Hierarchy) || writes.contains(AccessScope.Resources);
+    }
+
+    /**
+     * 类名是否在处理范围内
+     *
+     * @param className 类的内部名
+     * @return 是否匹配
+     */
+    public boolean matchesClass(@NotNull String className) {
+        if (classPrefixes == null) {
+            return true;
+        }
+        for (var prefix : classPrefixes) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 两者处理的类是否可能有重叠
+     *
+     * @param other 另一个
+     * @return 是否重叠
+     */
+    public boolean overlapsClasses(@NotNull PassEffects other) {
+        if (classPrefixes == null || other.classPrefixes == null) {
+            return true;
+        }
+        for (var a : classPrefixes) {
+            for (var b : other.classPrefixes) {
+                if (a.startsWith(b) || b.startsWith(a)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在类之间可见的数据上是否有读写冲突。
+     * <p>
+     * {@link AccessScope#Code}只在类的内部可见，不参与判断：按类合并遍历时，后面的Pass看到的一定是
+     * 前面的Pass处理过的同一个类的方法体。
+     *
+     * @param other 另一个
+     * @return 是否冲突
+     */
+    public boolean conflictsAcrossClasses(@NotNull PassEffects other) {
+        return intersectsShared(writes, other.reads) || intersectsShared(writes, other.writes)
+                || intersectsShared(other.writes, reads);
+    }
+
+    private static boolean intersectsShared(@NotNull Set<AccessScope> a, @NotNull Set<AccessScope> b) {
+        for (var scope : a) {
+            if (scope != AccessScope.Code && b.contains(scope)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 两个阶段能否同时运行：都不改变容器结构，处理的类没有重叠，并且类之间可见的数据没有读写冲突。
+     * <p>
+     * 遍历会把每个类整个写回，所以即使只读的阶段也不能和其他阶段同时处理同一个类。
+     *
+     * @param other 另一个
+     * @return 是否冲突
+     */
+    public boolean conflictsWith(@NotNull PassEffects other) {
+        return isStructural() || other.isStructural() || overlapsClasses(other) || conflictsAcrossClasses(other);
+    }
+}
@@ -1,9 +1,12 @@
 package com.github.luiox.morpher.transformer;
 
+import com.github.luiox.morpher.info.ClassHierarchy;
 import com.github.luiox.morpher.info.ClassInfo;
 import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
 
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.function.Consumer;
 
@@ -16,5 +19,57 @@ public interface PassHelper {
                                   int wflag,
                                   @NotNull Consumer<ClassNode> consumer);
 
+    /**
+     * 构建容器中所有类的继承关系索引，默认只包含容器中的类。
+     *
+     * @param context Pass上下文
+     * @return 继承关系索引
+     */
+    default @NotNull ClassHierarchy buildClassHierarchy(@NotNull IPassContext context) {
+        return ClassHierarchy.of(buildClassInfo(context).values());
+    }
+
+    /**
+     * 以指定的遍历模式遍历所有ClassNode，默认实现忽略遍历模式，按单线程处理。
+     *
+     * @param context  Pass上下文
+     * @param infos    类信息映射
+     * @param rflag    读取标志
+     * @param wflag    写入标志
+     * @param mode     遍历模式
+     * @param consumer 对每个ClassNode的处理逻辑，并行模式下会被多个线程同时调用
+     */
+    default void iterateClassNodeWithInfo(@NotNull IPassContext context,
+                                          @NotNull Map<String, ClassInfo> infos,
+                                          int rflag,
+                                          int wflag,
+                                          @NotNull IterateMode mode,
+                                          @NotNull Consumer<ClassNode> consumer) {
+        iterateClassNodeWithInfo(context, infos, rflag, wflag, consumer);
+    }
+
+    /**
+     * 把ClassNode写成class文件，默认使用普通的ClassWriter。
+     *
+     * @param classNode 类
+     * @param wflag     写入标志
+     * @return class文件内容
+     */
+    default byte @NotNull [] writeClassNode(@NotNull ClassNode classNode, int wflag) {
+        ClassWriter classWriter = new ClassWriter(wflag);
+        classNode.accept(classWriter);
+        return classWriter.toByteArray();
+    }
+
     void addLibPath(@NotNull String path);
+
+    /**
+     * 添加依赖库目录，并使用索引文件缓存扫描结果，默认实现忽略索引文件。
+     *
+     * @param path      依赖库目录
+     * @param indexFile 索引文件
+     */
+    default void addLibPath(@NotNull String path, @NotNull Path indexFile) {
+        addLibPath(path);
+    }
 }
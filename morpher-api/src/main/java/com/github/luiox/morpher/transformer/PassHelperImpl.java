@@ -1,21 +1,32 @@
 package com.github.luiox.morpher.transformer;
 
+import com.github.luiox.morpher.asm.writer.CachedCommonSuperClassProvider;
 import com.github.luiox.morpher.asm.writer.CommonSuperClassProvider;
 import com.github.luiox.morpher.asm.writer.DelegatingSuperClassWriter;
+import com.github.luiox.morpher.asm.writer.ICommonSuperClassProvider;
+import com.github.luiox.morpher.info.ClassHeaderParser;
+import com.github.luiox.morpher.info.ClassHierarchy;
 import com.github.luiox.morpher.info.ClassInfo;
+import com.github.luiox.morpher.info.IClassInfoLookup;
+import com.github.luiox.morpher.info.JrtClassInfoLookup;
 import com.github.luiox.morpher.model.ClassResource;
-import com.github.luiox.morpher.model.ResourceContainer;
+import com.github.luiox.morpher.model.IResourceContainer;
+import com.github.luiox.morpher.progress.IProgressListener;
+import com.github.luiox.morpher.util.type.Pair;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.*;
 import java.util.function.Consumer;
 
 public class PassHelperImpl implements PassHelper {
@@ -36,6 +47,9 @@ public class PassHelperImpl implements PassHelper {
     }
 
     private CommonSuperClassProvider superClassProvider;
+    // 不在遍历中写出时（例如写回缓存的ClassNode）使用的公共父类查询，只查找依赖库和JDK，依赖库变化时重新创建；
+    // 遍历使用的查询还要查找容器中的类，每次遍历单独创建，通过参数传递，同时运行的阶段之间互不影响
+    private volatile ICommonSuperClassProvider defaultFrameSuperClassProvider;
 
     @Override
     public void addLibPath(@NotNull String path) {
@@ -43,8 +57,58 @@ public class PassHelperImpl implements PassHelper {
             superClassProvider = new CommonSuperClassProvider();
         }
         superClassProvider.scan(path);
+        // 依赖库变化之后之前缓存的结果可能不对了
+        defaultFrameSuperClassProvider = null;
     }
 
+    @Override
+    public void addLibPath(@NotNull String path, @NotNull Path indexFile) {
+        if (superClassProvider == null) {
+            superClassProvider = new CommonSuperClassProvider();
+        }
+        superClassProvider.scan(path, indexFile);
+        defaultFrameSuperClassProvider = null;
+    }
+
+    /**
+     * 创建计算栈帧时使用的公共父类查询，依次查找容器中的类、依赖库中的类和JDK中的类。
+     * <p>
+     * ASM会对同样的类型对反复查询，结果按类型对缓存，同一次遍历中的多个线程共享。
+     *
+     * @param context Pass上下文，为null时不查找容器中的类
+     * @return 带缓存的公共父类查询，每个类在第一次被用到时解析
+     */
+    private @NotNull ICommonSuperClassProvider createFrameSuperClassProvider(@Nullable PassContext context) {
+        List<IClassInfoLookup> layers = new ArrayList<>(3);
+        if (context != null) {
+            layers.add(context.getClassInfoIndex());
+        }
+        var libraryProvider = superClassProvider;
+        if (libraryProvider != null) {
+            var libraryInfos = libraryProvider.getClassInfoMap();
+            layers.add(libraryInfos::get);
+        }
+        layers.add(JrtClassInfoLookup.getInstance());
+        return new CachedCommonSuperClassProvider(ClassHierarchy.of(IClassInfoLookup.layered(layers)));
+    }
+
+
+    /**
+     * 并行遍历时使用的线程数
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 设置ForkJoin模式下的并行线程数。
+     *
+     * @param parallelism 线程数，必须大于0
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
 
     /**
      * 遍历所有ClassNode并执行指定操作。
@@ -60,16 +124,36 @@ public class PassHelperImpl implements PassHelper {
                                          int rflag,
                                          int wflag,
                                          @NotNull Consumer<ClassNode> consumer) {
+        iterateClassNodeWithInfo(ctx, infos, rflag, wflag, IterateMode.Serial, consumer);
+    }
+
+    /**
+     * 以指定的遍历模式遍历所有ClassNode并执行指定操作。
+     * <p>
+     * 并行模式下，类的解析、转换和写出都在工作线程上完成，每个线程通过{@link IPassContext#currentClass()}
+     * 只能看到自己正在处理的类；容器的结构性修改（改名）会在所有类处理完成后按原顺序在调用线程上统一写回。
+     *
+     * @param ctx      Pass上下文
+     * @param infos    类信息映射
+     * @param rflag    读取标志
+     * @param wflag    写入标志
+     * @param mode     遍历模式
+     * @param consumer 对每个ClassNode的处理逻辑
+     */
+    @Override
+    public void iterateClassNodeWithInfo(@NotNull IPassContext ctx,
+                                         @NotNull Map<String, ClassInfo> infos,
+                                         int rflag,
+                                         int wflag,
+                                         @NotNull IterateMode mode,
+                                         @NotNull Consumer<ClassNode> consumer) {
         if (!(ctx instanceof PassContext context)) {
             throw new IllegalArgumentException("ctx must be an instance of PassContext");
         }
-        AtomicInteger index = new AtomicInteger(1);
-        AtomicInteger total = new AtomicInteger(context.getContainer().size());
         var classFilter = context.getCurrentClassFilter();
 
-        // 运行startHook
-        context.runBeforeAllClassesHooks();
-
+        // 先在调用线程上确定需要处理的资源，工作线程不直接访问容器
+        List<Pair<String, ClassResource>> tasks = new ArrayList<>();
         for (var entry : infos.entrySet()) {
             var info = entry.getValue();
             // 如果为false，那么就被过滤
@@ -84,66 +168,244 @@ public class PassHelperImpl implements PassHelper {
                 continue;
             }
             if (resource instanceof ClassResource classResource) {
-                try {
-                    // 根据pass的配置读取
-                    ClassReader classReader = new ClassReader(classResource.get());
-                    ClassNode classNode = new ClassNode();
-                    classReader.accept(classNode, rflag);
-
-                    // 打印信息
-                    printProgress(index.getAndIncrement(), total.get(), classNode.name);
-
-                    context.setCurrentClass(classNode);
-
-                    String oldName = classNode.name;
-                    consumer.accept(classNode);
-                    // 根据参数写回去
-                    ClassWriter classWriter;
-                    if (superClassProvider == null) {
-                        classWriter = new ClassWriter(wflag);
-                    } else {
-                        classWriter = new DelegatingSuperClassWriter(superClassProvider, rflag);
-                    }
+                tasks.add(Pair.of(entry.getKey(), classResource));
+            } else {
+                logger.error("location : {} is not ClassResource", entry.getKey());
+            }
+        }
 
-                    try {
-                        classNode.accept(classWriter);
-                    } catch (Exception e) {
-                        logger.info("error when transform class: {}", classNode.name);
-                        e.printStackTrace();
-                    }
+        int total = tasks.size();
+        var progress = context.getProgressListener();
+
+        // 容器中的类在阶段之间可能变化，每次遍历使用新的缓存
+        var frameProvider = createFrameSuperClassProvider(context);
+
+        // 运行startHook
+        context.runBeforeAllClassesHooks();
+        progress.onIterationStart(total);
 
-                    if (oldName.equals(classNode.name)) {
-                        // 没有改名
-                        classResource.set(classWriter.toByteArray());
-                    } else {
-                        // 改名了
-                        String newName = classNode.name;
-                        // 移除之前的
-                        context.getContainer().remove(oldName);
-                        // 写入新的
-                        context.getContainer().put(newName, new ClassResource(newName, classWriter.toByteArray()));
+        if (mode == IterateMode.Serial) {
+            for (var task : tasks) {
+                var renamed = transformClass(context, task.getFirst(), task.getSecond(),
+                        rflag, wflag, consumer, progress, frameProvider);
+                if (renamed != null) {
+                    applyRename(context, task.getFirst(), renamed);
+                }
+            }
+        } else {
+            List<Future<Pair<String, ClassResource>>> futures = new ArrayList<>(total);
+            try (ExecutorService executor = mode == IterateMode.VirtualThread
+                    ? Executors.newVirtualThreadPerTaskExecutor()
+                    : new ForkJoinPool(parallelism)) {
+                for (var task : tasks) {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            return transformClass(context, task.getFirst(), task.getSecond(),
+                                    rflag, wflag, consumer, progress, frameProvider);
+                        } finally {
+                            context.clearCurrentClass();
+                        }
+                    }));
+                }
+                // 按照原始顺序写回改名，保证结果是确定的
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        var renamed = futures.get(i).get();
+                        if (renamed != null) {
+                            applyRename(context, tasks.get(i).getFirst(), renamed);
+                        }
+                    } catch (ExecutionException e) {
+                        logger.error("error when transform class at {}", tasks.get(i).getFirst(), e.getCause());
                     }
-                } catch (Exception e) {
-                    logger.error(e.getMessage());
                 }
-            } else {
-                logger.error("location : {} is not ClassResource", entry.getKey());
-                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("class iteration interrupted");
             }
         }
-        System.out.println();
+        progress.onIterationEnd();
 
         // 运行endHook
         context.runAfterAllClassesHook();
     }
 
+    /**
+     * 读取、转换并写回单个类。
+     *
+     * @param context       Pass上下文
+     * @param location      资源位置
+     * @param classResource 类资源
+     * @param rflag         读取标志
+     * @param wflag         写入标志
+     * @param consumer      对ClassNode的处理逻辑
+     * @param progress      进度监听器
+     * @param frameProvider 本次遍历计算栈帧时使用的公共父类查询
+     * @return 如果类被改名，返回(新位置, 新资源)，否则返回null
+     */
+    private @Nullable Pair<String, ClassResource> transformClass(@NotNull PassContext context,
+                                                                 @NotNull String location,
+                                                                 @NotNull ClassResource classResource,
+                                                                 int rflag,
+                                                                 int wflag,
+                                                                 @NotNull Consumer<ClassNode> consumer,
+                                                                 @NotNull IProgressListener progress,
+                                                                 @NotNull ICommonSuperClassProvider frameProvider) {
+        String className = location;
+        var cache = context.getClassNodeCache();
+        ClassNodeCache.CachedNode cached = null;
+        // 从缓存取出的ClassNode是否已经放回缓存或写回资源
+        boolean stored = false;
+        try {
+            cached = cache == null ? null : cache.checkOut(classResource, rflag);
+            ClassNode classNode;
+            long estimatedSize;
+            // 之前的阶段没有写回的标志，写回时需要一起使用
+            int pendingWflag = wflag;
+            if (cached != null) {
+                classNode = cached.classNode;
+                estimatedSize = cached.estimatedSize;
+                pendingWflag |= cached.pendingWriteFlag;
+            } else {
+                // 根据pass的配置读取
+                var bytes = classResource.get();
+                ClassReader classReader = new ClassReader(bytes);
+                classNode = new ClassNode();
+                classReader.accept(classNode, rflag);
+                estimatedSize = ClassNodeCache.estimateSize(bytes.length);
+            }
+
+            className = classNode.name;
+            context.setCurrentClass(classNode);
+
+            String oldName = classNode.name;
+            consumer.accept(classNode);
+
+            if (oldName.equals(classNode.name)) {
+                store(cache, classResource, classNode, rflag, pendingWflag, estimatedSize, frameProvider);
+                stored = true;
+                // 直接用ClassNode更新索引，下个阶段不需要重新解析
+                context.getClassInfoIndex().update(location, classResource, classNode);
+                return null;
+            }
+            // 改名了，保留原来位置的前缀（例如BOOT-INF/classes/）
+            String suffix = oldName + ".class";
+            String prefix = location.endsWith(suffix) ? location.substring(0, location.length() - suffix.length()) : "";
+            String newLocation = prefix + classNode.name + ".class";
+            var renamed = new ClassResource(newLocation, writeClassNode(classNode, pendingWflag, frameProvider));
+            stored = true;
+            context.getClassInfoIndex().update(newLocation, renamed, classNode);
+            return Pair.of(newLocation, renamed);
+        } catch (Exception e) {
+            logger.error("error when transform class at {}", location, e);
+            return null;
+        } finally {
+            if (cached != null && !stored) {
+                // 之前阶段的修改只保存在缓存的ClassNode里，出错时也要放回去，否则会连同这些修改一起丢失；
+                // 这个阶段在出错之前做的修改也会保留，见Pipeline#withClassNodeCache
+                try {
+                    store(cache, classResource, cached.classNode, rflag, wflag | cached.pendingWriteFlag,
+                            cached.estimatedSize, frameProvider);
+                } catch (Exception e) {
+                    logger.error("failed to restore cached class at {}", location, e);
+                }
+            }
+            progress.onClassDone(className);
+        }
+    }
+
+    /**
+     * 处理完的类不需要计算栈帧时放回缓存，交给后面的阶段继续使用，否则写回资源。
+     *
+     * @param cache         ClassNode缓存，没有开启时为null
+     * @param classResource 类资源
+     * @param classNode     类
+     * @param rflag         解析时使用的读取标志
+     * @param pendingWflag  合并了之前没有写回的阶段的写入标志
+     * @param estimatedSize 估算的内存占用
+     * @param frameProvider 计算栈帧时使用的公共父类查询
+     */
+    private void store(@Nullable ClassNodeCache cache,
+                       @NotNull ClassResource classResource,
+                       @NotNull ClassNode classNode,
+                       int rflag,
+                       int pendingWflag,
+                       long estimatedSize,
+                       @NotNull ICommonSuperClassProvider frameProvider) {
+        if (cache != null && (pendingWflag & ClassWriter.COMPUTE_FRAMES) == 0) {
+            cache.checkIn(classResource, classNode, rflag, pendingWflag, estimatedSize);
+        } else {
+            classResource.set(writeClassNode(classNode, pendingWflag, frameProvider));
+            // 写回的内容没有变化时，延迟加载的资源可以丢弃内容
+            classResource.release();
+        }
+    }
+
+    /**
+     * 把ClassNode写成class文件，计算栈帧时依次在依赖库和JDK中查找公共父类。
+     * <p>
+     * 不在遍历中，无法确定容器中有哪些类，需要容器中的类参与计算栈帧时应当在遍历中写出。
+     *
+     * @param classNode 类
+     * @param wflag     写入标志
+     * @return class文件内容
+     */
+    @Override
+    public byte @NotNull [] writeClassNode(@NotNull ClassNode classNode, int wflag) {
+        var provider = defaultFrameSuperClassProvider;
+        if (provider == null) {
+            provider = createFrameSuperClassProvider(null);
+            defaultFrameSuperClassProvider = provider;
+        }
+        return writeClassNode(classNode, wflag, provider);
+    }
+
+    /**
+     * 把ClassNode写成class文件。
+     *
+     * @param classNode     类
+     * @param wflag         写入标志
+     * @param frameProvider 计算栈帧时使用的公共父类查询
+     * @return class文件内容
+     */
+    private byte @NotNull [] writeClassNode(@NotNull ClassNode classNode, int wflag,
+                                            @NotNull ICommonSuperClassProvider frameProvider) {
+        // 根据参数写回去
+        ClassWriter classWriter = new DelegatingSuperClassWriter(frameProvider, wflag);
+
+        try {
+            classNode.accept(classWriter);
+        } catch (Exception e) {
+            logger.info("error when transform class: {}", classNode.name);
+            e.printStackTrace();
+        }
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * 把改名后的类写回容器。
+     *
+     * @param context     Pass上下文
+     * @param oldLocation 原来的资源位置
+     * @param renamed     (新位置, 新资源)
+     */
+    private void applyRename(@NotNull PassContext context,
+                             @NotNull String oldLocation,
+                             @NotNull Pair<String, ClassResource> renamed) {
+        // 移除之前的，写入新的
+        context.getContainer().renameResource(oldLocation, renamed.getFirst(), renamed.getSecond());
+        context.getClassInfoIndex().remove(oldLocation);
+    }
+
     /**
      * 打印当前处理进度。
      *
      * @param currentClassIdx 当前处理的类索引
      * @param totalClassSize  总类数
      * @param className       当前类名
+     * @deprecated 每个类都同步输出到控制台，类很多时开销明显，遍历时改为通过
+     * {@link IPassContext#getProgressListener()}报告进度
      */
+    @Deprecated
     public static void printProgress(int currentClassIdx, int totalClassSize, String className) {
         // 清除当前行
         System.out.print("\r");
@@ -156,12 +418,41 @@ public class PassHelperImpl implements PassHelper {
         }
     }
 
+    /**
+     * 同步上下文持有的类信息索引，并返回资源位置到ClassInfo映射的快照。
+     * <p>
+     * 只有新增或者内容变化过的类会重新解析头部。
+     *
+     * @param ctx Pass上下文
+     * @return 资源位置到ClassInfo的映射
+     */
     @Override
     public @NotNull Map<String, ClassInfo> buildClassInfo(@NotNull IPassContext ctx) {
         if (!(ctx instanceof PassContext context)) {
             throw new IllegalArgumentException("ctx must be an instance of PassContext");
         }
-        return buildClassInfo(context.getContainer());
+        var index = context.getClassInfoIndex();
+        int parsed = index.sync(context.getContainer());
+        logger.debug("class info index synced, {} of {} classes parsed", parsed, index.size());
+        return index.snapshot();
+    }
+
+    /**
+     * 构建容器中的类、依赖库中的类和JDK中的类的继承关系索引，同名的类以容器中的为准。
+     * <p>
+     * 容器中的类和依赖库中的类在这里全部解析，子类型查询覆盖这些类；JDK中的类在第一次被用到时解析。
+     *
+     * @param ctx Pass上下文
+     * @return 继承关系索引
+     */
+    @Override
+    public @NotNull ClassHierarchy buildClassHierarchy(@NotNull IPassContext ctx) {
+        var builder = ClassHierarchy.builder().addAll(buildClassInfo(ctx).values());
+        var libraryProvider = superClassProvider;
+        if (libraryProvider != null) {
+            builder.addAll(libraryProvider.getClassInfoMap().values());
+        }
+        return builder.withFallback(JrtClassInfoLookup.getInstance()).build();
     }
 
     /**
@@ -170,7 +461,7 @@ public class PassHelperImpl implements PassHelper {
      * @param container 资源容器
      * @return 资源位置到ClassInfo的映射
      */
-    public @NotNull Map<String, ClassInfo> buildClassInfo(@NotNull ResourceContainer container) {
+    public @NotNull Map<String, ClassInfo> buildClassInfo(@NotNull IResourceContainer container) {
         return buildClassInfo(container, false);
     }
 
@@ -181,25 +472,19 @@ public class PassHelperImpl implements PassHelper {
      * @param skipInterfaces 是否跳过接口
      * @return 资源位置到ClassInfo的映射
      */
-    public @NotNull Map<String, ClassInfo> buildClassInfo(@NotNull ResourceContainer container,
+    public @NotNull Map<String, ClassInfo> buildClassInfo(@NotNull IResourceContainer container,
                                                           boolean skipInterfaces) {
         Map<String, ClassInfo> classInfos = new HashMap<>();
 
         container.classes().forEach(classResource -> {
-            var bytes = classResource.get();
-            ClassReader classReader = new ClassReader(bytes);
-            classReader.getClassName();
-            var interfaces = skipInterfaces ? null : List.of(classReader.getInterfaces());
-            classInfos.put(classResource.getLocation(),
-                    new ClassInfo(classReader.getClassName(),
-                            classReader.getAccess(),
-                            classReader.getSuperName(),
-                            interfaces,
-                            classReader.readShort(6)
-                    )
-            );
+            var info = ClassHeaderParser.parse(classResource.get());
+            if (skipInterfaces) {
+                info.interfaces = null;
+            }
+            classInfos.put(classResource.getLocation(), info);
+            // 只读取了头部，延迟加载的资源可以再丢弃内容
+            classResource.release();
         });
-
         return classInfos;
     }
 }
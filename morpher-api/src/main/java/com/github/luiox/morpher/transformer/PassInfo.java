@@ -21,4 +21,27 @@ public @interface PassInfo {
      * @return 描述字符串，默认为空
      */
     String description() default "";
+
+    /**
+     * Pass读取的数据范围，默认是全部，即和任何Pass都可能冲突。
+     *
+     * @return 读取范围
+     */
+    AccessScope[] reads() default {AccessScope.Code, AccessScope.Members, AccessScope.Hierarchy, AccessScope.Resources};
+
+    /**
+     * Pass修改的数据范围，默认是全部。
+     *
+     * @return 修改范围
+     */
+    AccessScope[] writes() default {AccessScope.Code, AccessScope.Members, AccessScope.Hierarchy, AccessScope.Resources};
+
+    /**
+     * Pass处理的类的内部名前缀，例如"com/example/"，为空表示所有类。
+     * <p>
+     * 阶段中所有Pass都声明了前缀时，阶段只遍历匹配这些前缀的类。
+     *
+     * @return 类名前缀
+     */
+    String[] classes() default {};
 }
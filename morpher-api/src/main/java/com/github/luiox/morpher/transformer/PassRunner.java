@@ -5,6 +5,7 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -19,11 +20,21 @@ public class PassRunner {
      */
     private static final Logger logger = LoggerFactory.getLogger(PassRunner.class);
 
+    /**
+     * 开启性能统计时，报告中列出的类和方法数量
+     */
+    private static final int ReportTopN = 10;
+
     /**
      * 存储Phase或Pipeline对象的列表
      */
     private List<Object> objects = new LinkedList<>();
 
+    /**
+     * 是否用{@link PassScheduler}调度连续的Phase
+     */
+    private boolean scheduling;
+
     /**
      * 添加一个Phase到运行器。
      *
@@ -68,21 +79,51 @@ public class PassRunner {
         return this;
     }
 
+    /**
+     * 设置是否用{@link PassScheduler}调度连续的Phase，开启后根据{@link PassInfo}声明的读写范围
+     * 合并相邻的阶段，并且同时运行互不冲突的阶段。Pipeline仍然按顺序运行。
+     *
+     * @param scheduling 是否调度
+     * @return 当前PassRunner实例
+     */
+    public PassRunner withScheduling(boolean scheduling) {
+        this.scheduling = scheduling;
+        return this;
+    }
+
     /**
      * 执行所有已添加的Phase或Pipeline。
      *
      * @param context Pass上下文
      */
     public void transform(@NotNull IPassContext context) {
+        var progress = context.getProgressListener();
+        List<Phase> pending = new ArrayList<>();
         for (Object object : objects) {
+            if (scheduling && object instanceof Phase phase) {
+                pending.add(phase);
+                continue;
+            }
+            if (!pending.isEmpty()) {
+                PassScheduler.of(pending).run(context);
+                pending.clear();
+            }
             if (object instanceof Phase phase) {
-                System.out.println("-".repeat(120));
+                progress.onPhaseStart(phase.name);
                 var time = TimeUtil.runBlocking(() -> phase.runPhase(context));
+                progress.onPhaseEnd(phase.name, time);
                 logger.info("{} took {} ms.", phase.name, time);
             } else if (object instanceof Pipeline pipeline) {
                 var time = TimeUtil.runBlocking(() -> pipeline.runPipeLine(context));
                 logger.info("{} took {} ms.", pipeline.name, time);
             }
         }
+        if (!pending.isEmpty()) {
+            PassScheduler.of(pending).run(context);
+        }
+        var metrics = context.getMetrics();
+        if (metrics != null) {
+            metrics.logReport(ReportTopN);
+        }
     }
 }
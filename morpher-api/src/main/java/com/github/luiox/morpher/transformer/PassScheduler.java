@@ -0,0 +1,204 @@
+package com.github.luiox.morpher.transformer;
+
+import com.github.luiox.morpher.progress.IProgressListener;
+import com.github.luiox.morpher.util.TimeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 根据{@link PassInfo}声明的读写范围调度一组阶段。
+ * <p>
+ * 先把相邻的、读写标志和遍历模式都相同、处理的类相同并且类之间可见的数据没有冲突的阶段合并成一次遍历，
+ * 每个类只解析和写出一次；然后以原来的顺序为基准构建依赖图，后面的阶段和前面任何一个冲突的阶段
+ * （见{@link PassEffects#conflictsWith}）之间有一条边，没有依赖关系的阶段在线程池上同时运行。
+ * <p>
+ * 合并之后，同一个类上前一个阶段的Pass先于后一个阶段的Pass运行，但是所有Pass的
+ * {@link AbstractPass#doInitialization}都在遍历之前调用，{@link AbstractPass#doFinalization}都在遍历之后调用。
+ * Pass依赖前一个阶段收尾时得到的结果时，需要关闭合并，或者把读写范围声明为包含{@link AccessScope#Members}等共享数据。
+ * <p>
+ * 没有{@link PassInfo}的Pass按照读写全部数据处理，所以默认情况下调度的结果和依次运行相同。
+ * <p>
+ * 同时运行的阶段共享同一个上下文，上下文是{@link BasicPassContext}时，运行期间的进度监听器会被替换成
+ * {@link IProgressListener#shared}的包装，结束后恢复。
+ */
+public class PassScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(PassScheduler.class);
+
+    /**
+     * 调度之后的一个阶段
+     */
+    public static final class Node {
+        /**
+         * 阶段，合并过的阶段名称以"+"连接
+         */
+        public final Phase phase;
+        /**
+         * 阶段的读写范围
+         */
+        public final PassEffects effects;
+        /**
+         * 依赖的阶段，这些阶段都完成之后才能运行
+         */
+        public final List<Node> dependencies = new ArrayList<>();
+
+        Node(@NotNull Phase phase, @NotNull PassEffects effects) {
+            this.phase = phase;
+            this.effects = effects;
+        }
+    }
+
+    private final List<Phase> phases;
+    private boolean fusion = true;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private PassScheduler(@NotNull List<Phase> phases) {
+        this.phases = List.copyOf(phases);
+    }
+
+    public static @NotNull PassScheduler of(@NotNull List<Phase> phases) {
+        return new PassScheduler(phases);
+    }
+
+    public static @NotNull PassScheduler of(Phase @NotNull ... phases) {
+        return new PassScheduler(List.of(phases));
+    }
+
+    /**
+     * 设置是否合并相邻的阶段
+     *
+     * @param fusion 是否合并
+     * @return 当前实例
+     */
+    public @NotNull PassScheduler withFusion(boolean fusion) {
+        this.fusion = fusion;
+        return this;
+    }
+
+    /**
+     * 设置同时运行的阶段数量
+     *
+     * @param parallelism 数量，1表示依次运行
+     * @return 当前实例
+     */
+    public @NotNull PassScheduler withParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * 合并阶段并构建依赖图，不运行。
+     *
+     * @return 调度之后的阶段，按照原来的顺序排列，是一个合法的拓扑序
+     */
+    public @NotNull List<Node> plan() {
+        List<Node> nodes = new ArrayList<>();
+        List<Phase> group = new ArrayList<>();
+        PassEffects groupEffects = null;
+        for (var phase : phases) {
+            var effects = PassEffects.of(phase.getPasses());
+            if (groupEffects != null && fusion && canFuse(group.getLast(), groupEffects, phase, effects)) {
+                group.add(phase);
+                groupEffects = groupEffects.union(effects);
+                continue;
+            }
+            if (groupEffects != null) {
+                nodes.add(new Node(Phase.fuse(group), groupEffects));
+            }
+            group = new ArrayList<>();
+            group.add(phase);
+            groupEffects = effects;
+        }
+        if (groupEffects != null) {
+            nodes.add(new Node(Phase.fuse(group), groupEffects));
+        }
+
+        for (int j = 0; j < nodes.size(); j++) {
+            var node = nodes.get(j);
+            for (int i = 0; i < j; i++) {
+                if (nodes.get(i).effects.conflictsWith(node.effects)) {
+                    node.dependencies.add(nodes.get(i));
+                }
+            }
+        }
+        return nodes;
+    }
+
+    private static boolean canFuse(@NotNull Phase last, @NotNull PassEffects lastEffects,
+                                   @NotNull Phase next, @NotNull PassEffects nextEffects) {
+        return !last.isGlobal() && !next.isGlobal()
+                && last.getReadFlag() == next.getReadFlag()
+                && last.getWriteFlag() == next.getWriteFlag()
+                && last.getIterateMode() == next.getIterateMode()
+                && last.isMethodFusion() == next.isMethodFusion()
+                && !lastEffects.isStructural() && !nextEffects.isStructural()
+                // 合并之后遍历的类是两者的并集，处理的类必须相同
+                && Objects.equals(prefixSet(lastEffects), prefixSet(nextEffects))
+                && !lastEffects.conflictsAcrossClasses(nextEffects);
+    }
+
+    private static Set<String> prefixSet(@NotNull PassEffects effects) {
+        return effects.classPrefixes() == null ? null : new HashSet<>(effects.classPrefixes());
+    }
+
+    /**
+     * 运行所有阶段，任何一个阶段抛出异常时，等待已经开始的阶段结束之后抛出，依赖它的阶段不会运行。
+     *
+     * @param context Pass上下文
+     */
+    public void run(@NotNull IPassContext context) {
+        var nodes = plan();
+        logger.info("scheduled {} phases into {} class walks", phases.size(), nodes.size());
+        if (parallelism == 1 || nodes.size() <= 1) {
+            for (var node : nodes) {
+                runNode(node, context);
+            }
+            return;
+        }
+
+        // 同时运行的阶段共享一个监听器，回调需要串行化，否则各自的遍历会互相重置进度
+        var basicContext = context instanceof BasicPassContext basic ? basic : null;
+        var listener = context.getProgressListener();
+        if (basicContext != null) {
+            basicContext.setProgressListener(IProgressListener.shared(listener));
+        }
+        Map<Node, CompletableFuture<Void>> futures = new IdentityHashMap<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, nodes.size()))) {
+            for (var node : nodes) {
+                var dependencies = node.dependencies.stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.put(node, CompletableFuture.allOf(dependencies)
+                        .thenRunAsync(() -> runNode(node, context), executor));
+            }
+            CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        } finally {
+            if (basicContext != null) {
+                basicContext.setProgressListener(listener);
+            }
+        }
+    }
+
+    private static void runNode(@NotNull Node node, @NotNull IPassContext context) {
+        var phase = node.phase;
+        var progress = context.getProgressListener();
+        progress.onPhaseStart(phase.name);
+        var time = TimeUtil.runBlocking(() -> phase.runPhase(context));
+        progress.onPhaseEnd(phase.name, time);
+        logger.info("{} took {} ms.", phase.name, time);
+    }
+}
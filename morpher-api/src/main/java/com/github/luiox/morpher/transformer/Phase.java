@@ -1,15 +1,25 @@
 package com.github.luiox.morpher.transformer;
 
+import com.github.luiox.morpher.info.ClassInfo;
+import com.github.luiox.morpher.metrics.PassMetrics;
+import com.github.luiox.morpher.metrics.ThreadUsage;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * 表示一个Pass阶段（Phase），可包含多个MethodPass、ClassPass或一个GlobalPass。
  * 用于组织和执行一组相关的代码转换任务。
  */
 public class Phase {
+    private static final Logger logger = LoggerFactory.getLogger(Phase.class);
+
     /**
      * 阶段名称
      */
@@ -26,6 +36,14 @@ public class Phase {
      * 写入标志位
      */
     private int writeFlag;
+    /**
+     * 类遍历模式
+     */
+    private IterateMode iterateMode = IterateMode.Serial;
+    /**
+     * 是否按方法合并执行连续的MethodPass
+     */
+    private boolean methodFusion;
 
     /**
      * 构造一个Phase实例，默认读写标志为0。
@@ -93,28 +111,237 @@ public class Phase {
         return this;
     }
 
+    /**
+     * 设置类遍历模式，并行模式下同一阶段的Pass会在多个线程上同时处理不同的类，
+     * 因此Pass自身的状态需要是线程安全的。
+     *
+     * @param iterateMode 遍历模式
+     * @return 当前Phase实例
+     */
+    public Phase withIterateMode(@NotNull IterateMode iterateMode) {
+        this.iterateMode = iterateMode;
+        return this;
+    }
+
+    /**
+     * 设置是否按方法合并执行连续的MethodPass。
+     * <p>
+     * 默认每个MethodPass依次处理类中的所有方法；开启后对每个方法依次运行连续的一组MethodPass，
+     * 再处理下一个方法，同一个方法的指令在缓存中保持热度，栈帧分析结果也可以在这组Pass之间共享。
+     * ClassPass是分界，它之前的MethodPass处理完所有方法之后才会运行。
+     * 只有Pass不依赖同一个类中其他方法先被前面的Pass处理过时才能开启。
+     *
+     * @param methodFusion 是否合并
+     * @return 当前Phase实例
+     */
+    public Phase withMethodFusion(boolean methodFusion) {
+        this.methodFusion = methodFusion;
+        return this;
+    }
+
+    /**
+     * 阶段包含的Pass列表
+     *
+     * @return 不可修改的列表
+     */
+    public @NotNull List<AbstractPass> getPasses() {
+        return Collections.unmodifiableList(passes);
+    }
+
+    public int getReadFlag() {
+        return readFlag;
+    }
+
+    public int getWriteFlag() {
+        return writeFlag;
+    }
+
+    public @NotNull IterateMode getIterateMode() {
+        return iterateMode;
+    }
+
+    public boolean isMethodFusion() {
+        return methodFusion;
+    }
+
+    /**
+     * 把多个读写标志和遍历模式相同的阶段合并成一个，所有Pass按原来的顺序在一次遍历中运行。
+     *
+     * @param phases 阶段，至少一个
+     * @return 只有一个阶段时返回它本身，否则返回合并后的阶段
+     */
+    static @NotNull Phase fuse(@NotNull List<Phase> phases) {
+        if (phases.size() == 1) {
+            return phases.getFirst();
+        }
+        var first = phases.getFirst();
+        var names = new StringJoiner("+");
+        for (var phase : phases) {
+            names.add(phase.name);
+        }
+        var fused = new Phase(names.toString(), first.readFlag, first.writeFlag)
+                .withIterateMode(first.iterateMode)
+                .withMethodFusion(first.methodFusion);
+        for (var phase : phases) {
+            fused.passes.addAll(phase.passes);
+        }
+        return fused;
+    }
+
     static IterateClassNodeFunc iterateClassNodeFunc;
 
     static {
-        iterateClassNodeFunc = (context, rflag, wflag, passes) -> {
-            var helper = context.getPassHelper();
-            // 构建一下索引
-            var infos = helper.buildClassInfo(context);
-            // 以索引的方式迭代
-            helper.iterateClassNodeWithInfo(context, infos, rflag, wflag, classNode -> {
-                for (var pass : passes) {
-                    if (pass instanceof MethodPass methodPass) {
+        iterateClassNodeFunc = new IterateClassNodeFunc() {
+            @Override
+            public void iterate(@NotNull IPassContext context, int rflag, int wflag, List<AbstractPass> passes) {
+                iterate(context, rflag, wflag, IterateMode.Serial, false, passes);
+            }
+
+            @Override
+            public void iterate(@NotNull IPassContext context, int rflag, int wflag,
+                                @NotNull IterateMode mode, List<AbstractPass> passes) {
+                iterate(context, rflag, wflag, mode, false, passes);
+            }
+
+            @Override
+            public void iterate(@NotNull IPassContext context, int rflag, int wflag,
+                                @NotNull IterateMode mode, boolean methodFusion, List<AbstractPass> passes) {
+                var helper = context.getPassHelper();
+                // 构建一下索引
+                var infos = helper.buildClassInfo(context);
+                // 所有Pass都声明了处理的类时，只遍历这些类
+                var effects = PassEffects.of(passes);
+                if (effects.classPrefixes() != null) {
+                    Map<String, ClassInfo> filtered = new LinkedHashMap<>();
+                    for (var entry : infos.entrySet()) {
+                        if (effects.matchesClass(entry.getValue().name)) {
+                            filtered.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    infos = filtered;
+                }
+                // 以索引的方式迭代
+                var metrics = context.getMetrics();
+                helper.iterateClassNodeWithInfo(context, infos, rflag, wflag, mode,
+                        classNode -> runPasses(classNode, context, passes, methodFusion, metrics));
+            }
+        };
+    }
+
+    /**
+     * 在一个类上运行所有Pass，metrics不为null时记录每个Pass对每个方法和类的耗时，以及整个类的耗时
+     */
+    private static void runPasses(@NotNull ClassNode classNode,
+                                  @NotNull IPassContext context,
+                                  @NotNull List<AbstractPass> passes,
+                                  boolean methodFusion,
+                                  @Nullable PassMetrics metrics) {
+        // Pass可能会修改类名，先记下来
+        var className = classNode.name;
+        long classWall = 0;
+        long classCpu = 0;
+        long classAlloc = 0;
+        if (metrics != null) {
+            classWall = System.nanoTime();
+            classCpu = ThreadUsage.cpuTime();
+            classAlloc = ThreadUsage.allocatedBytes();
+        }
+        try {
+            int i = 0;
+            while (i < passes.size()) {
+                var pass = passes.get(i);
+                if (pass instanceof MethodPass methodPass) {
+                    // 合并执行时取出连续的一组MethodPass
+                    int end = i + 1;
+                    if (methodFusion) {
+                        while (end < passes.size() && passes.get(end) instanceof MethodPass) {
+                            end++;
+                        }
+                    }
+                    if (end - i == 1) {
+                        for (var methodNode : classNode.methods) {
+                            runMethodPass(methodPass, className, methodNode, context, metrics);
+                        }
+                    } else {
+                        var chain = passes.subList(i, end);
                         for (var methodNode : classNode.methods) {
-                            methodPass.run(methodNode, context);
+                            for (var chained : chain) {
+                                runMethodPass((MethodPass) chained, className, methodNode, context, metrics);
+                            }
                         }
-                    } else if (pass instanceof ClassPass classPass) {
+                    }
+                    i = end;
+                } else if (pass instanceof ClassPass classPass) {
+                    if (metrics == null) {
                         classPass.run(classNode, context);
                     } else {
-                        throw new IllegalArgumentException("Unsupport pass type");
+                        long wall = System.nanoTime();
+                        long cpu = ThreadUsage.cpuTime();
+                        long alloc = ThreadUsage.allocatedBytes();
+                        classPass.run(classNode, context);
+                        metrics.recordPass(classPass, wall, cpu, alloc);
                     }
+                    // ClassPass可能修改任何方法
+                    context.invalidateFrames();
+                    i++;
+                } else {
+                    throw new IllegalArgumentException("Unsupport pass type");
                 }
-            });
-        };
+            }
+        } finally {
+            context.invalidateFrames();
+        }
+        if (metrics != null) {
+            metrics.recordClass(className, classWall, classCpu, classAlloc);
+        }
+    }
+
+    private static void runMethodPass(@NotNull MethodPass pass,
+                                      @NotNull String className,
+                                      @NotNull MethodNode methodNode,
+                                      @NotNull IPassContext context,
+                                      @Nullable PassMetrics metrics) {
+        if (metrics == null) {
+            if (prepareFrames(pass, className, methodNode, context)) {
+                pass.run(methodNode, context);
+            }
+        } else {
+            var name = methodNode.name;
+            var desc = methodNode.desc;
+            long wall = System.nanoTime();
+            long cpu = ThreadUsage.cpuTime();
+            long alloc = ThreadUsage.allocatedBytes();
+            // 栈帧分析的耗时计入需要它的Pass
+            if (prepareFrames(pass, className, methodNode, context)) {
+                pass.run(methodNode, context);
+            }
+            metrics.recordMethod(pass, className, name, desc, wall, cpu, alloc);
+        }
+        if (!pass.preservesFrames()) {
+            context.invalidateFrames(methodNode);
+        }
+    }
+
+    /**
+     * Pass需要栈帧时先分析方法
+     *
+     * @return 是否可以运行Pass
+     */
+    private static boolean prepareFrames(@NotNull MethodPass pass,
+                                         @NotNull String className,
+                                         @NotNull MethodNode methodNode,
+                                         @NotNull IPassContext context) {
+        if (!pass.requiresFrames()) {
+            return true;
+        }
+        try {
+            context.getFrames(methodNode);
+            return true;
+        } catch (AnalyzerException e) {
+            logger.error("Failed to analyze method: {}.{}{}, skip {}: {}", className, methodNode.name,
+                    methodNode.desc, PassMetrics.nameOf(pass), e.getMessage());
+            return false;
+        }
     }
 
     /**
@@ -123,19 +350,49 @@ public class Phase {
      * @param context Pass上下文
      */
     public void runPhase(IPassContext context) {
+        if (isGlobal() && context instanceof PassContext passContext) {
+            // GlobalPass直接操作容器中的字节，需要先把缓存的ClassNode写回
+            passContext.flushClassNodeCache();
+        }
         for (var passes : passes) {
             passes.doInitialization(context);
         }
 
         if (passes.size() == 1 && passes.getFirst() instanceof GlobalPass globalPass) {
-            globalPass.run(context);
+            runGlobalPass(globalPass, context, context.getMetrics());
         } else {
-            iterateClassNodeFunc.iterate(context, readFlag, writeFlag, passes);
+            iterateClassNodeFunc.iterate(context, readFlag, writeFlag, iterateMode, methodFusion, passes);
         }
 
         for (var passes : passes) {
             passes.doFinalization(context);
         }
+        if (context instanceof PassContext passContext) {
+            passContext.applyClassModify();
+        }
+    }
+
+    private static void runGlobalPass(@NotNull GlobalPass globalPass,
+                                      @NotNull IPassContext context,
+                                      @Nullable PassMetrics metrics) {
+        if (metrics == null) {
+            globalPass.run(context);
+            return;
+        }
+        long wall = System.nanoTime();
+        long cpu = ThreadUsage.cpuTime();
+        long alloc = ThreadUsage.allocatedBytes();
+        globalPass.run(context);
+        metrics.recordPass(globalPass, wall, cpu, alloc);
+    }
+
+    /**
+     * 是否是只包含一个GlobalPass的阶段
+     *
+     * @return 是否是全局阶段
+     */
+    public boolean isGlobal() {
+        return passes.size() == 1 && passes.getFirst() instanceof GlobalPass;
     }
 
     /**
@@ -238,5 +495,41 @@ public class Phase {
         void iterate(@NotNull IPassContext context,
                      int rflag,
                      int wflag, List<AbstractPass> passes);
+
+        /**
+         * 以指定的遍历模式遍历所有类节点并执行Pass，默认忽略遍历模式。
+         *
+         * @param context Pass上下文
+         * @param rflag   读取标志
+         * @param wflag   写入标志
+         * @param mode    遍历模式
+         * @param passes  Pass列表
+         */
+        default void iterate(@NotNull IPassContext context,
+                             int rflag,
+                             int wflag,
+                             @NotNull IterateMode mode,
+                             List<AbstractPass> passes) {
+            iterate(context, rflag, wflag, passes);
+        }
+
+        /**
+         * 以指定的遍历模式遍历所有类节点并执行Pass，默认忽略是否按方法合并执行。
+         *
+         * @param context      Pass上下文
+         * @param rflag        读取标志
+         * @param wflag        写入标志
+         * @param mode         遍历模式
+         * @param methodFusion 是否按方法合并执行连续的MethodPass
+         * @param passes       Pass列表
+         */
+        default void iterate(@NotNull IPassContext context,
+                             int rflag,
+                             int wflag,
+                             @NotNull IterateMode mode,
+                             boolean methodFusion,
+                             List<AbstractPass> passes) {
+            iterate(context, rflag, wflag, mode, passes);
+        }
     }
 }
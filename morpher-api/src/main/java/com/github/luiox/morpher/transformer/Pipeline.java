@@ -28,6 +28,16 @@ public class Pipeline {
      */
     private final List<Phase> phases = new ArrayList<>();
 
+    /**
+     * 在阶段之间缓存ClassNode的内存预算（字节），小于等于0时不缓存
+     */
+    private long classNodeCacheBudget;
+
+    /**
+     * 是否用{@link PassScheduler}调度阶段
+     */
+    private boolean scheduling;
+
     /**
      * 构造一个Pipeline实例。
      *
@@ -48,6 +58,36 @@ public class Pipeline {
         return this;
     }
 
+    /**
+     * 在阶段之间保留ClassNode，连续的阶段以相同的读取标志处理同一个类时不再重新解析和写出。
+     * <p>
+     * 只有需要计算栈帧的阶段、GlobalPass运行前和整个流程结束时才会写回字节，
+     * 缓存的ClassNode估算占用超过预算时，最久没有使用的会先写回字节再丢弃。
+     * <p>
+     * 开启后Pass出错时的行为有所不同：不缓存时出错的类会丢弃这个阶段的修改；
+     * 缓存时之前阶段的修改只保存在ClassNode里，出错的类连同Pass抛出异常之前做的修改一起保留。
+     * Pass需要在修改之前完成检查，或者自己保证出错时ClassNode仍然是可以写出的状态。
+     *
+     * @param budgetBytes 内存预算（字节），小于等于0时不缓存
+     * @return 当前Pipeline实例，便于链式调用
+     */
+    public @NotNull Pipeline withClassNodeCache(long budgetBytes) {
+        this.classNodeCacheBudget = budgetBytes;
+        return this;
+    }
+
+    /**
+     * 设置是否用{@link PassScheduler}调度阶段，开启后根据{@link PassInfo}声明的读写范围
+     * 合并相邻的阶段，并且同时运行互不冲突的阶段。
+     *
+     * @param scheduling 是否调度
+     * @return 当前Pipeline实例，便于链式调用
+     */
+    public @NotNull Pipeline withScheduling(boolean scheduling) {
+        this.scheduling = scheduling;
+        return this;
+    }
+
     /**
      * 获取所有阶段列表。
      *
@@ -73,10 +113,30 @@ public class Pipeline {
      * @param context Pass上下文
      */
     public void runPipeLine(IPassContext context) {
-        for (var phase : phases) {
-            System.out.println("-".repeat(120));
-            var time = TimeUtil.runBlocking(() -> phase.runPhase(context));
-            logger.info("{} took {} ms.", phase.name, time);
+        ClassNodeCache cache = null;
+        if (classNodeCacheBudget > 0 && context instanceof PassContext passContext
+                && passContext.getClassNodeCache() == null) {
+            cache = new ClassNodeCache(classNodeCacheBudget, context.getPassHelper()::writeClassNode);
+            passContext.setClassNodeCache(cache);
+        }
+        try {
+            if (scheduling) {
+                PassScheduler.of(phases).run(context);
+                return;
+            }
+            var progress = context.getProgressListener();
+            for (var phase : phases) {
+                progress.onPhaseStart(phase.name);
+                var time = TimeUtil.runBlocking(() -> phase.runPhase(context));
+                progress.onPhaseEnd(phase.name, time);
+                logger.info("{} took {} ms.", phase.name, time);
+            }
+        } finally {
+            if (cache != null) {
+                // 流程结束，全部写回容器
+                cache.flush();
+                ((PassContext) context).setClassNodeCache(null);
+            }
         }
     }
 }
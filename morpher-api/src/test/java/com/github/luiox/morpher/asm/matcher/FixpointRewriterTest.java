@@ -0,0 +1,194 @@
+package com.github.luiox.morpher.asm.matcher;
+
+import com.github.luiox.morpher.asm.insn.InsnBuilder;
+import com.github.luiox.morpher.asm.insn.InsnUtil;
+import com.github.luiox.morpher.asm.matcher.step.AnyMultiStep;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FixpointRewriterTest {
+
+    /**
+     * ldc(I:v1) - ldc(I:v2) - ixor => ldc(I:v1^v2)
+     */
+    private static @NotNull MatchRule foldXor() {
+        return new MatchRule()
+                .addStep(StepUtil.loadInt())
+                .addStep(StepUtil.loadInt())
+                .addStep(StepUtil.ixor())
+                .setStrategy(ctx -> ctx.builder.ldc(InsnUtil.getIntValue(ctx.get(0)) ^ InsnUtil.getIntValue(ctx.get(1))));
+    }
+
+    /**
+     * ldc(I:v) - ineg => ldc(I:-v)
+     */
+    private static @NotNull MatchRule foldNeg() {
+        return new MatchRule()
+                .addStep(StepUtil.loadInt())
+                .addStep(StepUtil.step(Opcodes.INEG))
+                .setStrategy(ctx -> ctx.builder.ldc(-InsnUtil.getIntValue(ctx.get(0))));
+    }
+
+    /**
+     * nop => 空
+     */
+    private static @NotNull MatchRule removeNop() {
+        return new MatchRule()
+                .addStep(StepUtil.nop())
+                .setStrategy(ctx -> {
+                });
+    }
+
+    /**
+     * 随机生成的常量表达式，以后缀形式展开，每个表达式的结果存到局部变量中
+     */
+    private static @NotNull InsnList randomBody(@NotNull Random random, int expressions) {
+        return InsnBuilder.build(b -> {
+            for (int i = 0; i < expressions; i++) {
+                expression(b, random, 1 + random.nextInt(5));
+                b.istore(0);
+            }
+            b.iload(0);
+            b.ireturn();
+        });
+    }
+
+    private static void expression(@NotNull InsnBuilder b, @NotNull Random random, int depth) {
+        int kind = depth == 0 ? 0 : random.nextInt(5);
+        switch (kind) {
+            case 0, 1 -> b.ldc(random.nextInt(64) - 8);
+            case 2 -> {
+                expression(b, random, depth - 1);
+                b.ineg();
+            }
+            case 3 -> {
+                // 不能折叠的值，表达式中包含它时只能部分折叠
+                b.iload(1);
+            }
+            default -> {
+                expression(b, random, depth - 1);
+                if (random.nextBoolean()) {
+                    b.nop();
+                }
+                expression(b, random, depth - 1);
+                b.ixor();
+            }
+        }
+    }
+
+    private static @NotNull InsnList copy(@NotNull InsnList list) {
+        return InsnBuilder.build(b -> {
+            for (AbstractInsnNode insn = list.getFirst(); insn != null; insn = insn.getNext()) {
+                b.addInsnNode(insn.clone(null));
+            }
+        });
+    }
+
+    /**
+     * 指令的文本形式，int常量按值比较，不区分iconst、bipush和ldc
+     */
+    private static @NotNull List<String> describe(@NotNull InsnList list) {
+        List<String> result = new ArrayList<>();
+        for (AbstractInsnNode insn = list.getFirst(); insn != null; insn = insn.getNext()) {
+            result.add(InsnUtil.isInteger(insn) ? "int " + InsnUtil.getIntValue(insn) : "op " + insn.getOpcode());
+        }
+        return result;
+    }
+
+    /**
+     * 反复调用rewrite直到没有变化
+     */
+    private static @NotNull InsnList rewriteLoop(@NotNull PatternMatcher matcher, @NotNull InsnList list) {
+        int rounds = 0;
+        while (matcher.rewrite(list)) {
+            assertTrue(++rounds < 10_000, "rewrite loop did not terminate");
+        }
+        return list;
+    }
+
+    private static void assertEquivalent(@NotNull PatternMatcher matcher, @NotNull FixpointRewriter rewriter,
+                                         @NotNull InsnList input) {
+        var expected = rewriteLoop(matcher, copy(input));
+        var actual = copy(input);
+        rewriter.rewrite(actual);
+        assertEquals(describe(expected), describe(actual));
+    }
+
+    @Test
+    public void matchesRepeatedRewrite() {
+        var matcher = new PatternMatcher().addRule(foldXor()).addRule(foldNeg()).addRule(removeNop());
+        var rewriter = FixpointRewriter.of(matcher);
+        var random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            assertEquivalent(matcher, rewriter, randomBody(random, 1 + random.nextInt(20)));
+        }
+        assertEquals(0, rewriter.getCapReachedCount());
+        assertTrue(rewriter.getRewriteCount(matcher.getRules().getFirst()) > 0);
+    }
+
+    @Test
+    public void matchesRepeatedRewriteWithUnboundedWindow() {
+        // 包含AnyMultiStep时窗口没有上限，每一轮都扫描整个方法
+        var matcher = new PatternMatcher()
+                .addRule(foldXor())
+                .addRule(foldNeg())
+                .addRule(new MatchRule()
+                        .addStep(StepUtil.nop())
+                        .addStep(new AnyMultiStep())
+                        .addStep(StepUtil.step(Opcodes.ISTORE))
+                        .setStrategy(ctx -> {
+                            // 只去掉开头的nop，保留其余的指令
+                            for (int i = 1; i < ctx.getMatchedSize(); i++) {
+                                ctx.builder.addInsnNode(ctx.get(i));
+                            }
+                        }));
+        var rewriter = FixpointRewriter.of(matcher);
+        var random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            assertEquivalent(matcher, rewriter, randomBody(random, 1 + random.nextInt(20)));
+        }
+    }
+
+    @Test
+    public void windowFollowsRulesAddedLater() {
+        var matcher = new PatternMatcher().addRule(removeNop());
+        var rewriter = FixpointRewriter.of(matcher);
+        // 只有一步的规则时窗口是0
+        assertTrue(rewriter.rewrite(InsnBuilder.build(b -> {
+            b.nop();
+            b.iconst_0();
+        })));
+
+        // 新规则有三步，新的匹配可能从脏位置之前两条指令开始
+        matcher.addRule(foldXor());
+        var list = InsnBuilder.build(b -> {
+            b.iconst_1();
+            b.iconst_2();
+            b.iconst_3();
+            b.ixor();
+            b.ixor();
+        });
+        assertTrue(rewriter.rewrite(list));
+        assertEquals(List.of("int 0"), describe(list));
+    }
+
+    @Test
+    public void explicitWindowOverridesRules() {
+        var matcher = new PatternMatcher().addRule(foldXor());
+        var rewriter = FixpointRewriter.of(matcher).withWindow(-1);
+        var random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            assertEquivalent(matcher, rewriter, randomBody(random, 1 + random.nextInt(10)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> rewriter.withMaxIterations(0));
+    }
+}
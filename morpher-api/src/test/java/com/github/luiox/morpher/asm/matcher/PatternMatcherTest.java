@@ -0,0 +1,178 @@
+package com.github.luiox.morpher.asm.matcher;
+
+import com.github.luiox.morpher.asm.matcher.step.AnyMultiStep;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatternMatcherTest {
+
+    private static @NotNull InsnList insns(int @NotNull ... opcodes) {
+        var list = new InsnList();
+        for (int opcode : opcodes) {
+            list.add(new InsnNode(opcode));
+        }
+        return list;
+    }
+
+    private static @NotNull List<Integer> opcodes(@NotNull InsnList list) {
+        List<Integer> result = new ArrayList<>();
+        for (AbstractInsnNode insn = list.getFirst(); insn != null; insn = insn.getNext()) {
+            result.add(insn.getOpcode());
+        }
+        return result;
+    }
+
+    private static @NotNull List<Integer> opcodes(int @NotNull ... opcodes) {
+        List<Integer> result = new ArrayList<>();
+        for (int opcode : opcodes) {
+            result.add(opcode);
+        }
+        return result;
+    }
+
+    /**
+     * 把匹配上的指令替换为一条NOP，同时记录匹配上的指令数
+     */
+    private static @NotNull MatchRule toNop(@NotNull List<Integer> sizes) {
+        return new MatchRule().setStrategy(ctx -> {
+            sizes.add(ctx.getMatchedSize());
+            ctx.builder.nop();
+        });
+    }
+
+    /**
+     * 分别用rewrite和apply处理同样的指令，两者的结果应当相同
+     */
+    private static @NotNull List<Integer> rewriteAndApply(@NotNull PatternMatcher matcher, int @NotNull ... input) {
+        var rewritten = insns(input);
+        matcher.rewrite(rewritten);
+        var applied = matcher.apply(insns(input));
+        assertEquals(opcodes(applied), opcodes(rewritten));
+        return opcodes(rewritten);
+    }
+
+    @Test
+    public void middleAnyMultiStep() {
+        List<Integer> sizes = new ArrayList<>();
+        var matcher = new PatternMatcher().addRule(toNop(sizes)
+                .addStep(StepUtil.iconst_1())
+                .addStep(new AnyMultiStep())
+                .addStep(StepUtil.iconst_2()));
+
+        assertEquals(opcodes(Opcodes.ICONST_0, Opcodes.NOP, Opcodes.ICONST_3),
+                rewriteAndApply(matcher, Opcodes.ICONST_0, Opcodes.ICONST_1, Opcodes.POP, Opcodes.DUP,
+                        Opcodes.ICONST_2, Opcodes.ICONST_3));
+        assertEquals(List.of(4, 4), sizes);
+
+        // 中间没有指令
+        sizes.clear();
+        assertEquals(opcodes(Opcodes.NOP), rewriteAndApply(matcher, Opcodes.ICONST_1, Opcodes.ICONST_2));
+        assertEquals(List.of(2, 2), sizes);
+
+        // 后面的步骤一直没有匹配上
+        sizes.clear();
+        var unmatched = insns(Opcodes.ICONST_1, Opcodes.POP, Opcodes.ICONST_3);
+        assertFalse(matcher.rewrite(unmatched));
+        assertEquals(opcodes(Opcodes.ICONST_1, Opcodes.POP, Opcodes.ICONST_3), opcodes(unmatched));
+        assertTrue(sizes.isEmpty());
+    }
+
+    @Test
+    public void leadingAnyMultiStep() {
+        List<Integer> sizes = new ArrayList<>();
+        var matcher = new PatternMatcher().addRule(toNop(sizes)
+                .addStep(new AnyMultiStep())
+                .addStep(StepUtil.step(Opcodes.ATHROW)));
+
+        // 从第一条指令开始一直匹配到ATHROW
+        assertEquals(opcodes(Opcodes.NOP, Opcodes.RETURN),
+                rewriteAndApply(matcher, Opcodes.ACONST_NULL, Opcodes.DUP, Opcodes.ATHROW, Opcodes.RETURN));
+        assertEquals(List.of(3, 3), sizes);
+
+        sizes.clear();
+        assertEquals(opcodes(Opcodes.NOP), rewriteAndApply(matcher, Opcodes.ATHROW));
+        assertEquals(List.of(1, 1), sizes);
+
+        var unmatched = insns(Opcodes.ACONST_NULL, Opcodes.POP);
+        assertFalse(matcher.rewrite(unmatched));
+        assertEquals(opcodes(Opcodes.ACONST_NULL, Opcodes.POP), opcodes(unmatched));
+    }
+
+    @Test
+    public void trailingAnyMultiStep() {
+        List<Integer> sizes = new ArrayList<>();
+        var matcher = new PatternMatcher().addRule(toNop(sizes)
+                .addStep(StepUtil.iconst_1())
+                .addStep(new AnyMultiStep()));
+
+        // 放在最后的AnyMultiStep不匹配任何指令
+        assertEquals(opcodes(Opcodes.NOP, Opcodes.POP, Opcodes.NOP),
+                rewriteAndApply(matcher, Opcodes.ICONST_1, Opcodes.POP, Opcodes.ICONST_1));
+        assertEquals(List.of(1, 1, 1, 1), sizes);
+    }
+
+    @Test
+    public void rewriteAtRecordsReplacement() {
+        var matcher = new PatternMatcher()
+                .addRule(new MatchRule()
+                        .addStep(StepUtil.iconst_1())
+                        .addStep(new AnyMultiStep())
+                        .addStep(StepUtil.iconst_2())
+                        .setStrategy(ctx -> {
+                            ctx.builder.iconst_3();
+                            ctx.builder.iconst_4();
+                        }))
+                .addRule(new MatchRule()
+                        .addStep(StepUtil.pop())
+                        .setStrategy(ctx -> {
+                        }));
+        var table = matcher.getDispatch();
+        var list = insns(Opcodes.ICONST_0, Opcodes.ICONST_1, Opcodes.DUP, Opcodes.ICONST_2, Opcodes.POP, Opcodes.RETURN);
+        var context = new MatchContext(list);
+
+        // 没有规则匹配时不修改指令
+        var first = list.getFirst();
+        assertNull(matcher.rewriteAt(list, first, context, table));
+        assertEquals(6, list.size());
+
+        var rule = matcher.rewriteAt(list, first.getNext(), context, table);
+        assertNotNull(rule);
+        assertSame(matcher.getRules().getFirst(), rule);
+        assertEquals(opcodes(Opcodes.ICONST_0, Opcodes.ICONST_3, Opcodes.ICONST_4, Opcodes.POP, Opcodes.RETURN),
+                opcodes(list));
+        assertEquals(Opcodes.ICONST_3, context.replacementFirst.getOpcode());
+        assertEquals(Opcodes.ICONST_4, context.replacementLast.getOpcode());
+        assertEquals(Opcodes.POP, context.following.getOpcode());
+
+        // 替换成空时只记录后面的指令
+        var pop = context.following;
+        assertSame(matcher.getRules().get(1), matcher.rewriteAt(list, pop, context, table));
+        assertNull(context.replacementFirst);
+        assertNull(context.replacementLast);
+        assertEquals(Opcodes.RETURN, context.following.getOpcode());
+        assertEquals(opcodes(Opcodes.ICONST_0, Opcodes.ICONST_3, Opcodes.ICONST_4, Opcodes.RETURN), opcodes(list));
+    }
+
+    @Test
+    public void rewriteDoesNotRematchReplacement() {
+        // iconst_1 -> iconst_1 iconst_1，替换进去的指令不会在同一次调用中再次匹配
+        var matcher = new PatternMatcher().addRule(new MatchRule()
+                .addStep(StepUtil.iconst_1())
+                .setStrategy(ctx -> {
+                    ctx.builder.iconst_1();
+                    ctx.builder.iconst_1();
+                }));
+        var list = insns(Opcodes.ICONST_1, Opcodes.RETURN);
+        assertTrue(matcher.rewrite(list));
+        assertEquals(opcodes(Opcodes.ICONST_1, Opcodes.ICONST_1, Opcodes.RETURN), opcodes(list));
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.luiox.morpher.info;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassHeaderParserTest {
+
+    /**
+     * 生成一个类，常量池中先放入long和double常量，它们各占两个槽位，类名等常量排在它们之后
+     */
+    private static byte @NotNull [] generate(@NotNull String name, @NotNull String superName,
+                                             @NotNull List<String> interfaces, int access) {
+        var node = new ClassNode();
+        node.visit(Opcodes.V21, access, name, null, superName, interfaces.toArray(String[]::new));
+        node.fields.add(new FieldNode(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "L", "J", null, 0x1234_5678_9ABCL));
+        node.fields.add(new FieldNode(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "D", "D", null, Math.PI));
+        var method = new MethodNode(Opcodes.ACC_STATIC, "m", "()V", null, null);
+        method.instructions.add(new LdcInsnNode(Long.MAX_VALUE));
+        method.instructions.add(new InsnNode(Opcodes.POP2));
+        method.instructions.add(new LdcInsnNode(-1.5d));
+        method.instructions.add(new InsnNode(Opcodes.POP2));
+        method.instructions.add(new InsnNode(Opcodes.RETURN));
+        method.maxStack = 2;
+        node.methods.add(method);
+        var writer = new ClassWriter(0);
+        // 先写入常量，让类名、父类名和接口名在常量池中排在long和double之后
+        writer.newConst(7L);
+        writer.newConst(2.5d);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    private static void assertSameHeader(byte @NotNull [] bytes) {
+        var expected = ClassInfo.of(new ClassReader(bytes), false);
+        for (var actual : List.of(ClassHeaderParser.parse(bytes),
+                ClassHeaderParser.parse(ByteBuffer.wrap(bytes)),
+                ClassHeaderParser.parse(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip()))) {
+            assertEquals(expected.name, actual.name);
+            assertEquals(expected.superName, actual.superName);
+            assertEquals(expected.interfaces, actual.interfaces);
+            assertEquals(expected.access, actual.access);
+            assertEquals(expected.version, actual.version);
+        }
+    }
+
+    @Test
+    public void longAndDoubleConstants() {
+        assertSameHeader(generate("a/Constants", "java/lang/Number",
+                List.of("java/io/Serializable", "java/lang/Comparable"), Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER));
+    }
+
+    @Test
+    public void nonAsciiNames() {
+        // 包含中文、带重音的拉丁字母和需要代理对的字符，class文件中以修改过的UTF-8保存
+        assertSameHeader(generate("测试/类名é😀", "测试/父类",
+                List.of("接口/α", "接口/\u0000空"), Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL));
+    }
+
+    @Test
+    public void interfaceWithoutSuperInterfaces() {
+        assertSameHeader(generate("a/Marker", "java/lang/Object", List.of(),
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT));
+    }
+
+    @Test
+    public void objectHasNoSuperClass() throws Exception {
+        byte[] bytes;
+        try (var in = Object.class.getResourceAsStream("Object.class")) {
+            assertNotNull(in);
+            bytes = in.readAllBytes();
+        }
+        var info = ClassHeaderParser.parse(bytes);
+        assertEquals("java/lang/Object", info.name);
+        assertNull(info.superName);
+        assertSameHeader(bytes);
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.luiox.morpher.info;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassHierarchyTest {
+
+    private static @NotNull ClassInfo cls(@NotNull String name, String superName, String... interfaces) {
+        return new ClassInfo(name, Opcodes.ACC_PUBLIC, superName, List.of(interfaces), Opcodes.V21);
+    }
+
+    private static @NotNull ClassInfo itf(@NotNull String name, String... interfaces) {
+        return new ClassInfo(name, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT,
+                ClassHierarchy.ObjectName, List.of(interfaces), Opcodes.V21);
+    }
+
+    /**
+     * 接口菱形：J和K继承I，L继承J和K；A实现L，B和D继承A，C实现K。
+     * E继承找不到的x/Missing，P和Q互相继承形成循环。
+     */
+    private static @NotNull List<ClassInfo> infos() {
+        return List.of(
+                cls(ClassHierarchy.ObjectName, null),
+                cls("t/B", "t/A"),
+                cls("t/A", ClassHierarchy.ObjectName, "t/L"),
+                cls("t/D", "t/A"),
+                cls("t/C", ClassHierarchy.ObjectName, "t/K"),
+                itf("t/L", "t/J", "t/K"),
+                itf("t/J", "t/I"),
+                itf("t/K", "t/I"),
+                itf("t/I"),
+                cls("t/E", "x/Missing"),
+                cls("t/P", "t/Q"),
+                cls("t/Q", "t/P"));
+    }
+
+    private static @NotNull ClassHierarchy build() {
+        return ClassHierarchy.builder().addAll(infos()).build();
+    }
+
+    private static @NotNull Set<String> set(String... names) {
+        return new HashSet<>(List.of(names));
+    }
+
+    @Test
+    public void diamondSupertypes() {
+        var hierarchy = build();
+        assertEquals(List.of(ClassHierarchy.ObjectName, "t/A", "t/B"), hierarchy.getSuperClasses("t/B"));
+        assertEquals(2, hierarchy.getDepth("t/B"));
+        assertEquals(set("t/A", ClassHierarchy.ObjectName, "t/L", "t/J", "t/K", "t/I"),
+                hierarchy.getAllSupertypes("t/B"));
+
+        assertTrue(hierarchy.isAssignableFrom("t/I", "t/B"));
+        assertTrue(hierarchy.isAssignableFrom("t/K", "t/L"));
+        assertTrue(hierarchy.isAssignableFrom("t/L", "t/D"));
+        assertFalse(hierarchy.isAssignableFrom("t/J", "t/C"));
+        assertFalse(hierarchy.isAssignableFrom("t/B", "t/A"));
+        assertFalse(hierarchy.isAssignableFrom("t/L", "t/I"));
+
+        assertEquals("t/A", hierarchy.getCommonSuperClass("t/B", "t/D"));
+        assertEquals("t/L", hierarchy.getCommonSuperClass("t/L", "t/B"));
+        assertEquals(ClassHierarchy.ObjectName, hierarchy.getCommonSuperClass("t/B", "t/C"));
+        // 和ASM一样，两个接口的公共父类是Object
+        assertEquals(ClassHierarchy.ObjectName, hierarchy.getCommonSuperClass("t/J", "t/K"));
+    }
+
+    @Test
+    public void supertypesHaveSmallerIds() {
+        // 以不同的顺序按需解析，父类型的id也总是更小
+        var byName = infos().stream().collect(Collectors.toMap(info -> info.name, Function.identity()));
+        var lazy = ClassHierarchy.of(byName::get);
+        lazy.getId("t/C");
+        lazy.getId("t/B");
+        for (var hierarchy : List.of(build(), lazy)) {
+            for (var info : infos()) {
+                for (var supertype : hierarchy.getAllSupertypes(info.name)) {
+                    assertTrue(hierarchy.getId(supertype) < hierarchy.getId(info.name),
+                            supertype + " should have a smaller id than " + info.name);
+                }
+            }
+            // isAssignableFrom依赖这个顺序直接排除id更大的类型
+            for (var type : infos()) {
+                for (var other : infos()) {
+                    if (hierarchy.getId(type.name) > hierarchy.getId(other.name)) {
+                        assertFalse(hierarchy.isAssignableFrom(type.name, other.name));
+                    }
+                }
+            }
+            assertEquals("t/B", hierarchy.getName(hierarchy.getId("t/B")));
+        }
+        assertTrue(lazy.isAssignableFrom("t/K", "t/C"));
+        assertTrue(lazy.isAssignableFrom("t/I", "t/D"));
+    }
+
+    @Test
+    public void missingSuperClass() {
+        var hierarchy = build();
+        assertFalse(hierarchy.contains("x/Missing"));
+        assertNull(hierarchy.getClassInfo("x/Missing"));
+        assertEquals(-1, hierarchy.getDepth("x/Missing"));
+        assertEquals("x/Missing", hierarchy.getSuperName("t/E"));
+        assertEquals(List.of("x/Missing", "t/E"), hierarchy.getSuperClasses("t/E"));
+        assertTrue(hierarchy.isAssignableFrom("x/Missing", "t/E"));
+        assertFalse(hierarchy.isAssignableFrom("t/A", "t/E"));
+        // 父类链断开，没有公共的根
+        assertEquals(ClassHierarchy.ObjectName, hierarchy.getCommonSuperClass("t/E", "t/A"));
+        assertEquals(ClassHierarchy.ObjectName, hierarchy.getCommonSuperClass("x/Missing", "t/A"));
+    }
+
+    @Test
+    public void cycleIsBroken() {
+        var hierarchy = build();
+        // 先解析P，解析Q时指向正在解析的P的边被断开
+        assertNull(hierarchy.getSuperName("t/Q"));
+        assertEquals("t/Q", hierarchy.getSuperName("t/P"));
+        assertEquals(List.of("t/Q", "t/P"), hierarchy.getSuperClasses("t/P"));
+        assertTrue(hierarchy.isAssignableFrom("t/Q", "t/P"));
+        assertFalse(hierarchy.isAssignableFrom("t/P", "t/Q"));
+        assertEquals(set("t/Q"), hierarchy.getAllSupertypes("t/P"));
+        assertEquals(set("t/P"), hierarchy.getAllSubtypes("t/Q"));
+        assertEquals(ClassHierarchy.ObjectName, hierarchy.getCommonSuperClass("t/P", "t/A"));
+
+        // 接口之间的循环
+        var interfaces = ClassHierarchy.builder()
+                .add(itf("t/X", "t/Y"))
+                .add(itf("t/Y", "t/X"))
+                .build();
+        assertTrue(interfaces.isAssignableFrom("t/Y", "t/X"));
+        assertFalse(interfaces.isAssignableFrom("t/X", "t/Y"));
+    }
+
+    @Test
+    public void subtypes() {
+        var hierarchy = build();
+        assertEquals(set("t/J", "t/K"), new HashSet<>(hierarchy.getDirectSubtypes("t/I")));
+        assertEquals(set("t/L", "t/C"), new HashSet<>(hierarchy.getDirectSubtypes("t/K")));
+        assertEquals(set("t/B", "t/D"), new HashSet<>(hierarchy.getDirectSubtypes("t/A")));
+        assertEquals(set("t/J", "t/K", "t/L", "t/A", "t/B", "t/C", "t/D"), hierarchy.getAllSubtypes("t/I"));
+        assertEquals(set("t/L", "t/A", "t/B", "t/C", "t/D"), hierarchy.getAllSubtypes("t/K"));
+        assertEquals(set("t/E"), hierarchy.getAllSubtypes("x/Missing"));
+        assertTrue(hierarchy.getAllSubtypes("t/B").isEmpty());
+    }
+
+    @Test
+    public void lazySubtypesOnlyCoverResolvedClasses() {
+        var byName = infos().stream().collect(Collectors.toMap(info -> info.name, Function.identity()));
+        var lazy = ClassHierarchy.of(byName::get);
+        assertTrue(lazy.getAllSubtypes("t/I").isEmpty());
+        lazy.getId("t/C");
+        assertEquals(set("t/K", "t/C"), lazy.getAllSubtypes("t/I"));
+    }
+
+    @Test
+    public void fallbackIsResolvedOnDemand() {
+        Map<String, ClassInfo> library = Map.of("l/Base", cls("l/Base", ClassHierarchy.ObjectName),
+                ClassHierarchy.ObjectName, cls(ClassHierarchy.ObjectName, null));
+        var hierarchy = ClassHierarchy.builder()
+                .add(cls("t/Impl", "l/Base"))
+                // 同名的类以添加的为准
+                .add(itf("l/Other"))
+                .withFallback(name -> name.equals("l/Other") ? cls("l/Other", ClassHierarchy.ObjectName)
+                        : library.get(name))
+                .build();
+        assertEquals(List.of(ClassHierarchy.ObjectName, "l/Base", "t/Impl"), hierarchy.getSuperClasses("t/Impl"));
+        assertTrue(hierarchy.isInterface("l/Other"));
+        assertEquals(set("t/Impl"), hierarchy.getAllSubtypes("l/Base"));
+    }
+}
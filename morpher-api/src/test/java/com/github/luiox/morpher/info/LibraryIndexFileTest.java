@@ -0,0 +1,69 @@
+package com.github.luiox.morpher.info;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibraryIndexFileTest {
+
+    @Test
+    public void roundTrip(@TempDir Path dir) throws Exception {
+        var first = new LibraryIndexFile.JarRecord("/libs/a.jar", 1234, 5678, List.of(
+                new ClassInfo("a/A", Opcodes.ACC_PUBLIC, "java/lang/Object", List.of("a/I", "测试/接口"), Opcodes.V17),
+                new ClassInfo("a/I", Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE, "java/lang/Object", List.of(), Opcodes.V17),
+                new ClassInfo("java/lang/Object", Opcodes.ACC_PUBLIC, null, List.of(), Opcodes.V21)));
+        var second = new LibraryIndexFile.JarRecord("/libs/空.jar", 0, -1, List.of());
+        var file = dir.resolve("index").resolve("libs.idx");
+
+        LibraryIndexFile.write(file, List.of(first, second));
+        var loaded = LibraryIndexFile.load(file);
+
+        assertEquals(List.of("/libs/a.jar", "/libs/空.jar"), List.copyOf(loaded.keySet()));
+        var record = loaded.get("/libs/a.jar");
+        assertTrue(record.matches(1234, 5678));
+        assertFalse(record.matches(1234, 5679));
+        assertEquals(first.classes.size(), record.classes.size());
+        for (int i = 0; i < first.classes.size(); i++) {
+            var expected = first.classes.get(i);
+            var actual = record.classes.get(i);
+            assertEquals(expected.name, actual.name);
+            assertEquals(expected.superName, actual.superName);
+            assertEquals(expected.interfaces, actual.interfaces);
+            assertEquals(expected.access, actual.access);
+            assertEquals(expected.version, actual.version);
+        }
+        assertTrue(loaded.get("/libs/空.jar").classes.isEmpty());
+
+        // 加载之后文件没有被占用，可以直接覆盖和删除
+        LibraryIndexFile.write(file, List.of(second));
+        assertEquals(1, LibraryIndexFile.load(file).size());
+        Files.delete(file);
+        try (var files = Files.list(file.getParent())) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void invalidFileLoadsAsEmpty(@TempDir Path dir) throws Exception {
+        assertTrue(LibraryIndexFile.load(dir.resolve("missing.idx")).isEmpty());
+
+        var garbage = dir.resolve("garbage.idx");
+        Files.write(garbage, new byte[]{1, 2, 3});
+        assertTrue(LibraryIndexFile.load(garbage).isEmpty());
+
+        // 头部正确但内容被截断
+        var truncated = dir.resolve("truncated.idx");
+        LibraryIndexFile.write(truncated, List.of(new LibraryIndexFile.JarRecord("/libs/a.jar", 1, 2,
+                List.of(new ClassInfo("a/A", 0, "java/lang/Object", List.of(), Opcodes.V17)))));
+        var bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 3));
+        assertTrue(LibraryIndexFile.load(truncated).isEmpty());
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.luiox.morpher.jar;
+
+import com.github.luiox.morpher.model.ClassResource;
+import com.github.luiox.morpher.model.ResourceContainer;
+import com.github.luiox.morpher.model.io.JarFileExporter;
+import com.github.luiox.morpher.model.io.JarFileImporter;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JarRoundTripTest {
+
+    private static byte @NotNull [] generateClass(@NotNull String name) {
+        var node = new ClassNode();
+        node.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+        var writer = new ClassWriter(0);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 生成源jar，包含Manifest、目录、压缩和不压缩的class以及普通资源
+     *
+     * @return 条目名 -> 内容，不包含目录
+     */
+    private static @NotNull Map<String, byte[]> writeSourceJar(@NotNull Path file) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("META-INF/MANIFEST.MF",
+                "Manifest-Version: 1.0\r\nMain-Class: a.Main\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < 20; i++) {
+            var name = "a/C" + i;
+            entries.put(name + ".class", generateClass(name));
+        }
+        entries.put("a/Stored.class", generateClass("a/Stored"));
+        entries.put("assets/text.txt", "morpher ".repeat(1000).getBytes(StandardCharsets.UTF_8));
+        entries.put("assets/empty.bin", new byte[0]);
+
+        try (var out = new JarOutputStream(Files.newOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("a/"));
+            out.closeEntry();
+            for (var entry : entries.entrySet()) {
+                var zipEntry = new ZipEntry(entry.getKey());
+                if (entry.getKey().equals("a/Stored.class")) {
+                    var crc = new CRC32();
+                    crc.update(entry.getValue());
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(entry.getValue().length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(zipEntry);
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 用JDK的ZipFile读取所有非目录条目
+     */
+    private static @NotNull Map<String, byte[]> readWithZipFile(@NotNull Path file) throws IOException {
+        Map<String, byte[]> entries = new TreeMap<>();
+        try (var zip = new ZipFile(file.toFile())) {
+            for (var entry : Collections.list(zip.entries())) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                try (var in = zip.getInputStream(entry)) {
+                    assertNull(entries.put(entry.getName(), in.readAllBytes()), "duplicate " + entry.getName());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static void assertSameEntries(@NotNull Map<String, byte[]> expected, @NotNull Map<String, byte[]> actual) {
+        assertEquals(new TreeSet<>(expected.keySet()), new TreeSet<>(actual.keySet()));
+        for (var entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), actual.get(entry.getKey()), entry.getKey());
+        }
+    }
+
+    private static @NotNull List<IJarWriter> writers(@NotNull Path target) {
+        return List.of(new ParallelJarWriter(target.toString(), 4), new JarWriter(target.toString()));
+    }
+
+    private static @NotNull List<String> fileNames(@NotNull Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    @Test
+    public void mappedJarFileMatchesZipFile(@TempDir Path dir) throws Exception {
+        var jar = dir.resolve("in.jar");
+        var expected = writeSourceJar(jar);
+        Map<String, byte[]> actual = new TreeMap<>();
+        var file = MappedJarFile.open(jar);
+        try (file) {
+            for (var entry : file.entries()) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                var bytes = file.readBytes(entry);
+                assertEquals(entry.size, bytes.length);
+                actual.put(entry.name, bytes);
+                int head = Math.min(8, bytes.length);
+                assertArrayEquals(Arrays.copyOf(bytes, head), file.readHead(entry, head));
+            }
+            assertTrue(file.isOpen());
+        }
+        assertSameEntries(expected, actual);
+
+        // 关闭之后映射被释放，不能再读取
+        assertFalse(file.isOpen());
+        var first = file.entries().getFirst();
+        assertThrows(IllegalStateException.class, () -> file.readBytes(first));
+    }
+
+    @Test
+    public void roundTripToOtherPath(@TempDir Path dir) throws Exception {
+        var source = dir.resolve("in.jar");
+        var expected = writeSourceJar(source);
+        for (boolean lazy : new boolean[]{false, true}) {
+            for (var writer : writers(dir.resolve("out.jar"))) {
+                var container = new ResourceContainer();
+                try (var reader = new MappedJarReader(source.toString())) {
+                    container.importResource(new JarFileImporter(reader, 4).withLazyClasses(lazy));
+                    container.exportResource(new JarFileExporter(writer));
+                }
+                assertSameEntries(expected, readWithZipFile(dir.resolve("out.jar")));
+            }
+        }
+        // 源jar没有被修改
+        assertSameEntries(expected, readWithZipFile(source));
+        assertEquals(List.of("in.jar", "out.jar"), fileNames(dir));
+    }
+
+    @Test
+    public void roundTripOverSourceJar(@TempDir Path dir) throws Exception {
+        var source = dir.resolve("in.jar");
+        var expected = writeSourceJar(source);
+        for (var writer : writers(source)) {
+            var container = new ResourceContainer();
+            try (var reader = new MappedJarReader(source.toString())) {
+                // 延迟加载的类和原样拷贝的条目都还指向源jar的映射
+                container.importResource(new JarFileImporter(reader, 4).withLazyClasses(true));
+
+                // 修改其中一个类，其他条目保持原样
+                var resource = (ClassResource) container.get("a/C3.class");
+                var node = new ClassNode();
+                new ClassReader(resource.get()).accept(node, 0);
+                node.fields.add(new FieldNode(Opcodes.ACC_PUBLIC, "added", "I", null, null));
+                var classWriter = new ClassWriter(0);
+                node.accept(classWriter);
+                resource.set(classWriter.toByteArray());
+                expected.put("a/C3.class", classWriter.toByteArray());
+
+                container.exportResource(new JarFileExporter(writer));
+            }
+            assertSameEntries(expected, readWithZipFile(source));
+            // 没有留下临时文件
+            assertEquals(List.of("in.jar"), fileNames(dir));
+        }
+    }
+
+    @Test
+    public void failedWriteLeavesTargetUnchanged(@TempDir Path dir) throws Exception {
+        var target = dir.resolve("in.jar");
+        writeSourceJar(target);
+        var original = Files.readAllBytes(target);
+        for (var writer : writers(target)) {
+            writer.write(entries -> {
+                entries.writeEntry("a/Written.class", generateClass("a/Written"));
+                throw new UncheckedIOException(new IOException("test"));
+            });
+            assertArrayEquals(original, Files.readAllBytes(target));
+            assertEquals(List.of("in.jar"), fileNames(dir));
+        }
+    }
+
+    @Test
+    public void keepsTargetPermissions(@TempDir Path dir) throws Exception {
+        if (!Files.getFileStore(dir).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            return;
+        }
+        var target = dir.resolve("in.jar");
+        var expected = writeSourceJar(target);
+        var permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(target, permissions);
+        for (var writer : writers(target)) {
+            var container = new ResourceContainer();
+            try (var reader = new MappedJarReader(target.toString())) {
+                container.importResource(new JarFileImporter(reader));
+                container.exportResource(new JarFileExporter(writer));
+            }
+            assertSameEntries(expected, readWithZipFile(target));
+            assertEquals(permissions, Files.getPosixFilePermissions(target));
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.github.luiox.morpher.transformer;
+
+import com.github.luiox.morpher.model.ClassResource;
+import com.github.luiox.morpher.model.ResourceContainer;
+import com.github.luiox.morpher.progress.IProgressListener;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassNodeCacheTest {
+
+    private static @NotNull ClassNode newClass(@NotNull String name) {
+        var node = new ClassNode();
+        node.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+        return node;
+    }
+
+    private static byte @NotNull [] write(@NotNull ClassNode node) {
+        var writer = new ClassWriter(0);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    private static @NotNull ClassResource newResource(@NotNull String name) {
+        return new ClassResource(name + ".class", write(newClass(name)));
+    }
+
+    private static @NotNull List<String> fieldNames(byte @NotNull [] bytes) {
+        var node = new ClassNode();
+        new ClassReader(bytes).accept(node, 0);
+        List<String> names = new ArrayList<>();
+        for (var field : node.fields) {
+            names.add(field.name);
+        }
+        return names;
+    }
+
+    /**
+     * 记录写回时使用的标志
+     */
+    private static final class RecordingWriter implements ClassNodeCache.IClassNodeWriter {
+        final List<String> written = new ArrayList<>();
+        final List<Integer> flags = new ArrayList<>();
+
+        @Override
+        public byte @NotNull [] write(@NotNull ClassNode classNode, int wflag) {
+            written.add(classNode.name);
+            flags.add(wflag);
+            return ClassNodeCacheTest.write(classNode);
+        }
+    }
+
+    @Test
+    public void checkOutReturnsCheckedInNode() {
+        var writer = new RecordingWriter();
+        var cache = new ClassNodeCache(1000, writer);
+        var resource = newResource("a/A");
+        var node = newClass("a/A");
+
+        assertNull(cache.checkOut(resource, 0));
+        cache.checkIn(resource, node, 0, ClassWriter.COMPUTE_MAXS, 100);
+        assertEquals(1, cache.size());
+        assertEquals(100, cache.getUsedBytes());
+
+        var cached = cache.checkOut(resource, 0);
+        assertNotNull(cached);
+        assertSame(node, cached.classNode);
+        assertEquals(ClassWriter.COMPUTE_MAXS, cached.pendingWriteFlag);
+        // 取出之后不在缓存中，也不会被写回
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedBytes());
+        assertNull(cache.checkOut(resource, 0));
+        assertTrue(writer.written.isEmpty());
+    }
+
+    @Test
+    public void checkOutWithOtherReadFlagWritesBack() {
+        var writer = new RecordingWriter();
+        var cache = new ClassNodeCache(1000, writer);
+        var resource = newResource("a/A");
+        var node = newClass("a/A");
+        node.fields.add(new FieldNode(Opcodes.ACC_PUBLIC, "f", "I", null, null));
+        cache.checkIn(resource, node, 0, ClassWriter.COMPUTE_MAXS, 100);
+
+        assertNull(cache.checkOut(resource, ClassReader.SKIP_FRAMES));
+        assertEquals(List.of("a/A"), writer.written);
+        assertEquals(List.of(ClassWriter.COMPUTE_MAXS), writer.flags);
+        assertEquals(List.of("f"), fieldNames(resource.get()));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverBudget() {
+        var writer = new RecordingWriter();
+        var cache = new ClassNodeCache(100, writer);
+        var a = newResource("a/A");
+        var b = newResource("a/B");
+        var c = newResource("a/C");
+        cache.checkIn(a, newClass("a/A"), 0, 0, 40);
+        cache.checkIn(b, newClass("a/B"), 0, 0, 40);
+
+        // 重新取出并放回A，B变成最久没有使用的
+        var cached = cache.checkOut(a, 0);
+        assertNotNull(cached);
+        cache.checkIn(a, cached.classNode, 0, 0, 40);
+        cache.checkIn(c, newClass("a/C"), 0, 0, 40);
+
+        assertEquals(List.of("a/B"), writer.written);
+        assertEquals(2, cache.size());
+        assertEquals(80, cache.getUsedBytes());
+        assertNull(cache.checkOut(b, 0));
+        assertNotNull(cache.checkOut(c, 0));
+    }
+
+    @Test
+    public void flushWritesBackEverything() {
+        var writer = new RecordingWriter();
+        var cache = new ClassNodeCache(1000, writer);
+        var a = newResource("a/A");
+        var b = newResource("a/B");
+        cache.checkIn(a, newClass("a/A"), 0, 0, 10);
+        cache.checkIn(b, newClass("a/B"), 0, 0, 10);
+        cache.invalidate(b);
+
+        cache.flush();
+        assertEquals(List.of("a/A"), writer.written);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    @Test
+    public void throwingPassKeepsEarlierCachedChanges() {
+        var container = new ResourceContainer();
+        for (var name : List.of("a/A", "a/B")) {
+            container.addResource(name + ".class", newResource(name));
+        }
+        var context = new PassContext(container);
+        context.setProgressListener(IProgressListener.silent());
+
+        var pipeline = Pipeline.of("cache").withClassNodeCache(1L << 20);
+        pipeline.add(Phase.of("first", 0, 0).add(new ClassPass() {
+            @Override
+            public void run(@NotNull ClassNode classNode, @NotNull IPassContext context) {
+                classNode.fields.add(new FieldNode(Opcodes.ACC_PUBLIC, "first", "I", null, null));
+            }
+        }));
+        pipeline.add(Phase.of("second", 0, 0).add(new ClassPass() {
+            @Override
+            public void run(@NotNull ClassNode classNode, @NotNull IPassContext context) {
+                if (classNode.name.equals("a/A")) {
+                    throw new IllegalStateException("test");
+                }
+                classNode.fields.add(new FieldNode(Opcodes.ACC_PUBLIC, "second", "I", null, null));
+            }
+        }));
+        pipeline.runPipeLine(context);
+
+        // 第二个阶段在A上出错，第一个阶段只保存在缓存中的修改不能丢失
+        assertEquals(List.of("first"), fieldNames(((ClassResource) container.get("a/A.class")).get()));
+        assertEquals(List.of("first", "second"), fieldNames(((ClassResource) container.get("a/B.class")).get()));
+        assertNull(context.getClassNodeCache());
+    }
+
+    /**
+     * 第一个阶段添加字段first，第二个阶段添加字段partial之后抛出异常
+     */
+    private static @NotNull List<String> runMutateThenThrow(long cacheBudget) {
+        var container = new ResourceContainer();
+        container.addResource("a/A.class", newResource("a/A"));
+        var context = new PassContext(container);
+        context.setProgressListener(IProgressListener.silent());
+
+        var pipeline = Pipeline.of("cache").withClassNodeCache(cacheBudget);
+        pipeline.add(Phase.of("first", 0, 0).add(new ClassPass() {
+            @Override
+            public void run(@NotNull ClassNode classNode, @NotNull IPassContext context) {
+                classNode.fields.add(new FieldNode(Opcodes.ACC_PUBLIC, "first", "I", null, null));
+            }
+        }));
+        pipeline.add(Phase.of("second", 0, 0).add(new ClassPass() {
+            @Override
+            public void run(@NotNull ClassNode classNode, @NotNull IPassContext context) {
+                classNode.fields.add(new FieldNode(Opcodes.ACC_PUBLIC, "partial", "I", null, null));
+                throw new IllegalStateException("test");
+            }
+        }));
+        pipeline.runPipeLine(context);
+        return fieldNames(((ClassResource) container.get("a/A.class")).get());
+    }
+
+    @Test
+    public void passMutatingBeforeThrowing() {
+        // 不缓存时丢弃出错阶段的修改
+        assertEquals(List.of("first"), runMutateThenThrow(0));
+        // 缓存时出错之前的修改保留在ClassNode里，和Pipeline#withClassNodeCache中说明的一致
+        assertEquals(List.of("first", "partial"), runMutateThenThrow(1L << 20));
+    }
+}
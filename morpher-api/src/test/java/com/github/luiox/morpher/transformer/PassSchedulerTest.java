@@ -0,0 +1,163 @@
+package com.github.luiox.morpher.transformer;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PassSchedulerTest {
+
+    private static class NoopPass extends ClassPass {
+        @Override
+        public void run(@NotNull ClassNode classNode, @NotNull IPassContext context) {
+        }
+    }
+
+    @PassInfo(name = "code", reads = AccessScope.Code, writes = AccessScope.Code)
+    private static final class CodePass extends NoopPass {
+    }
+
+    @PassInfo(name = "codeA", reads = AccessScope.Code, writes = AccessScope.Code, classes = "a/")
+    private static final class CodePassA extends NoopPass {
+    }
+
+    @PassInfo(name = "codeB", reads = AccessScope.Code, writes = AccessScope.Code, classes = "b/")
+    private static final class CodePassB extends NoopPass {
+    }
+
+    @PassInfo(name = "codeAB", reads = AccessScope.Code, writes = AccessScope.Code, classes = {"b/", "a/"})
+    private static final class CodePassAB extends NoopPass {
+    }
+
+    @PassInfo(name = "membersWriter", reads = AccessScope.Members, writes = AccessScope.Members)
+    private static final class MembersWriter extends NoopPass {
+    }
+
+    @PassInfo(name = "membersReader", reads = AccessScope.Members, writes = AccessScope.Code)
+    private static final class MembersReader extends NoopPass {
+    }
+
+    @PassInfo(name = "renamer", reads = AccessScope.Hierarchy, writes = AccessScope.Hierarchy)
+    private static final class Renamer extends NoopPass {
+    }
+
+    private static @NotNull List<String> names(@NotNull List<PassScheduler.Node> nodes) {
+        List<String> names = new ArrayList<>();
+        for (var node : nodes) {
+            names.add(node.phase.name);
+        }
+        return names;
+    }
+
+    private static @NotNull List<String> dependencyNames(@NotNull PassScheduler.Node node) {
+        return names(node.dependencies);
+    }
+
+    @Test
+    public void fusesMatchingPhases() {
+        var first = Phase.of("first", new CodePass());
+        var second = Phase.of("second", new CodePass());
+        var nodes = PassScheduler.of(first, second).plan();
+
+        assertEquals(List.of("first+second"), names(nodes));
+        assertEquals(2, nodes.getFirst().phase.getPasses().size());
+        assertTrue(nodes.getFirst().dependencies.isEmpty());
+
+        // 前缀集合相同，顺序不同也可以合并
+        nodes = PassScheduler.of(Phase.of("ab", new CodePassAB()),
+                Phase.of("ba", new CodePassA(), new CodePassB())).plan();
+        assertEquals(List.of("ab+ba"), names(nodes));
+        assertEquals(List.of("b/", "a/"), nodes.getFirst().effects.classPrefixes());
+    }
+
+    @Test
+    public void noFusionWithoutFusionFlag() {
+        var nodes = PassScheduler.of(Phase.of("first", new CodePass()), Phase.of("second", new CodePass()))
+                .withFusion(false)
+                .plan();
+        assertEquals(List.of("first", "second"), names(nodes));
+    }
+
+    @Test
+    public void noFusionWithDifferentFlagsOrMode() {
+        var nodes = PassScheduler.of(
+                Phase.of("first", 0, 0).add(new CodePass()),
+                Phase.of("skipFrames", ClassReader.SKIP_FRAMES, 0).add(new CodePass()),
+                Phase.of("forkJoin", ClassReader.SKIP_FRAMES, 0).add(new CodePass())
+                        .withIterateMode(IterateMode.ForkJoin)).plan();
+        assertEquals(List.of("first", "skipFrames", "forkJoin"), names(nodes));
+    }
+
+    @Test
+    public void noFusionAcrossStructuralEffects() {
+        var nodes = PassScheduler.of(Phase.of("first", new CodePass()), Phase.of("rename", new Renamer()),
+                Phase.of("second", new CodePass())).plan();
+        assertEquals(List.of("first", "rename", "second"), names(nodes));
+        // 改变结构的阶段和所有阶段冲突
+        assertEquals(List.of("first"), dependencyNames(nodes.get(1)));
+        assertEquals(List.of("first", "rename"), dependencyNames(nodes.get(2)));
+    }
+
+    @Test
+    public void noFusionWithDifferentPrefixes() {
+        var nodes = PassScheduler.of(Phase.of("a", new CodePassA()), Phase.of("b", new CodePassB()),
+                Phase.of("all", new CodePass())).plan();
+        assertEquals(List.of("a", "b", "all"), names(nodes));
+        // 处理的类没有重叠的阶段之间没有依赖，可以同时运行
+        assertTrue(nodes.get(1).dependencies.isEmpty());
+        assertEquals(List.of("a", "b"), dependencyNames(nodes.get(2)));
+    }
+
+    @Test
+    public void noFusionWithCrossClassConflict() {
+        var nodes = PassScheduler.of(Phase.of("writer", new MembersWriter()),
+                Phase.of("reader", new MembersReader())).plan();
+        assertEquals(List.of("writer", "reader"), names(nodes));
+        assertEquals(List.of("writer"), dependencyNames(nodes.get(1)));
+
+        // 只读Members的阶段之间没有冲突，可以合并
+        nodes = PassScheduler.of(Phase.of("first", new MembersReader()),
+                Phase.of("second", new MembersReader())).plan();
+        assertEquals(List.of("first+second"), names(nodes));
+    }
+
+    @Test
+    public void dependenciesFollowConflicts() {
+        var a = Phase.of("a", new CodePassA());
+        var b = Phase.of("b", new CodePassB());
+        var a2 = Phase.of("a2", new CodePassA());
+        var writer = Phase.of("writer", new MembersWriter());
+        var nodes = PassScheduler.of(a, b, a2, writer).withFusion(false).plan();
+
+        assertEquals(List.of("a", "b", "a2", "writer"), names(nodes));
+        for (int j = 0; j < nodes.size(); j++) {
+            for (int i = 0; i < j; i++) {
+                var expected = nodes.get(i).effects.conflictsWith(nodes.get(j).effects);
+                assertEquals(expected, nodes.get(j).dependencies.contains(nodes.get(i)));
+            }
+        }
+        assertTrue(nodes.get(1).dependencies.isEmpty());
+        assertEquals(List.of("a"), dependencyNames(nodes.get(2)));
+        assertEquals(List.of("a", "b", "a2"), dependencyNames(nodes.get(3)));
+    }
+
+    @Test
+    public void phasesWithoutPassInfoRunInOrder() {
+        var nodes = PassScheduler.of(Phase.of("first", new NoopPass()), Phase.of("second", new NoopPass()),
+                Phase.of("third", new NoopPass())).plan();
+
+        // 没有PassInfo时按照读写全部数据处理，不合并，每个阶段依赖前面所有阶段
+        assertEquals(List.of("first", "second", "third"), names(nodes));
+        assertTrue(nodes.get(0).dependencies.isEmpty());
+        assertEquals(List.of("first"), dependencyNames(nodes.get(1)));
+        assertEquals(List.of("first", "second"), dependencyNames(nodes.get(2)));
+        for (var node : nodes) {
+            assertTrue(node.effects.isStructural());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+plugins {
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+description = "JMH benchmarks for the transformation pipeline"
+
+dependencies {
+    implementation(project(":morpher-api"))
+    implementation(project(":morpher-passes"))
+}
+
+// 运行：./gradlew :morpher-benchmarks:jmh，结果写到 build/results/jmh/results.json
+jmh {
+    jmhVersion = properties["jmh_version"] as String
+    warmupIterations = 3
+    iterations = 5
+    fork = 1
+    resultFormat = "JSON"
+}
+
+tasks {
+    java {
+        toolchain {
+            languageVersion = JavaLanguageVersion.of(22)
+        }
+    }
+
+    // 基准测试模块不需要发布
+    withType<AbstractPublishToMaven> {
+        enabled = false
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.luiox.morpher.benchmark;
+
+import com.github.luiox.morpher.model.ClassResource;
+import com.github.luiox.morpher.model.ResourceContainer;
+import com.github.luiox.morpher.progress.IProgressListener;
+import com.github.luiox.morpher.transformer.PassContext;
+import com.github.luiox.morpher.transformer.PassHelperImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类信息的构建，对比每次解析所有类的头部和使用上下文中的增量索引。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClassInfoBenchmark {
+    @Param({"2000"})
+    public int classCount;
+
+    private PassContext context;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var container = new ResourceContainer();
+        SyntheticJar.generate(classCount, 8, 16)
+                .forEach((name, bytes) -> container.addResource(name, new ClassResource(name, bytes)));
+        context = new PassContext(container);
+        context.setProgressListener(IProgressListener.silent());
+    }
+
+    /**
+     * 不使用增量索引，每次都解析所有类的头部
+     */
+    @Benchmark
+    public void buildClassInfo(Blackhole bh) {
+        bh.consume(PassHelperImpl.getInstance().buildClassInfo(context.getContainer()));
+    }
+
+    /**
+     * 使用上下文中的增量索引，类没有变化时只做同步检查
+     */
+    @Benchmark
+    public void buildClassInfoIncremental(Blackhole bh) {
+        bh.consume(PassHelperImpl.getInstance().buildClassInfo(context));
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.luiox.morpher.benchmark;
+
+import com.github.luiox.morpher.asm.writer.CommonSuperClassProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 公共父类查询，生成的类按二叉树继承，随机选取的两个类的公共父类深度不同。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommonSuperClassBenchmark {
+    private static final int PairCount = 1024;
+
+    @Param({"5000"})
+    public int classCount;
+
+    private CommonSuperClassProvider provider;
+    private String[] left;
+    private String[] right;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path dir = Files.createTempDirectory("morpher-bench");
+        Path jar = SyntheticJar.writeJar(dir.resolve("lib.jar"), classCount, 1, 1);
+        provider = new CommonSuperClassProvider();
+        provider.scan(dir.toString());
+        Files.deleteIfExists(jar);
+        Files.deleteIfExists(dir);
+
+        var random = new Random(classCount);
+        left = new String[PairCount];
+        right = new String[PairCount];
+        for (int i = 0; i < PairCount; i++) {
+            left[i] = SyntheticJar.className(random.nextInt(classCount));
+            right[i] = SyntheticJar.className(random.nextInt(classCount));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public String getCommonSuperClasses(Cursor cursor) {
+        int i = cursor.next++ & (PairCount - 1);
+        return provider.getCommonSuperClasses(left[i], right[i]);
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.luiox.morpher.benchmark;
+
+import com.github.luiox.morpher.asm.insn.InsnUtil;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指令列表的复制。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InsnUtilBenchmark {
+    @Param({"100", "10000"})
+    public int blocks;
+
+    private InsnList insns;
+    private List<AbstractInsnNode> list;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        insns = SyntheticJar.foldableBody(blocks, new Random(blocks));
+        list = InsnUtil.copyInsnList(insns);
+    }
+
+    @Benchmark
+    public List<AbstractInsnNode> copyInsnList() {
+        return InsnUtil.copyInsnList(insns);
+    }
+
+    @Benchmark
+    public InsnList copyToInsnList() {
+        return InsnUtil.copyInsnList(list);
+    }
+}
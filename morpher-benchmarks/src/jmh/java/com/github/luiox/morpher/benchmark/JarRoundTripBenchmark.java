@@ -0,0 +1,69 @@
+package com.github.luiox.morpher.benchmark;
+
+import com.github.luiox.morpher.model.ResourceContainer;
+import com.github.luiox.morpher.model.io.ResourceHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jar的读取和写出。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JarRoundTripBenchmark {
+    @Param({"500", "5000"})
+    public int classCount;
+
+    private Path dir;
+    private Path input;
+    private Path output;
+    private ResourceContainer loaded;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("morpher-bench");
+        input = SyntheticJar.writeJar(dir.resolve("input.jar"), classCount, 8, 16);
+        output = dir.resolve("output.jar");
+        loaded = new ResourceContainer();
+        ResourceHelper.importFromJar(loaded, input.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void read(Blackhole bh) {
+        var container = new ResourceContainer();
+        ResourceHelper.importFromJar(container, input.toString());
+        bh.consume(container);
+    }
+
+    @Benchmark
+    public void readMapped(Blackhole bh) {
+        var container = new ResourceContainer();
+        ResourceHelper.importFromJar(container, input.toString(), Runtime.getRuntime().availableProcessors());
+        bh.consume(container);
+    }
+
+    @Benchmark
+    public void write() {
+        ResourceHelper.exportToJar(loaded, output.toString());
+    }
+
+    @Benchmark
+    public void roundTrip() {
+        var container = new ResourceContainer();
+        ResourceHelper.importFromJar(container, input.toString());
+        ResourceHelper.exportToJar(container, output.toString());
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.luiox.morpher.benchmark;
+
+import com.github.luiox.morpher.model.ClassResource;
+import com.github.luiox.morpher.model.ResourceContainer;
+import com.github.luiox.morpher.progress.IProgressListener;
+import com.github.luiox.morpher.transformer.PassContext;
+import com.github.luiox.morpher.transformer.PassHelperImpl;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以不同的读写标志遍历所有类，类信息的构建见{@link ClassInfoBenchmark}。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PassHelperBenchmark {
+    @Param({"2000"})
+    public int classCount;
+
+    /**
+     * 读写标志的组合，格式为 读取标志/写入标志
+     */
+    @Param({"none/none", "skipFrames/computeMaxs", "expandFrames/computeFrames"})
+    public String flags;
+
+    private PassContext context;
+    private int rflag;
+    private int wflag;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var container = new ResourceContainer();
+        SyntheticJar.generate(classCount, 8, 16)
+                .forEach((name, bytes) -> container.addResource(name, new ClassResource(name, bytes)));
+        context = new PassContext(container);
+        // 不测量控制台进度输出
+        context.setProgressListener(IProgressListener.silent());
+        var parts = flags.split("/");
+        rflag = switch (parts[0]) {
+            case "skipFrames" -> ClassReader.SKIP_FRAMES;
+            case "expandFrames" -> ClassReader.EXPAND_FRAMES;
+            default -> 0;
+        };
+        wflag = switch (parts[1]) {
+            case "computeMaxs" -> ClassWriter.COMPUTE_MAXS;
+            case "computeFrames" -> ClassWriter.COMPUTE_FRAMES;
+            default -> 0;
+        };
+    }
+
+    @Benchmark
+    public void iterateClassNodeWithInfo(Blackhole bh) {
+        var helper = PassHelperImpl.getInstance();
+        var infos = helper.buildClassInfo(context);
+        helper.iterateClassNodeWithInfo(context, infos, rflag, wflag, bh::consume);
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.luiox.morpher.benchmark;
+
+import com.github.luiox.morpher.asm.insn.InsnUtil;
+import com.github.luiox.morpher.asm.matcher.FixpointRewriter;
+import com.github.luiox.morpher.asm.matcher.MatchRule;
+import com.github.luiox.morpher.asm.matcher.PatternMatcher;
+import com.github.luiox.morpher.asm.matcher.StepUtil;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.tree.InsnList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在很大的方法上做常量折叠，对比一次apply、原地rewrite和只重新检查改动附近的FixpointRewriter。
+ * <p>
+ * 改写会修改指令，每次调用都需要一份新的指令。每轮测量前准备好{@link #Batch}份，
+ * 每轮固定调用{@link #Batch}次，每次取用一份，生成的时间不计入测量，也不会像Level.Invocation那样给每次调用加上计时开销。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 5, batchSize = PatternMatcherBenchmark.Batch)
+@Measurement(iterations = 10, batchSize = PatternMatcherBenchmark.Batch)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatternMatcherBenchmark {
+    /**
+     * 每轮调用的次数，也是每轮准备的指令份数
+     */
+    public static final int Batch = 32;
+
+    @Param({"1000", "20000"})
+    public int blocks;
+
+    private PatternMatcher matcher;
+    private FixpointRewriter rewriter;
+    private final InsnList[] copies = new InsnList[Batch];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setupMatcher() {
+        matcher = new PatternMatcher();
+        // ldc(I:v1) - ldc(I:v2) - ixor => ldc(I:v1^v2)
+        matcher.addRule(new MatchRule()
+                .addStep(StepUtil.loadInt())
+                .addStep(StepUtil.loadInt())
+                .addStep(StepUtil.ixor())
+                .setStrategy(ctx -> {
+                    var val1 = InsnUtil.getIntValue(ctx.get(0));
+                    var val2 = InsnUtil.getIntValue(ctx.get(1));
+                    ctx.builder.ldc(val1 ^ val2);
+                }));
+        // ldc(I:v) - i2l => ldc(J:v)，在生成的方法中不会命中，用于衡量多条规则时的分派开销
+        matcher.addRule(new MatchRule()
+                .addStep(StepUtil.loadInt())
+                .addStep(StepUtil.i2l())
+                .setStrategy(ctx -> ctx.builder.ldc((long) InsnUtil.getIntValue(ctx.get(0)))));
+        matcher.compile();
+        rewriter = FixpointRewriter.of(matcher);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupInsns() {
+        // 同样的种子生成同样的指令
+        for (int i = 0; i < Batch; i++) {
+            copies[i] = SyntheticJar.foldableBody(blocks, new Random(blocks));
+        }
+        next = 0;
+    }
+
+    private @NotNull InsnList nextInsns() {
+        var insns = copies[next];
+        // 正常情况下每轮正好调用Batch次，这里只是防止越界
+        next = (next + 1) % Batch;
+        return insns;
+    }
+
+    @Benchmark
+    public InsnList apply() {
+        return matcher.apply(nextInsns());
+    }
+
+    @Benchmark
+    public boolean rewrite() {
+        return matcher.rewrite(nextInsns());
+    }
+
+    @Benchmark
+    public boolean fixpoint() {
+        return rewriter.rewrite(nextInsns());
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.luiox.morpher.benchmark;
+
+import com.github.luiox.morpher.asm.insn.InsnBuilder;
+import com.github.luiox.morpher.jar.JarWriter;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 用{@link InsnBuilder}在本地生成基准测试使用的类，不依赖外部jar，每次生成的内容都相同。
+ * <p>
+ * 类按照二叉树组织继承关系：第i个类的父类是第(i-1)/2个类，每个类还实现若干个接口中的一个，
+ * 这样公共父类的查询有不同的深度。每个方法由多个可以被常量折叠的块组成，
+ * 最后有一个合并两个不同类型的分支，写出时计算栈帧会调用公共父类查询。
+ */
+public final class SyntheticJar {
+    /**
+     * 生成的类所在的包
+     */
+    public static final String Package = "bench/";
+    private static final int InterfaceCount = 4;
+
+    private SyntheticJar() {
+    }
+
+    public static @NotNull String className(int index) {
+        return Package + "C" + index;
+    }
+
+    private static @NotNull String interfaceName(int index) {
+        return Package + "I" + index;
+    }
+
+    /**
+     * 生成所有类的class文件。
+     *
+     * @param classCount      类的数量
+     * @param methodsPerClass 每个类的方法数量
+     * @param blocksPerMethod 每个方法中可以折叠的块的数量
+     * @return 条目名 -> class文件内容，按生成顺序排列
+     */
+    public static @NotNull Map<String, byte[]> generate(int classCount, int methodsPerClass, int blocksPerMethod) {
+        var random = new Random(classCount * 31L + methodsPerClass);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < InterfaceCount; i++) {
+            var node = new ClassNode();
+            node.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT,
+                    interfaceName(i), null, "java/lang/Object", null);
+            entries.put(interfaceName(i) + ".class", write(node, 0));
+        }
+        for (int i = 0; i < classCount; i++) {
+            var node = generateClass(i, classCount, methodsPerClass, blocksPerMethod, random);
+            entries.put(node.name + ".class", write(node, ClassWriter.COMPUTE_FRAMES));
+        }
+        return entries;
+    }
+
+    /**
+     * 生成jar文件。
+     *
+     * @param file            jar路径
+     * @param classCount      类的数量
+     * @param methodsPerClass 每个类的方法数量
+     * @param blocksPerMethod 每个方法中可以折叠的块的数量
+     * @return jar路径
+     * @throws IOException 创建目录失败时抛出
+     */
+    public static @NotNull Path writeJar(@NotNull Path file, int classCount, int methodsPerClass, int blocksPerMethod)
+            throws IOException {
+        var parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        var entries = generate(classCount, methodsPerClass, blocksPerMethod);
+        new JarWriter(file.toString()).write(writer -> entries.forEach(writer::writeEntry));
+        return file;
+    }
+
+    private static @NotNull ClassNode generateClass(int index, int classCount, int methodsPerClass,
+                                                    int blocksPerMethod, @NotNull Random random) {
+        var name = className(index);
+        var superName = index == 0 ? "java/lang/Object" : className((index - 1) / 2);
+        var node = new ClassNode();
+        node.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, name, null, superName,
+                new String[]{interfaceName(index % InterfaceCount)});
+
+        var init = new MethodNode(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.instructions = InsnBuilder.build(b -> {
+            b.aload(0);
+            b.invokespecial(superName, "<init>", "()V");
+            b.returnn();
+        });
+        node.methods.add(init);
+
+        for (int m = 0; m < methodsPerClass; m++) {
+            var method = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m" + m, "(I)I", null, null);
+            method.instructions = foldableBody(blocksPerMethod, random);
+            node.methods.add(method);
+        }
+
+        // 两个兄弟类在分支处合并，计算栈帧时需要查询公共父类
+        int left = Math.min(classCount - 1, index * 2 + 1);
+        int right = Math.min(classCount - 1, index * 2 + 2);
+        var pick = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "pick", "(I)Ljava/lang/Object;", null, null);
+        pick.instructions = InsnBuilder.build(b -> {
+            b.iload(0);
+            b.ifeq("right");
+            newInstance(b, className(left));
+            b.gotoo("end");
+            b.label("right");
+            newInstance(b, className(right));
+            b.label("end");
+            b.areturn();
+        });
+        node.methods.add(pick);
+        return node;
+    }
+
+    private static void newInstance(@NotNull InsnBuilder b, @NotNull String type) {
+        b.neww(type);
+        b.dup();
+        b.invokespecial(type, "<init>", "()V");
+    }
+
+    /**
+     * 生成一个由可折叠的块组成的方法体，每个块是 ldc ldc ixor iload iadd istore。
+     *
+     * @param blocks 块的数量
+     * @param random 随机数
+     * @return 指令列表
+     */
+    public static @NotNull InsnList foldableBody(int blocks, @NotNull Random random) {
+        return InsnBuilder.build(b -> {
+            for (int i = 0; i < blocks; i++) {
+                b.ldc(random.nextInt());
+                b.ldc(random.nextInt());
+                b.ixor();
+                b.iload(0);
+                b.iadd();
+                b.istore(0);
+            }
+            b.iload(0);
+            b.ireturn();
+        });
+    }
+
+    private static byte @NotNull [] write(@NotNull ClassNode node, int flags) {
+        // 生成的类还没有被加载，公共父类直接按照二叉树的关系计算
+        var writer = new ClassWriter(flags) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                int index1 = classIndex(type1);
+                int index2 = classIndex(type2);
+                if (index1 < 0 || index2 < 0) {
+                    return "java/lang/Object";
+                }
+                while (index1 != index2) {
+                    if (index1 > index2) {
+                        index1 = (index1 - 1) / 2;
+                    } else {
+                        index2 = (index2 - 1) / 2;
+                    }
+                }
+                return className(index1);
+            }
+        };
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    private static int classIndex(@NotNull String type) {
+        var prefix = Package + "C";
+        return type.startsWith(prefix) ? Integer.parseInt(type, prefix.length(), type.length(), 10) : -1;
+    }
+}
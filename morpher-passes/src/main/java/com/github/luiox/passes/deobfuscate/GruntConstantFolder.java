@@ -1,6 +1,7 @@
 package com.github.luiox.passes.deobfuscate;
 
 import com.github.luiox.morpher.asm.insn.InsnUtil;
+import com.github.luiox.morpher.asm.matcher.FixpointRewriter;
 import com.github.luiox.morpher.asm.matcher.MatchRule;
 import com.github.luiox.morpher.asm.matcher.PatternMatcher;
 import com.github.luiox.morpher.asm.matcher.StepUtil;
@@ -14,7 +15,8 @@ import org.slf4j.LoggerFactory;
 public class GruntConstantFolder extends MethodPass {
     private static final Logger logger = LoggerFactory.getLogger(GruntConstantFolder.class);
 
-    static PatternMatcher matcher = new PatternMatcher();
+    private static final PatternMatcher matcher = new PatternMatcher();
+    private static final FixpointRewriter rewriter;
 
     static {
         // ldc(I:v) - i2l => ldc(J:v)
@@ -22,7 +24,7 @@ public class GruntConstantFolder extends MethodPass {
                 .addStep(StepUtil.loadInt())
                 .addStep(StepUtil.i2l())
                 .setStrategy(ctx -> {
-                    var insn = ctx.original.get(ctx.startIdx);
+                    var insn = ctx.get(0);
                     var val = InsnUtil.getIntValue(insn);
                     ctx.builder.ldc((long) val);
                 });
@@ -33,7 +35,7 @@ public class GruntConstantFolder extends MethodPass {
                 .addStep(StepUtil.loadLong())
                 .addStep(StepUtil.l2i())
                 .setStrategy(ctx -> {
-                    var insn = ctx.original.get(ctx.startIdx);
+                    var insn = ctx.get(0);
                     var val = InsnUtil.getLongValue(insn);
                     ctx.builder.ldc((int) val);
                 });
@@ -44,8 +46,8 @@ public class GruntConstantFolder extends MethodPass {
                 .addStep(StepUtil.loadLong())
                 .addStep(StepUtil.lxor())
                 .setStrategy(ctx -> {
-                    var val1 = InsnUtil.getLongValue(ctx.original.get(ctx.startIdx));
-                    var val2 = InsnUtil.getLongValue(ctx.original.get(ctx.startIdx + 1));
+                    var val1 = InsnUtil.getLongValue(ctx.get(0));
+                    var val2 = InsnUtil.getLongValue(ctx.get(1));
                     ctx.builder.ldc(val1 ^ val2);
                 });
         matcher.addRule(rule3);
@@ -55,11 +57,13 @@ public class GruntConstantFolder extends MethodPass {
                 .addStep(StepUtil.loadInt())
                 .addStep(StepUtil.ixor())
                 .setStrategy(ctx -> {
-                    var val1 = InsnUtil.getIntValue(ctx.original.get(ctx.startIdx));
-                    var val2 = InsnUtil.getIntValue(ctx.original.get(ctx.startIdx + 1));
+                    var val1 = InsnUtil.getIntValue(ctx.get(0));
+                    var val2 = InsnUtil.getIntValue(ctx.get(1));
                     ctx.builder.ldc(val1 ^ val2);
                 });
         matcher.addRule(rule4);
+        matcher.compile();
+        rewriter = FixpointRewriter.of(matcher);
     }
 
     @Override
@@ -68,14 +72,7 @@ public class GruntConstantFolder extends MethodPass {
             return;
         }
 
-        int startSize;
-        int endSize;
-        do {
-            startSize = methodNode.instructions.size();
-            methodNode.instructions = matcher.apply(methodNode.instructions);
-            endSize = methodNode.instructions.size();
-
-//            logger.info("Reduced method size from " + startSize + " to " + endSize);
-        } while (startSize != endSize);
+        // 折叠之后只重新检查改动附近的指令
+        rewriter.rewrite(methodNode.instructions);
     }
 }
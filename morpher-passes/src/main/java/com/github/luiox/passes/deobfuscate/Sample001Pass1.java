@@ -3,6 +3,7 @@ package com.github.luiox.passes.deobfuscate;
 import com.github.luiox.morpher.asm.matcher.MatchRule;
 import com.github.luiox.morpher.asm.matcher.PatternMatcher;
 import com.github.luiox.morpher.asm.matcher.StepUtil;
+import com.github.luiox.morpher.transformer.AccessScope;
 import com.github.luiox.morpher.transformer.IPassContext;
 import com.github.luiox.morpher.transformer.MethodPass;
 import com.github.luiox.morpher.transformer.PassInfo;
@@ -10,10 +11,11 @@ import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.tree.JumpInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
-@PassInfo(name = "Sample001Pass1", description = "处理a^a的pass")
+@PassInfo(name = "Sample001Pass1", description = "处理a^a的pass",
+        reads = AccessScope.Code, writes = AccessScope.Code)
 public class Sample001Pass1 extends MethodPass {
 
-    static PatternMatcher matcher = new PatternMatcher();
+    private static final PatternMatcher matcher = new PatternMatcher();
 
     static {
         // load(I) - dup - ixor => iconst_0
@@ -31,10 +33,11 @@ public class Sample001Pass1 extends MethodPass {
                 .addStep(StepUtil.iconst_0())
                 .addStep(StepUtil.ifeq())
                 .setStrategy(ctx -> {
-                   var ifeqNode = (JumpInsnNode)ctx.original.get(ctx.startIdx + 1);
+                   var ifeqNode = (JumpInsnNode)ctx.get(1);
                    ctx.builder.gotoo(ifeqNode.label);
                 });
         matcher.addRule(rule2);
+        matcher.compile();
     }
 
     @Override
@@ -43,11 +46,9 @@ public class Sample001Pass1 extends MethodPass {
             return;
         }
 //        methodNode.instructions = matcher.apply(methodNode.instructions);
-        int startSize, endSize;
-        do{
-            startSize = methodNode.instructions.size();
-            methodNode.instructions = matcher.apply(methodNode.instructions);
-            endSize = methodNode.instructions.size();
-        }while (startSize != endSize);
+        boolean changed;
+        do {
+            changed = matcher.rewrite(methodNode.instructions);
+        } while (changed);
     }
 }
@@ -1,5 +1,6 @@
 package com.github.luiox.passes.deobfuscate;
 
+import com.github.luiox.morpher.transformer.AccessScope;
 import com.github.luiox.morpher.transformer.IPassContext;
 import com.github.luiox.morpher.transformer.MethodPass;
 import com.github.luiox.morpher.transformer.PassInfo;
@@ -10,7 +11,8 @@ import org.objectweb.asm.tree.JumpInsnNode;
 import org.objectweb.asm.tree.LabelNode;
 import org.objectweb.asm.tree.MethodNode;
 
-@PassInfo(name = "Sample001Pass2", description = "处理冗余跳转的pass")
+@PassInfo(name = "Sample001Pass2", description = "处理冗余跳转的pass",
+        reads = AccessScope.Code, writes = AccessScope.Code)
 public class Sample001Pass2 extends MethodPass {
 
     @Override
@@ -4,16 +4,18 @@ import com.github.luiox.morpher.asm.insn.InsnUtil;
 import com.github.luiox.morpher.asm.matcher.MatchRule;
 import com.github.luiox.morpher.asm.matcher.PatternMatcher;
 import com.github.luiox.morpher.asm.matcher.StepUtil;
+import com.github.luiox.morpher.transformer.AccessScope;
 import com.github.luiox.morpher.transformer.IPassContext;
 import com.github.luiox.morpher.transformer.MethodPass;
 import com.github.luiox.morpher.transformer.PassInfo;
 import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.tree.MethodNode;
 
-@PassInfo(name = "Sample001Pass3", description = "处理常量折叠的pass")
+@PassInfo(name = "Sample001Pass3", description = "处理常量折叠的pass",
+        reads = AccessScope.Code, writes = AccessScope.Code)
 public class Sample001Pass3 extends MethodPass {
 
-    static PatternMatcher matcher = new PatternMatcher();
+    private static final PatternMatcher matcher = new PatternMatcher();
 
     static {
         // ldc(I:v1) - ldc(I:v2) - ixor => ldc(I:v1^v2)
@@ -22,8 +24,8 @@ public class Sample001Pass3 extends MethodPass {
                 .addStep(StepUtil.loadInt())
                 .addStep(StepUtil.ixor())
                 .setStrategy(ctx -> {
-                    var val1 = InsnUtil.getIntValue(ctx.original.get(ctx.startIdx));
-                    var val2 = InsnUtil.getIntValue(ctx.original.get(ctx.startIdx + 1));
+                    var val1 = InsnUtil.getIntValue(ctx.get(0));
+                    var val2 = InsnUtil.getIntValue(ctx.get(1));
                     ctx.builder.ldc(val1 ^ val2);
                 });
         matcher.addRule(rule1);
@@ -36,6 +38,7 @@ public class Sample001Pass3 extends MethodPass {
                     // 全部丢掉
                 });
         matcher.addRule(rule2);
+        matcher.compile();
     }
 
     @Override
@@ -44,11 +47,9 @@ public class Sample001Pass3 extends MethodPass {
             return;
         }
 
-        int startSize, endSize;
-        do{
-            startSize = methodNode.instructions.size();
-            methodNode.instructions = matcher.apply(methodNode.instructions);
-            endSize = methodNode.instructions.size();
-        }while (startSize != endSize);
+        boolean changed;
+        do {
+            changed = matcher.rewrite(methodNode.instructions);
+        } while (changed);
     }
 }
\ No newline at end of file
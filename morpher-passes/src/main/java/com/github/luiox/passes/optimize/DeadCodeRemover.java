@@ -1,22 +1,25 @@
 package com.github.luiox.passes.optimize;
 
+import com.github.luiox.morpher.transformer.AccessScope;
 import com.github.luiox.morpher.transformer.IPassContext;
 import com.github.luiox.morpher.transformer.MethodPass;
 import com.github.luiox.morpher.transformer.PassInfo;
 import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.tree.*;
-import org.objectweb.asm.tree.analysis.Analyzer;
-import org.objectweb.asm.tree.analysis.BasicInterpreter;
 import org.objectweb.asm.tree.analysis.BasicValue;
 import org.objectweb.asm.tree.analysis.Frame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@PassInfo(name = "DeadCodeRemover", description = "移除无用代码")
+import java.util.concurrent.atomic.LongAdder;
+
+@PassInfo(name = "DeadCodeRemover", description = "移除无用代码",
+        reads = AccessScope.Code, writes = AccessScope.Code)
 public class DeadCodeRemover extends MethodPass {
 
     private static final Logger logger = LoggerFactory.getLogger(DeadCodeRemover.class);
-    int count = 0;
+    // 同一个阶段中可能被多个线程同时调用
+    final LongAdder count = new LongAdder();
 
     @Override
     public void run(@NotNull MethodNode methodNode, @NotNull IPassContext context) {
@@ -24,10 +27,9 @@ public class DeadCodeRemover extends MethodPass {
             return;
         }
 
-        // 栈帧分析
+        // 栈帧分析，同一个方法上之前的Pass已经分析过并且没有修改指令时直接复用
         try {
-            Analyzer<BasicValue> analyzer = new Analyzer<>(new BasicInterpreter());
-            Frame<BasicValue>[] frames = analyzer.analyze(context.currentClass().name, methodNode);
+            Frame<BasicValue>[] frames = context.getFrames(methodNode);
 
             // 删除无论如何不可能执行到的死代码
             AbstractInsnNode[] insnNodes = methodNode.instructions.toArray();
@@ -37,7 +39,7 @@ public class DeadCodeRemover extends MethodPass {
                         && !(insnNodes[i] instanceof LineNumberNode)
                         && !(insnNodes[i] instanceof FrameNode)) {
                     methodNode.instructions.remove(insnNodes[i]);
-                    count++;
+                    count.increment();
                 }
             }
         } catch (Exception e) {
@@ -45,8 +47,13 @@ public class DeadCodeRemover extends MethodPass {
         }
     }
 
+    @Override
+    public boolean requiresFrames() {
+        return true;
+    }
+
     @Override
     public void doFinalization(@NotNull IPassContext context) {
-        logger.info("[DeadCodeRemover] remove {} dead code instructions", count);
+        logger.info("[DeadCodeRemover] remove {} dead code instructions", count.sum());
     }
 }
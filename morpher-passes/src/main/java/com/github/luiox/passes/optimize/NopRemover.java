@@ -1,5 +1,6 @@
 package com.github.luiox.passes.optimize;
 
+import com.github.luiox.morpher.transformer.AccessScope;
 import com.github.luiox.morpher.transformer.IPassContext;
 import com.github.luiox.morpher.transformer.MethodPass;
 import com.github.luiox.morpher.transformer.PassInfo;
@@ -9,11 +10,15 @@ import org.objectweb.asm.tree.MethodNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@PassInfo(name = "NopRemover", description = "移除nop指令")
+import java.util.concurrent.atomic.LongAdder;
+
+@PassInfo(name = "NopRemover", description = "移除nop指令",
+        reads = AccessScope.Code, writes = AccessScope.Code)
 public class NopRemover extends MethodPass {
 
     private static final Logger logger = LoggerFactory.getLogger(NopRemover.class);
-    int count = 0;
+    // 同一个阶段中可能被多个线程同时调用
+    final LongAdder count = new LongAdder();
 
     @Override
     public void run(@NotNull MethodNode methodNode, @NotNull IPassContext context) {
@@ -25,12 +30,13 @@ public class NopRemover extends MethodPass {
             var insn = it.next();
             if (insn.getOpcode() == Opcodes.NOP) {
                 it.remove();
+                count.increment();
             }
         }
     }
 
     @Override
     public void doFinalization(@NotNull IPassContext context) {
-        logger.info("[NopRemover] remove {} nop instructions", count);
+        logger.info("[NopRemover] remove {} nop instructions", count.sum());
     }
 }
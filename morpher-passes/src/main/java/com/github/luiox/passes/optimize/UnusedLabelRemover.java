@@ -1,5 +1,6 @@
 package com.github.luiox.passes.optimize;
 
+import com.github.luiox.morpher.transformer.AccessScope;
 import com.github.luiox.morpher.transformer.IPassContext;
 import com.github.luiox.morpher.transformer.MethodPass;
 import com.github.luiox.morpher.transformer.PassInfo;
@@ -10,12 +11,15 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
-@PassInfo(name = "UnusedLabelRemover", description = "清除没有使用到的LabelNode")
+@PassInfo(name = "UnusedLabelRemover", description = "清除没有使用到的LabelNode",
+        reads = AccessScope.Code, writes = AccessScope.Code)
 public class UnusedLabelRemover extends MethodPass {
 
     private static final Logger logger = LoggerFactory.getLogger(UnusedLabelRemover.class);
-    int count = 0;
+    // 同一个阶段中可能被多个线程同时调用
+    final LongAdder count = new LongAdder();
 
     @Override
     public void run(@NotNull MethodNode methodNode, @NotNull IPassContext context) {
@@ -75,11 +79,11 @@ public class UnusedLabelRemover extends MethodPass {
             }
         }
         // 记录移除的数量
-        count += labelToUsed.size();
+        count.add(labelToUsed.size());
     }
 
     @Override
     public void doFinalization(@NotNull IPassContext context) {
-        logger.info("[UnusedLabelRemover] Removed {} unused labels", count);
+        logger.info("[UnusedLabelRemover] Removed {} unused labels", count.sum());
     }
 }
@@ -12,7 +12,8 @@ rootProject.name = "morpher-api"
 
 include(
     "morpher-api",
-    "morpher-passes"
+    "morpher-passes",
+    "morpher-benchmarks"
 )
 
 